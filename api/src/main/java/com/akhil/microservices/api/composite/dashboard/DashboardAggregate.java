@@ -1,24 +1,36 @@
 package com.akhil.microservices.api.composite.dashboard;
 
+import com.akhil.microservices.api.core.expense.Money;
+
 import java.util.List;
 
 public class DashboardAggregate {
 
     private final AccountSummary account;
     private final List<ExpenseSummary> expenses;
+    private final List<Money> totals;
     private final ServiceAddresses serviceAddresses;
 
     public DashboardAggregate() {
         account = null;
         expenses = null;
+        totals = null;
         serviceAddresses = null;
     }
 
     public DashboardAggregate(AccountSummary account,
                               List<ExpenseSummary> expenses,
                               ServiceAddresses serviceAddresses) {
+        this(account, expenses, null, serviceAddresses);
+    }
+
+    public DashboardAggregate(AccountSummary account,
+                              List<ExpenseSummary> expenses,
+                              List<Money> totals,
+                              ServiceAddresses serviceAddresses) {
         this.account = account;
         this.expenses = expenses;
+        this.totals = totals;
         this.serviceAddresses = serviceAddresses;
     }
 
@@ -30,6 +42,11 @@ public class DashboardAggregate {
         return expenses;
     }
 
+    // The sum of the expenses, one per currency
+    public List<Money> getTotals() {
+        return totals;
+    }
+
     public ServiceAddresses getServiceAddresses() {
         return serviceAddresses;
     }
@@ -6,6 +6,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Tag(
@@ -25,6 +26,10 @@ public interface DashboardCompositeService  {
                             responseCode = "200",
                             description = "${api.responseCodes.ok.description}"
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "${api.responseCodes.notModified.description}"
+                    ),
                     @ApiResponse(
                             responseCode = "400",
                             description = "${api.responseCodes.badRequest.description}"
@@ -47,6 +52,38 @@ public interface DashboardCompositeService  {
         @RequestParam(value = "delay", required = false, defaultValue = "0") int delay,
         @RequestParam(value = "faultPercent", required = false, defaultValue = "0") int faultPercent);
 
+    @Operation(
+            summary = "${api.dashboard.get-account-summary-stream.description}",
+            description = "${api.dashboard.get-account-summary-stream.notes}"
+    )
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "${api.responseCodes.ok.description}"
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "${api.responseCodes.badRequest.description}"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "${api.responseCodes.notFound.description}"
+                    ),
+                    @ApiResponse(
+                            responseCode = "422",
+                            description = "${api.responseCodes.unprocessableEntity.description}"
+                    )
+            }
+    )
+    @GetMapping(
+            value = "/dashboard/{accountId}/stream",
+            produces = {"application/x-ndjson", "text/event-stream"}
+    )
+    Flux<DashboardStreamItem> getDashboardSummaryStream(@PathVariable int accountId,
+        @RequestParam(value = "delay", required = false, defaultValue = "0") int delay,
+        @RequestParam(value = "faultPercent", required = false, defaultValue = "0") int faultPercent);
+
     @Operation(
             summary = "${api.dashboard.create-account-summary.description}",
             description = "${api.dashboard.create-account-summary.notes}"
@@ -0,0 +1,36 @@
+package com.akhil.microservices.api.composite.dashboard;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DashboardStreamItem {
+
+    private final AccountSummary account;
+    private final ExpenseSummary expense;
+
+    public DashboardStreamItem() {
+        account = null;
+        expense = null;
+    }
+
+    public DashboardStreamItem(AccountSummary account, ExpenseSummary expense) {
+        this.account = account;
+        this.expense = expense;
+    }
+
+    public static DashboardStreamItem of(AccountSummary account) {
+        return new DashboardStreamItem(account, null);
+    }
+
+    public static DashboardStreamItem of(ExpenseSummary expense) {
+        return new DashboardStreamItem(null, expense);
+    }
+
+    public AccountSummary getAccount() {
+        return account;
+    }
+
+    public ExpenseSummary getExpense() {
+        return expense;
+    }
+}
@@ -1,6 +1,7 @@
 package com.akhil.microservices.api.composite.dashboard;
 
 import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.Money;
 import com.akhil.microservices.api.core.expense.PaymentMode;
 
 import java.time.LocalDateTime;
@@ -9,7 +10,7 @@ public class ExpenseSummary {
 
     private int expenseId;
     private LocalDateTime transactionDateTime;
-    private double amount;
+    private Money amount;
     private Category category;
     private String description;
     private PaymentMode paymentMode;
@@ -18,16 +19,23 @@ public class ExpenseSummary {
     public ExpenseSummary() {
         expenseId = 0;
         transactionDateTime = LocalDateTime.now();
-        amount = 0.0;
+        amount = new Money(Money.DEFAULT_CURRENCY, 0);
         category = null;
         description = null;
         paymentMode = PaymentMode.CASH;
         notes = null;
     }
 
+    // The amount is in major units of the default currency
     public ExpenseSummary(int expenseId, LocalDateTime transactionDateTime,
                           double amount, Category category, String description, PaymentMode paymentMode,
                           String notes) {
+        this(expenseId, transactionDateTime, Money.of(amount), category, description, paymentMode, notes);
+    }
+
+    public ExpenseSummary(int expenseId, LocalDateTime transactionDateTime,
+                          Money amount, Category category, String description, PaymentMode paymentMode,
+                          String notes) {
         this.expenseId = expenseId;
         this.transactionDateTime = transactionDateTime;
         this.amount = amount;
@@ -53,11 +61,11 @@ public class ExpenseSummary {
         this.transactionDateTime = transactionDateTime;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
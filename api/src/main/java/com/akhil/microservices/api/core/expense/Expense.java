@@ -7,7 +7,7 @@ public class Expense {
     private int accountId;
     private int expenseId;
     private LocalDateTime transactionDateTime;
-    private double amount;
+    private Money amount;
     private Category category;
     private String description;
     private PaymentMode paymentMode;
@@ -18,7 +18,7 @@ public class Expense {
         accountId = 0;
         expenseId = 0;
         transactionDateTime = LocalDateTime.now();
-        amount = 0.0;
+        amount = new Money(Money.DEFAULT_CURRENCY, 0);
         category = null;
         description = null;
         paymentMode = PaymentMode.CASH;
@@ -26,9 +26,17 @@ public class Expense {
         serviceAddress = null;
     }
 
+    // The amount is in major units of the default currency
     public Expense(int accountId, int expenseId, LocalDateTime transactionDateTime, double amount,
                    Category category, String description, PaymentMode paymentMode,
                    String notes, String serviceAddress) {
+        this(accountId, expenseId, transactionDateTime, Money.of(amount), category, description, paymentMode,
+                notes, serviceAddress);
+    }
+
+    public Expense(int accountId, int expenseId, LocalDateTime transactionDateTime, Money amount,
+                   Category category, String description, PaymentMode paymentMode,
+                   String notes, String serviceAddress) {
         this.expenseId = expenseId;
         this.accountId = accountId;
         this.transactionDateTime = transactionDateTime;
@@ -48,11 +56,11 @@ public class Expense {
         this.transactionDateTime = transactionDateTime;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -0,0 +1,10 @@
+package com.akhil.microservices.api.core.expense;
+
+public enum ExpenseGroupBy {
+
+    CATEGORY,
+    PAYMENT_MODE,
+    DAY,
+    WEEK,
+    MONTH
+}
@@ -0,0 +1,27 @@
+package com.akhil.microservices.api.core.expense;
+
+import java.util.List;
+
+public class ExpensePage {
+
+    private final List<Expense> expenses;
+    private final String nextPageToken;
+
+    public ExpensePage() {
+        expenses = null;
+        nextPageToken = null;
+    }
+
+    public ExpensePage(List<Expense> expenses, String nextPageToken) {
+        this.expenses = expenses;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<Expense> getExpenses() {
+        return expenses;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+}
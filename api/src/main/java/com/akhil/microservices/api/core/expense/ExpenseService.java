@@ -1,9 +1,14 @@
 package com.akhil.microservices.api.core.expense;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
 public interface ExpenseService {
 
     @GetMapping(
@@ -12,6 +17,42 @@ public interface ExpenseService {
     )
     Flux<Expense> getExpenses(@RequestParam(value = "accountId", required = true) int accountId);
 
+    @GetMapping(
+            value = "/expense/page",
+            produces = "application/json"
+    )
+    Mono<ExpensePage> getExpensePage(
+            @RequestParam(value = "accountId", required = true) int accountId,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "pageSize", required = false, defaultValue = "50") int pageSize,
+            @RequestParam(value = "pageToken", required = false) String pageToken);
+
+    @GetMapping(
+            value = "/expense/totals",
+            produces = "application/json"
+    )
+    Flux<ExpenseTotal> getExpenseTotals(
+            @RequestParam(value = "accountId", required = true) int accountId,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "groupBy", required = false) List<ExpenseGroupBy> groupBy);
+
+    @GetMapping(
+            value = "/expense/rollups",
+            produces = "application/json"
+    )
+    Flux<ExpenseTotal> getExpenseRollups(
+            @RequestParam(value = "accountId", required = true) int accountId,
+            @RequestParam(value = "fromMonth", required = false)
+            @DateTimeFormat(pattern = "yyyy-MM") YearMonth fromMonth,
+            @RequestParam(value = "toMonth", required = false)
+            @DateTimeFormat(pattern = "yyyy-MM") YearMonth toMonth);
+
     @PostMapping(
             value = "/expense",
             consumes = "application/json",
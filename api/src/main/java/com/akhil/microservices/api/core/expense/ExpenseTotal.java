@@ -0,0 +1,80 @@
+package com.akhil.microservices.api.core.expense;
+
+import java.math.BigDecimal;
+
+public class ExpenseTotal {
+
+    private String period;
+    private String category;
+    private PaymentMode paymentMode;
+    private String currency;
+    private BigDecimal total;
+    private long count;
+
+    public ExpenseTotal() {
+        period = null;
+        category = null;
+        paymentMode = null;
+        currency = null;
+        total = BigDecimal.ZERO;
+        count = 0;
+    }
+
+    public ExpenseTotal(String period, String category, PaymentMode paymentMode, String currency, BigDecimal total,
+                        long count) {
+        this.period = period;
+        this.category = category;
+        this.paymentMode = paymentMode;
+        this.currency = currency;
+        this.total = total;
+        this.count = count;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public PaymentMode getPaymentMode() {
+        return paymentMode;
+    }
+
+    public void setPaymentMode(PaymentMode paymentMode) {
+        this.paymentMode = paymentMode;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
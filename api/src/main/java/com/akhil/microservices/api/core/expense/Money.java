@@ -0,0 +1,77 @@
+package com.akhil.microservices.api.core.expense;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Objects;
+
+/**
+ * An amount of money as a whole number of minor units, for example cents, in an ISO 4217 currency. Sums of minor
+ * units are exact and can be added up as primitive longs. Amounts given in major units are rounded half-even to
+ * the fraction digits of the currency.
+ */
+@JsonDeserialize(using = MoneyDeserializer.class)
+public class Money {
+
+    public static final String DEFAULT_CURRENCY = "INR";
+
+    private final String currency;
+    private final long minorUnits;
+
+    public Money(String currency, long minorUnits) {
+        this.currency = Currency.getInstance(currency).getCurrencyCode();
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money of(BigDecimal amount, String currency) {
+        return new Money(currency, amount.setScale(fractionDigits(currency), RoundingMode.HALF_EVEN)
+                .unscaledValue().longValueExact());
+    }
+
+    public static Money of(double amount, String currency) {
+        return of(BigDecimal.valueOf(amount), currency);
+    }
+
+    public static Money of(double amount) {
+        return of(amount, DEFAULT_CURRENCY);
+    }
+
+    public static int fractionDigits(String currency) {
+        return Math.max(0, Currency.getInstance(currency).getDefaultFractionDigits());
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, fractionDigits(currency));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money money)) {
+            return false;
+        }
+        return minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(currency, minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+}
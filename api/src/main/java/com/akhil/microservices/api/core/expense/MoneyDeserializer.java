@@ -0,0 +1,66 @@
+package com.akhil.microservices.api.core.expense;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads a {@link Money} from both shapes of an amount. The current shape is an object with the currency and the
+ * amount in minor units, or in major units as amount. The previous shape is a plain number in major units of the
+ * default currency, still sent by older clients and found in events published before the change.
+ */
+public class MoneyDeserializer extends StdDeserializer<Money> {
+
+    public MoneyDeserializer() {
+        super(Money.class);
+    }
+
+    @Override
+    public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return Money.of(parser.getDecimalValue(), Money.DEFAULT_CURRENCY);
+        }
+        if (token != JsonToken.START_OBJECT) {
+            return (Money) context.handleUnexpectedToken(Money.class, parser);
+        }
+
+        String currency = Money.DEFAULT_CURRENCY;
+        Long minorUnits = null;
+        BigDecimal amount = null;
+
+        for (token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            switch (field) {
+                case "currency" -> currency = parser.getValueAsString();
+                case "minorUnits" -> minorUnits = parser.getLongValue();
+                case "amount" -> amount = parser.getDecimalValue();
+                default -> parser.skipChildren();
+            }
+        }
+
+        try {
+            if (minorUnits != null) {
+                return new Money(currency, minorUnits);
+            }
+            if (amount != null) {
+                return Money.of(amount, currency);
+            }
+        } catch (ArithmeticException ex) {
+            return (Money) context.handleWeirdNumberValue(Money.class, amount, "out of range of the minor units");
+        } catch (IllegalArgumentException ex) {
+            return (Money) context.handleWeirdStringValue(Money.class, currency, "not an ISO 4217 currency code");
+        }
+        return (Money) context.handleUnexpectedToken(Money.class, token, parser,
+                "Expected minorUnits or amount in a money value");
+    }
+}
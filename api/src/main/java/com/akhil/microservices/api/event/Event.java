@@ -4,20 +4,24 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
 
 import java.time.ZonedDateTime;
+import java.util.UUID;
 
 public class Event<K, T> {
 
     public enum Type {
         CREATE,
         DELETE,
+        BULK_CREATE,
     }
 
+    private final String eventId;
     private final Type type;
     private final K key;
     private final T data;
     private final ZonedDateTime eventCreatedAt;
 
     public Event() {
+        this.eventId = null;
         this.type = null;
         this.key = null;
         this.data = null;
@@ -25,12 +29,25 @@ public class Event<K, T> {
     }
 
     public Event(Type type, K key, T data) {
+        this.eventId = UUID.randomUUID().toString();
         this.type = type;
         this.key = key;
         this.data = data;
         this.eventCreatedAt = ZonedDateTime.now();
     }
 
+    public Event(String eventId, Type type, K key, T data, ZonedDateTime eventCreatedAt) {
+        this.eventId = eventId;
+        this.type = type;
+        this.key = key;
+        this.data = data;
+        this.eventCreatedAt = eventCreatedAt;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
     public Type getType() {
         return type;
     }
@@ -0,0 +1,23 @@
+package com.akhil.microservices.api.event;
+
+import com.akhil.microservices.api.core.expense.Expense;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Event on the expenses topic. CREATE events carry an {@link Expense}, BULK_CREATE events a list of expenses of the
+ * same account, DELETE events carry either an expense id or no data to delete all expenses of the account.
+ * Deserialized by {@link ExpenseEventDeserializer} straight into these types instead of a generic map.
+ */
+@JsonDeserialize(using = ExpenseEventDeserializer.class)
+public class ExpenseEvent extends Event<Integer, Object> {
+
+    public ExpenseEvent(Type type, Integer key, Object data) {
+        super(type, key, data);
+    }
+
+    public ExpenseEvent(String eventId, Type type, Integer key, Object data, ZonedDateTime eventCreatedAt) {
+        super(eventId, type, key, data, eventCreatedAt);
+    }
+}
@@ -0,0 +1,64 @@
+package com.akhil.microservices.api.event;
+
+import com.akhil.microservices.api.core.expense.Expense;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * Reads an {@link ExpenseEvent} in a single pass over the parser. The data type is chosen from the shape of the
+ * data value, so it doesn't depend on the order of the properties.
+ */
+public class ExpenseEventDeserializer extends StdDeserializer<ExpenseEvent> {
+
+    public ExpenseEventDeserializer() {
+        super(ExpenseEvent.class);
+    }
+
+    @Override
+    public ExpenseEvent deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+
+        String eventId = null;
+        Event.Type type = null;
+        Integer key = null;
+        Object data = null;
+        ZonedDateTime eventCreatedAt = null;
+
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = parser.nextToken();
+        }
+
+        for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+            String field = parser.currentName();
+            if (parser.nextToken() == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            switch (field) {
+                case "eventId" -> eventId = parser.getValueAsString();
+                case "type" -> type = context.readValue(parser, Event.Type.class);
+                case "key" -> key = parser.getValueAsInt();
+                case "data" -> data = switch (parser.currentToken()) {
+                    case START_OBJECT -> context.readValue(parser, Expense.class);
+                    case START_ARRAY -> context.readValue(parser,
+                            context.getTypeFactory().constructCollectionType(List.class, Expense.class));
+                    default -> parser.getValueAsInt();
+                };
+                case "eventCreatedAt" -> eventCreatedAt = context.readValue(parser, ZonedDateTime.class);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (token != JsonToken.END_OBJECT) {
+            return (ExpenseEvent) context.handleUnexpectedToken(ExpenseEvent.class, parser);
+        }
+
+        return new ExpenseEvent(eventId, type, key, data, eventCreatedAt);
+    }
+}
@@ -0,0 +1,31 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.PaymentMode;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Test data shared by the benchmarks, expenses spread over a few months, categories and payment modes.
+ */
+final class BenchmarkData {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 30);
+    private static final PaymentMode[] PAYMENT_MODES = PaymentMode.values();
+
+    private BenchmarkData() {
+    }
+
+    static Expense expense(int accountId, int expenseId) {
+        return new Expense(accountId, expenseId, START.plusDays(expenseId % 90), 10.0 + expenseId,
+                new Category("Category " + expenseId % 5, expenseId % 2 == 0), "Expense " + expenseId,
+                PAYMENT_MODES[expenseId % PAYMENT_MODES.length], "Notes " + expenseId, null);
+    }
+
+    static List<Expense> expenses(int accountId, int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(expenseId -> expense(accountId, expenseId)).toList();
+    }
+}
@@ -0,0 +1,61 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.composite.dashboard.services.DashboardCompositeServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the dashboard aggregate from an account and its expenses, the last step of every dashboard summary.
+ * createDashboardAggregate is private, it is called through a method handle; the service is created without the
+ * collaborators it doesn't use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DashboardAggregateBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int expenseCount;
+
+    private DashboardCompositeServiceImpl service;
+    private MethodHandle createDashboardAggregate;
+
+    private Account account;
+    private List<Expense> expenses;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        service = new DashboardCompositeServiceImpl(null, null, null, new SimpleMeterRegistry(), 100, 500, 4,
+                Optional.empty());
+
+        Method method = DashboardCompositeServiceImpl.class.getDeclaredMethod("createDashboardAggregate",
+                Account.class, List.class, String.class);
+        method.setAccessible(true);
+        createDashboardAggregate = MethodHandles.lookup().unreflect(method);
+
+        account = new Account(1, "Account 1", "account/1.2.3.4:80");
+        expenses = BenchmarkData.expenses(1, expenseCount);
+    }
+
+    @Benchmark
+    public DashboardAggregate createDashboardAggregate() throws Throwable {
+        return (DashboardAggregate) createDashboardAggregate.invoke(service, account, expenses, "dashboard/1.2.3.6:80");
+    }
+}
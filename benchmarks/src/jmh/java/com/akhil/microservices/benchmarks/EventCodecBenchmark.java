@@ -0,0 +1,79 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.PaymentMode;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.util.event.CborMessageConverter;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and CBOR wire formats of an expense CREATE event. The benchmarks measure encode and decode
+ * throughput, the encoded size of each format is reported next to them as the encodedBytes counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventCodecBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+
+        public long encodedBytes;
+
+        // Set rather than counted, so the reported value is the size of one encoded event
+        @Setup(Level.Iteration)
+        public void setup(EventCodecBenchmark benchmark) {
+            encodedBytes = benchmark.encodedEvent.length;
+        }
+    }
+
+    @Param({"json", "cbor"})
+    private String format;
+
+    private ObjectMapper mapper;
+    private JavaType eventType;
+    private Event<Integer, Expense> event;
+    private byte[] encodedEvent;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = "cbor".equals(format)
+                ? new CborMessageConverter().getObjectMapper()
+                : JsonMapper.builder().findAndAddModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        eventType = mapper.getTypeFactory().constructParametricType(Event.class, Integer.class, Expense.class);
+
+        Expense expense = new Expense(1, 1, LocalDateTime.of(2024, 3, 15, 12, 30), 42.5,
+                new Category("Groceries", false), "Weekly groceries", PaymentMode.DEBIT_CARD, "Farmers market", null);
+        event = new Event<>(Event.Type.CREATE, 1, expense);
+        encodedEvent = mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] encode(EncodedSize size) throws IOException {
+        return mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public Event<Integer, Expense> decode(EncodedSize size) throws IOException {
+        return mapper.readValue(encodedEvent, eventType);
+    }
+}
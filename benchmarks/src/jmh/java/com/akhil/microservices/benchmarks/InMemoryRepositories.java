@@ -0,0 +1,127 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.core.account.persistence.AccountEntity;
+import com.akhil.microservices.core.account.persistence.AccountRepository;
+import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseRepository;
+import com.akhil.microservices.core.expense.persistence.ExpenseRollupRepository;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map based stand-ins for the MongoDB repositories, implementing only the methods used by the message processors.
+ * They keep the benchmarks of the processors free of I/O, so the numbers show the cost of the processing itself.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    static AccountRepository accountRepository() {
+        Map<Integer, AccountEntity> accounts = new ConcurrentHashMap<>();
+
+        return proxy(AccountRepository.class, (name, args) -> switch (name) {
+            case "save" -> {
+                AccountEntity account = (AccountEntity) args[0];
+                accounts.put(account.getAccountId(), account);
+                yield Mono.just(account);
+            }
+            case "findByAccountId" -> Mono.justOrEmpty(accounts.get((Integer) args[0]));
+            case "delete" -> Mono.fromRunnable(() -> accounts.remove(((AccountEntity) args[0]).getAccountId()));
+            default -> null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static ExpenseRepository expenseRepository() {
+        Map<String, ExpenseEntity> expenses = new ConcurrentHashMap<>();
+
+        return proxy(ExpenseRepository.class, (name, args) -> switch (name) {
+            case "save" -> {
+                ExpenseEntity expense = (ExpenseEntity) args[0];
+                expenses.put(key(expense.getAccountId(), expense.getExpenseId()), expense);
+                yield Mono.just(expense);
+            }
+            case "bulkInsertIfAbsent" -> Flux.fromIterable((List<ExpenseEntity>) args[0])
+                    .filter(expense -> expenses.putIfAbsent(key(expense.getAccountId(), expense.getExpenseId()),
+                            expense) == null);
+            case "findByAccountId" -> Flux.fromIterable(new ArrayList<>(expenses.values()))
+                    .filter(expense -> expense.getAccountId() == (Integer) args[0]);
+            case "findByAccountIdAndExpenseId" -> Mono.justOrEmpty(expenses.get(key((Integer) args[0], (Integer) args[1])));
+            case "findByAccountIdAndExpenseIds" -> Flux.fromIterable(
+                    ((Map<Integer, ? extends Collection<Integer>>) args[0]).entrySet())
+                    .flatMapIterable(entry -> entry.getValue().stream()
+                            .map(expenseId -> expenses.get(key(entry.getKey(), expenseId)))
+                            .filter(Objects::nonNull)
+                            .toList());
+            case "delete" -> Mono.fromRunnable(() -> {
+                ExpenseEntity expense = (ExpenseEntity) args[0];
+                expenses.remove(key(expense.getAccountId(), expense.getExpenseId()));
+            });
+            case "deleteAll" -> Flux.from((Publisher<ExpenseEntity>) args[0])
+                    .doOnNext(expense -> expenses.remove(key(expense.getAccountId(), expense.getExpenseId())))
+                    .then();
+            case "deleteByAccountIdIn" -> Mono.fromRunnable(() -> expenses.values()
+                    .removeIf(expense -> ((Collection<Integer>) args[0]).contains(expense.getAccountId())));
+            default -> null;
+        });
+    }
+
+    // Only the totals are kept, the processors never read the rollups back
+    @SuppressWarnings("unchecked")
+    static ExpenseRollupRepository expenseRollupRepository() {
+        Map<String, double[]> rollups = new ConcurrentHashMap<>();
+
+        return proxy(ExpenseRollupRepository.class, (name, args) -> switch (name) {
+            case "increment" -> Mono.fromRunnable(() -> {
+                double[] rollup = rollups.computeIfAbsent(args[0] + "/" + args[1] + "/" + args[2] + "/" + args[3],
+                        key -> new double[2]);
+                rollup[0] += (Double) args[4];
+                rollup[1] += (Long) args[5];
+            });
+            case "deleteByAccountId" -> Mono.fromRunnable(() -> rollups.keySet()
+                    .removeIf(key -> key.startsWith(args[0] + "/")));
+            case "deleteByAccountIdIn" -> Mono.fromRunnable(() -> ((Collection<Integer>) args[0])
+                    .forEach(accountId -> rollups.keySet().removeIf(key -> key.startsWith(accountId + "/"))));
+            default -> null;
+        });
+    }
+
+    private static String key(int accountId, int expenseId) {
+        return accountId + "/" + expenseId;
+    }
+
+    private interface Methods {
+        Object invoke(String name, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Methods methods) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName() + " (in memory)";
+                };
+            }
+
+            Object result = methods.invoke(method.getName(), args);
+            if (result == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,93 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.api.composite.dashboard.AccountSummary;
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.composite.dashboard.ExpenseSummary;
+import com.akhil.microservices.api.composite.dashboard.ServiceAddresses;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.composite.dashboard.config.AppConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the models sent between the services, using the ObjectMapper configured by the
+ * dashboard's AppConfig.mapper(). The aggregate holds 50 expenses, like a typical dashboard response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper mapper;
+    private JavaType expenseEventType;
+
+    private Expense expense;
+    private DashboardAggregate aggregate;
+    private Event<Integer, Expense> event;
+
+    private byte[] expenseJson;
+    private byte[] aggregateJson;
+    private byte[] eventJson;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = new AppConfig(10, 100).mapper();
+        expenseEventType = mapper.getTypeFactory().constructParametricType(Event.class, Integer.class, Expense.class);
+
+        expense = BenchmarkData.expense(1, 1);
+        List<ExpenseSummary> expenseSummaries = BenchmarkData.expenses(1, 50).stream()
+                .map(e -> new ExpenseSummary(e.getExpenseId(), e.getTransactionDateTime(), e.getAmount(),
+                        e.getCategory(), e.getDescription(), e.getPaymentMode(), e.getNotes()))
+                .toList();
+        aggregate = new DashboardAggregate(new AccountSummary(1, "Account 1"), expenseSummaries,
+                new ServiceAddresses("account/1.2.3.4:80", "expense/1.2.3.5:80"));
+        event = new Event<>(Event.Type.CREATE, 1, expense);
+
+        expenseJson = mapper.writeValueAsBytes(expense);
+        aggregateJson = mapper.writeValueAsBytes(aggregate);
+        eventJson = mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] writeExpense() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(expense);
+    }
+
+    @Benchmark
+    public Expense readExpense() throws IOException {
+        return mapper.readValue(expenseJson, Expense.class);
+    }
+
+    @Benchmark
+    public byte[] writeDashboardAggregate() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(aggregate);
+    }
+
+    @Benchmark
+    public DashboardAggregate readDashboardAggregate() throws IOException {
+        return mapper.readValue(aggregateJson, DashboardAggregate.class);
+    }
+
+    @Benchmark
+    public byte[] writeEvent() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public Event<Integer, Expense> readEvent() throws IOException {
+        return mapper.readValue(eventJson, expenseEventType);
+    }
+}
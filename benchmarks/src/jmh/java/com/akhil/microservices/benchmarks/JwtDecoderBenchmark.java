@@ -0,0 +1,75 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.util.security.CachingReactiveJwtDecoder;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding the bearer token of a request, done by the gateway and the dashboard service for every request. verify
+ * parses the token and verifies its RSA signature, as the decoder configured by Spring Boot does; cached looks up a
+ * token verified before by its hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtDecoderBenchmark {
+
+    private String token;
+    private ReactiveJwtDecoder verifyingDecoder;
+    private ReactiveJwtDecoder cachingDecoder;
+
+    @Setup
+    public void setup() throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("writer")
+                .claim("scope", "account:read account:write")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        token = jwt.serialize();
+
+        JWKSet jwkSet = new JWKSet(key.toPublicJWK());
+        verifyingDecoder = NimbusReactiveJwtDecoder.withJwkSource(signed -> Flux.fromIterable(jwkSet.getKeys()))
+                .build();
+        cachingDecoder = new CachingReactiveJwtDecoder(verifyingDecoder, 10_000, new SimpleMeterRegistry());
+        cachingDecoder.decode(token).block();
+    }
+
+    @Benchmark
+    public Jwt verify() {
+        return verifyingDecoder.decode(token).block();
+    }
+
+    @Benchmark
+    public Jwt cached() {
+        return cachingDecoder.decode(token).block();
+    }
+}
@@ -0,0 +1,75 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.core.account.persistence.AccountEntity;
+import com.akhil.microservices.core.account.services.AccountMapper;
+import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
+import com.akhil.microservices.core.expense.services.ExpenseMapper;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MapStruct conversions between the API models and the entities, done for every read and write of the core
+ * services.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+    private AccountMapper accountMapper;
+    private ExpenseMapper expenseMapper;
+
+    private Account account;
+    private AccountEntity accountEntity;
+    private Expense expense;
+    private ExpenseEntity expenseEntity;
+    private List<Expense> expenses;
+
+    @Setup
+    public void setup() {
+        accountMapper = Mappers.getMapper(AccountMapper.class);
+        expenseMapper = Mappers.getMapper(ExpenseMapper.class);
+
+        account = new Account(1, "Account 1", null);
+        accountEntity = accountMapper.apiToEntity(account);
+        expense = BenchmarkData.expense(1, 1);
+        expenseEntity = expenseMapper.apiToEntity(expense);
+        expenses = BenchmarkData.expenses(1, 50);
+    }
+
+    @Benchmark
+    public AccountEntity accountApiToEntity() {
+        return accountMapper.apiToEntity(account);
+    }
+
+    @Benchmark
+    public Account accountEntityToApi() {
+        return accountMapper.entityToApi(accountEntity);
+    }
+
+    @Benchmark
+    public ExpenseEntity expenseApiToEntity() {
+        return expenseMapper.apiToEntity(expense);
+    }
+
+    @Benchmark
+    public Expense expenseEntityToApi() {
+        return expenseMapper.entityToApi(expenseEntity);
+    }
+
+    @Benchmark
+    public List<ExpenseEntity> expenseListApiToEntity() {
+        return expenseMapper.apiListToEntityList(expenses);
+    }
+}
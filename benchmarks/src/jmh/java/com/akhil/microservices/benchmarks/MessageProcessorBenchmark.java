@@ -0,0 +1,121 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
+import com.akhil.microservices.core.account.services.AccountMapper;
+import com.akhil.microservices.core.account.services.AccountServiceImpl;
+import com.akhil.microservices.core.expense.persistence.ExpenseRepository;
+import com.akhil.microservices.core.expense.services.ExpenseBatchService;
+import com.akhil.microservices.core.expense.services.ExpenseMapper;
+import com.akhil.microservices.core.expense.services.ExpenseRollupService;
+import com.akhil.microservices.core.expense.services.ExpenseServiceImpl;
+import com.akhil.microservices.util.event.EventDeduplicator;
+import com.akhil.microservices.util.http.ServiceUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The message processor lambdas of account-service and expense-service, fed with in-memory repositories. Each
+ * operation creates an entity and deletes it again, so the repositories stay small. New events are created for
+ * every operation, their event IDs would otherwise be dropped as redeliveries; creating them is part of the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageProcessorBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private Function<Flux<Message<Event<Integer, Account>>>, Mono<Void>> accountProcessor;
+    private Consumer<ExpenseEvent> expenseProcessor;
+    private Consumer<List<ExpenseEvent>> expenseBatchProcessor;
+
+    private List<Account> accounts;
+    private Expense expense;
+    private List<Expense> expenses;
+
+    @Setup
+    public void setup() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ServiceUtil serviceUtil = new ServiceUtil("0");
+
+        AccountServiceImpl accountService = new AccountServiceImpl(InMemoryRepositories.accountRepository(),
+                Mappers.getMapper(AccountMapper.class), serviceUtil);
+        accountProcessor = new com.akhil.microservices.core.account.services.MessageProcessorConfig(accountService,
+                new EventDeduplicator(null, meterRegistry, 100000, Duration.ofMinutes(10), false),
+                null, meterRegistry, 8, 3, "accountsDlq").messageProcessor();
+
+        ExpenseRepository expenseRepository = InMemoryRepositories.expenseRepository();
+        ExpenseRollupService rollupService = new ExpenseRollupService(
+                InMemoryRepositories.expenseRollupRepository(), expenseRepository, meterRegistry);
+        ExpenseMapper expenseMapper = Mappers.getMapper(ExpenseMapper.class);
+        com.akhil.microservices.core.expense.services.MessageProcessorConfig expenseConfig =
+                new com.akhil.microservices.core.expense.services.MessageProcessorConfig(
+                        new ExpenseServiceImpl(expenseRepository, rollupService, expenseMapper, serviceUtil),
+                        new ExpenseBatchService(expenseRepository, rollupService, expenseMapper),
+                        new EventDeduplicator(null, meterRegistry, 100000, Duration.ofMinutes(10), false));
+        expenseProcessor = expenseConfig.messageProcessor();
+        expenseBatchProcessor = expenseConfig.messageBatchProcessor();
+
+        accounts = new ArrayList<>();
+        for (int accountId = 1; accountId <= BATCH_SIZE; accountId++) {
+            accounts.add(new Account(accountId, "Account " + accountId, null));
+        }
+        expense = BenchmarkData.expense(1, 1);
+        expenses = BenchmarkData.expenses(2, BATCH_SIZE);
+    }
+
+    // Creates and deletes 100 accounts, the events are spread over the processor's lanes by account id
+    @Benchmark
+    @OperationsPerInvocation(2 * BATCH_SIZE)
+    public void accountEvents() {
+        accountProcessor.apply(Flux.fromIterable(accounts)
+                .flatMapIterable(account -> List.of(
+                        message(new Event<>(Event.Type.CREATE, account.getAccountId(), account)),
+                        message(new Event<>(Event.Type.DELETE, account.getAccountId(), null)))))
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public void expenseEvents() {
+        expenseProcessor.accept(new ExpenseEvent(Event.Type.CREATE, expense.getAccountId(), expense));
+        expenseProcessor.accept(new ExpenseEvent(Event.Type.DELETE, expense.getAccountId(), expense.getExpenseId()));
+    }
+
+    // A batch of 100 creates followed by the delete of the account
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE + 1)
+    public void expenseEventBatch() {
+        List<ExpenseEvent> batch = new ArrayList<>(BATCH_SIZE + 1);
+        expenses.forEach(e -> batch.add(new ExpenseEvent(Event.Type.CREATE, e.getAccountId(), e)));
+        batch.add(new ExpenseEvent(Event.Type.DELETE, 2, null));
+        expenseBatchProcessor.accept(batch);
+    }
+
+    private static Message<Event<Integer, Account>> message(Event<Integer, Account> event) {
+        return MessageBuilder.withPayload(event).build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.akhil.microservices.benchmarks;
+
+import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.PaymentMode;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading an expense CREATE event through a generic Event, with the data converted from a map afterwards,
+ * against reading it directly as an ExpenseEvent. Run with the gc profiler (enabled in the build) to compare
+ * gc.alloc.rate.norm, the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TypedEventBenchmark {
+
+    private ObjectMapper mapper;
+    private JavaType genericEventType;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = JsonMapper.builder().findAndAddModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        genericEventType = mapper.getTypeFactory().constructParametricType(Event.class, Integer.class, Object.class);
+
+        Expense expense = new Expense(1, 1, LocalDateTime.of(2024, 3, 15, 12, 30), 42.5,
+                new Category("Groceries", false), "Weekly groceries", PaymentMode.DEBIT_CARD, "Farmers market", null);
+        json = mapper.writeValueAsBytes(new Event<>(Event.Type.CREATE, 1, expense));
+    }
+
+    @Benchmark
+    public Expense mapThenConvert() throws IOException {
+        Event<Integer, Object> event = mapper.readValue(json, genericEventType);
+        return mapper.convertValue(event.getData(), Expense.class);
+    }
+
+    @Benchmark
+    public Expense typed() throws IOException {
+        ExpenseEvent event = mapper.readValue(json, ExpenseEvent.class);
+        return (Expense) event.getData();
+    }
+}
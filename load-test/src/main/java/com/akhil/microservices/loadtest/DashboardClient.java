@@ -0,0 +1,136 @@
+package com.akhil.microservices.loadtest;
+
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.composite.dashboard.ExpenseSummary;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.net.ssl.SSLException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * Calls the dashboard API through the gateway. Gets an access token with the client credentials grant from the
+ * authorization server behind the gateway and reuses it until shortly before it expires.
+ */
+public class DashboardClient implements AutoCloseable {
+
+    private record AccessToken(String value, Duration expiresIn) {
+    }
+
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final Mono<String> accessToken;
+    private final Duration timeout;
+
+    public DashboardClient(LoadTestOptions options) {
+        this.timeout = options.timeout();
+
+        // Enough connections for every request in flight, an open workload must not queue in the client
+        this.connectionProvider = ConnectionProvider.builder("load-test")
+                .maxConnections(options.maxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider);
+        if (options.insecure()) {
+            httpClient = httpClient.secure(spec -> spec.sslContext(insecureSslContext()));
+        }
+
+        ObjectMapper mapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        this.webClient = WebClient.builder()
+                .baseUrl(options.gatewayUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(mapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(mapper));
+                    codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024);
+                })
+                .build();
+
+        this.accessToken = fetchAccessToken(options.clientId(), options.clientSecret())
+                .cache(token -> token.expiresIn().minusSeconds(30), ex -> Duration.ZERO, () -> Duration.ZERO)
+                .map(AccessToken::value);
+    }
+
+    public Mono<DashboardAggregate> getDashboard(int accountId) {
+        return accessToken.flatMap(token -> webClient.get()
+                .uri("/dashboard/{accountId}", accountId)
+                .headers(headers -> headers.setBearerAuth(token))
+                .retrieve()
+                .bodyToMono(DashboardAggregate.class)
+                .timeout(timeout));
+    }
+
+    public Mono<Void> createDashboard(DashboardAggregate body) {
+        return accessToken.flatMap(token -> webClient.post()
+                .uri("/dashboard")
+                .headers(headers -> headers.setBearerAuth(token))
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .timeout(timeout));
+    }
+
+    public Mono<Void> createExpense(int accountId, ExpenseSummary body) {
+        return accessToken.flatMap(token -> webClient.post()
+                .uri("/dashboard/account/{accountId}/expense", accountId)
+                .headers(headers -> headers.setBearerAuth(token))
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .timeout(timeout));
+    }
+
+    public Mono<Void> deleteExpense(int accountId, int expenseId) {
+        return accessToken.flatMap(token -> webClient.delete()
+                .uri("/dashboard/account/{accountId}/expense/{expenseId}", accountId, expenseId)
+                .headers(headers -> headers.setBearerAuth(token))
+                .retrieve()
+                .bodyToMono(Void.class)
+                .timeout(timeout));
+    }
+
+    private Mono<AccessToken> fetchAccessToken(String clientId, String clientSecret) {
+        return webClient.post()
+                .uri("/oauth2/token")
+                .headers(headers -> headers.setBasicAuth(clientId, clientSecret))
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("grant_type", "client_credentials")
+                        .with("scope", "account:read account:write"))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(json -> new AccessToken(json.get("access_token").asText(),
+                        Duration.ofSeconds(json.path("expires_in").asLong(300))));
+    }
+
+    private static SslContext insecureSslContext() {
+        try {
+            return SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+        } catch (SSLException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.dispose();
+    }
+}
@@ -0,0 +1,122 @@
+package com.akhil.microservices.loadtest;
+
+import com.akhil.microservices.api.composite.dashboard.AccountSummary;
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.composite.dashboard.ExpenseSummary;
+import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.PaymentMode;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Generates realistic, reproducible accounts and expenses. The number of expenses per account follows a Zipf
+ * distribution, a few heavy accounts own most of the expenses while most accounts have only a handful. Categories
+ * and payment modes are drawn with fixed weights and amounts are log-normal around a median per category.
+ * An account is generated from its own seeded Random, so any account can be generated again on its own.
+ */
+public class ExpenseDataGenerator {
+
+    private record CategoryProfile(String name, int weight, double medianAmount, double spread) {
+    }
+
+    private static final List<CategoryProfile> CATEGORIES = List.of(
+            new CategoryProfile("Groceries", 25, 45, 0.6),
+            new CategoryProfile("Dining", 15, 25, 0.5),
+            new CategoryProfile("Transport", 12, 12, 0.7),
+            new CategoryProfile("Shopping", 12, 60, 0.9),
+            new CategoryProfile("Utilities", 10, 80, 0.4),
+            new CategoryProfile("Entertainment", 8, 30, 0.6),
+            new CategoryProfile("Rent", 5, 1200, 0.2),
+            new CategoryProfile("Health", 5, 50, 0.8),
+            new CategoryProfile("Travel", 4, 300, 0.9),
+            new CategoryProfile("Education", 4, 150, 0.7));
+
+    private static final PaymentMode[] PAYMENT_MODES = {
+            PaymentMode.UPI, PaymentMode.DEBIT_CARD, PaymentMode.CREDIT_CARD, PaymentMode.CASH};
+    private static final int[] PAYMENT_MODE_WEIGHTS = {40, 25, 20, 15};
+
+    private static final int HISTORY_DAYS = 365;
+
+    private final long seed;
+    private final int firstAccountId;
+    private final int[] expenseCounts;
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+    public ExpenseDataGenerator(long seed, int firstAccountId, int accounts, int maxExpenses, double exponent) {
+        this.seed = seed;
+        this.firstAccountId = firstAccountId;
+
+        // Rank r gets maxExpenses / r^exponent expenses, the ranks are shuffled over the accounts so the heavy
+        // accounts aren't all at the start of the ID range
+        List<Integer> ranks = new ArrayList<>(IntStream.rangeClosed(1, accounts).boxed().toList());
+        Collections.shuffle(ranks, new Random(seed));
+        this.expenseCounts = ranks.stream()
+                .mapToInt(rank -> (int) Math.max(1, Math.round(maxExpenses / Math.pow(rank, exponent))))
+                .toArray();
+    }
+
+    public int accounts() {
+        return expenseCounts.length;
+    }
+
+    public int accountId(int index) {
+        return firstAccountId + index;
+    }
+
+    public int expenseCount(int accountId) {
+        return expenseCounts[accountId - firstAccountId];
+    }
+
+    public long totalExpenses() {
+        return IntStream.of(expenseCounts).asLongStream().sum();
+    }
+
+    public DashboardAggregate dashboard(int accountId) {
+        Random random = new Random(seed * 31 + accountId);
+        List<ExpenseSummary> expenses = new ArrayList<>(expenseCount(accountId));
+        for (int expenseId = 1; expenseId <= expenseCount(accountId); expenseId++) {
+            expenses.add(expense(expenseId, random));
+        }
+        return new DashboardAggregate(new AccountSummary(accountId, "Account " + accountId), expenses, null);
+    }
+
+    public ExpenseSummary expense(int expenseId, Random random) {
+        CategoryProfile category = pickCategory(random);
+        double amount = category.medianAmount() * Math.exp(category.spread() * random.nextGaussian());
+        LocalDateTime transactionDateTime = now.minusSeconds(random.nextInt(HISTORY_DAYS * 24 * 60 * 60));
+
+        return new ExpenseSummary(expenseId, transactionDateTime, Math.round(amount * 100) / 100.0,
+                new Category(category.name(), random.nextInt(10) == 0),
+                category.name() + " expense " + expenseId, pickPaymentMode(random),
+                random.nextInt(4) == 0 ? "Generated by the load test" : null);
+    }
+
+    private static CategoryProfile pickCategory(Random random) {
+        int total = CATEGORIES.stream().mapToInt(CategoryProfile::weight).sum();
+        int value = random.nextInt(total);
+        for (CategoryProfile category : CATEGORIES) {
+            value -= category.weight();
+            if (value < 0) {
+                return category;
+            }
+        }
+        throw new IllegalStateException("Weights don't add up");
+    }
+
+    private static PaymentMode pickPaymentMode(Random random) {
+        int value = random.nextInt(100);
+        for (int i = 0; i < PAYMENT_MODES.length; i++) {
+            value -= PAYMENT_MODE_WEIGHTS[i];
+            if (value < 0) {
+                return PAYMENT_MODES[i];
+            }
+        }
+        throw new IllegalStateException("Weights don't add up");
+    }
+}
@@ -0,0 +1,90 @@
+package com.akhil.microservices.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records latencies per operation in HdrHistograms and prints percentiles and throughput. Recording is lock free,
+ * the histograms are taken out of the recorders when printing, so intervals can be printed while the test runs.
+ */
+public class LatencyReport {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private static class Operation {
+        private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+        private final Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+        private final LongAdder errors = new LongAdder();
+        private long reportedErrors;
+    }
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    public void recordSuccess(String operation, long latencyNanos) {
+        operation(operation).recorder.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+    }
+
+    public void recordError(String operation) {
+        operation(operation).errors.increment();
+    }
+
+    public void recordDropped() {
+        dropped.increment();
+    }
+
+    /**
+     * Discards everything recorded so far, used at the end of the warmup.
+     */
+    public synchronized void reset() {
+        operations.values().forEach(operation -> {
+            operation.recorder.reset();
+            operation.total.reset();
+            operation.reportedErrors = operation.errors.sum();
+        });
+        dropped.reset();
+    }
+
+    public synchronized void printInterval(PrintStream out, Duration interval) {
+        operations.forEach((name, operation) -> {
+            Histogram histogram = operation.recorder.getIntervalHistogram();
+            operation.total.add(histogram);
+            out.printf("%-16s %8.1f req/s  p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms%n", name,
+                    histogram.getTotalCount() * 1000.0 / interval.toMillis(),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getMaxValue()));
+        });
+    }
+
+    public synchronized void printSummary(PrintStream out, Duration elapsed) {
+        out.printf("%n%-16s %10s %10s %10s %10s %10s %10s %10s %8s%n", "operation", "count", "req/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+
+        operations.forEach((name, operation) -> {
+            operation.total.add(operation.recorder.getIntervalHistogram());
+            Histogram histogram = operation.total;
+            out.printf("%-16s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %10.2f %8d%n", name,
+                    histogram.getTotalCount(), histogram.getTotalCount() * 1000.0 / elapsed.toMillis(),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()), operation.errors.sum() - operation.reportedErrors);
+        });
+
+        out.printf("%nArrivals dropped because too many requests were in flight: %d%n", dropped.sum());
+    }
+
+    private Operation operation(String name) {
+        return operations.computeIfAbsent(name, k -> new Operation());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
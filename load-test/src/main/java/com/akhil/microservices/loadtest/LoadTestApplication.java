@@ -0,0 +1,75 @@
+package com.akhil.microservices.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Seeds the system landscape with generated accounts and expenses and drives a mixed dashboard workload through
+ * the gateway, for example:
+ * <pre>
+ * ./gradlew :load-test:run --args="--mode=all --accounts=1000 --rate=200 --duration=5m"
+ * </pre>
+ * All requests are sent with the token of one OAuth client, which the gateway rate limits as a single client.
+ * Run the gateway with the load_test profile, e.g. SPRING_PROFILES_ACTIVE=docker,load_test, or most requests are
+ * answered with 429.
+ */
+public class LoadTestApplication {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestApplication.class);
+
+    public static void main(String[] args) throws InterruptedException {
+
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(LoadTestOptions.USAGE);
+            System.exit(1);
+            return;
+        }
+
+        ExpenseDataGenerator generator = new ExpenseDataGenerator(options.seed(), options.firstAccountId(),
+                options.accounts(), options.maxExpenses(), options.expenseExponent());
+        LOG.info("Generates {} accounts with {} expenses in total, the heaviest account has {}",
+                generator.accounts(), generator.totalExpenses(), options.maxExpenses());
+
+        try (DashboardClient client = new DashboardClient(options)) {
+            switch (options.mode()) {
+                case "seed-mongo" -> new MongoSeeder(generator, options.mongoUri(), options.seedConcurrency()).seed();
+                case "seed-api" -> seedThroughApi(client, generator, options);
+                case "run" -> new OpenModelWorkload(client, generator, options).run(System.out);
+                case "all" -> {
+                    seedThroughApi(client, generator, options);
+                    new OpenModelWorkload(client, generator, options).run(System.out);
+                }
+                default -> {
+                    System.err.println("Unknown mode: " + options.mode());
+                    System.err.println(LoadTestOptions.USAGE);
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    // Each dashboard is created in one request, large ones go through the bulk import of the dashboard service
+    private static void seedThroughApi(DashboardClient client, ExpenseDataGenerator generator,
+                                       LoadTestOptions options) {
+        long start = System.nanoTime();
+        Long failed = Flux.range(0, generator.accounts())
+                .map(generator::accountId)
+                .flatMap(accountId -> client.createDashboard(generator.dashboard(accountId))
+                        .thenReturn(0L)
+                        .onErrorResume(ex -> {
+                            LOG.warn("Failed to seed account {}: {}", accountId, ex.toString());
+                            return Mono.just(1L);
+                        }), options.seedConcurrency())
+                .reduce(0L, Long::sum)
+                .block();
+
+        LOG.info("Seeded {} accounts through the API in {} ms, {} failed", generator.accounts(),
+                (System.nanoTime() - start) / 1_000_000, failed);
+    }
+}
@@ -0,0 +1,99 @@
+package com.akhil.microservices.loadtest;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Options of the load test, given as --name=value arguments. Durations use the ISO-8601 format without the PT
+ * prefix, for example --duration=5m.
+ */
+public record LoadTestOptions(
+        String mode,
+        String gatewayUrl,
+        String clientId,
+        String clientSecret,
+        boolean insecure,
+        int accounts,
+        int firstAccountId,
+        int maxExpenses,
+        double expenseExponent,
+        double accessExponent,
+        long seed,
+        String mongoUri,
+        int seedConcurrency,
+        double rate,
+        Duration warmup,
+        Duration duration,
+        double readRatio,
+        int maxInFlight,
+        Duration timeout) {
+
+    public static final String USAGE = """
+            Usage: load-test [--name=value ...]
+              --mode=seed-api|seed-mongo|run|all  what to do (run)
+              --gateway-url=URL                   gateway base URL (https://localhost:8443)
+              --client-id, --client-secret        OAuth client for client_credentials (writer/secret-writer)
+              --insecure=true|false               trust the gateway's self-signed certificate (true)
+              --accounts=N                        accounts to seed and drive (1000)
+              --first-account-id=N                ID of the first account (1000001)
+              --max-expenses=N                    expenses of the heaviest account (500)
+              --expense-exponent=S                Zipf exponent of the expenses per account (1.0)
+              --access-exponent=S                 Zipf exponent of the accounts hit by the workload (1.1)
+              --seed=N                            random seed of the data generator (42)
+              --mongo-uri=URI                     MongoDB for --mode=seed-mongo (mongodb://localhost:27017)
+              --seed-concurrency=N                parallel requests or inserts while seeding (8)
+              --rate=R                            arrivals per second of the workload (100)
+              --warmup=D                          warmup not included in the report (10s)
+              --duration=D                        measured duration (60s)
+              --read-ratio=F                      share of dashboard reads, the rest are writes (0.8)
+              --max-in-flight=N                   requests in flight before arrivals are dropped (2000)
+              --timeout=D                         timeout of a request (10s)
+            """;
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                string(values, "mode", "run"),
+                string(values, "gateway-url", "https://localhost:8443"),
+                string(values, "client-id", "writer"),
+                string(values, "client-secret", "secret-writer"),
+                Boolean.parseBoolean(string(values, "insecure", "true")),
+                Integer.parseInt(string(values, "accounts", "1000")),
+                Integer.parseInt(string(values, "first-account-id", "1000001")),
+                Integer.parseInt(string(values, "max-expenses", "500")),
+                Double.parseDouble(string(values, "expense-exponent", "1.0")),
+                Double.parseDouble(string(values, "access-exponent", "1.1")),
+                Long.parseLong(string(values, "seed", "42")),
+                string(values, "mongo-uri", "mongodb://localhost:27017"),
+                Integer.parseInt(string(values, "seed-concurrency", "8")),
+                Double.parseDouble(string(values, "rate", "100")),
+                duration(string(values, "warmup", "10s")),
+                duration(string(values, "duration", "60s")),
+                Double.parseDouble(string(values, "read-ratio", "0.8")),
+                Integer.parseInt(string(values, "max-in-flight", "2000")),
+                duration(string(values, "timeout", "10s")));
+
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        return options;
+    }
+
+    private static String string(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static Duration duration(String value) {
+        return Duration.parse("PT" + value.toUpperCase());
+    }
+}
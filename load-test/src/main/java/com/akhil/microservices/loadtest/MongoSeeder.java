@@ -0,0 +1,96 @@
+package com.akhil.microservices.loadtest;
+
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.composite.dashboard.ExpenseSummary;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Seeds the account and expense databases directly, bypassing the services. Much faster than going through the
+ * API for large data sets, but the expense rollups are not updated: rebuild them afterwards with
+ * POST /actuator/expenserollups on the expense service. Documents are written the way Spring Data maps the
+ * entities, inserts are unordered so accounts already present are skipped on the unique indexes.
+ */
+public class MongoSeeder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoSeeder.class);
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final ExpenseDataGenerator generator;
+    private final String mongoUri;
+    private final int concurrency;
+
+    public MongoSeeder(ExpenseDataGenerator generator, String mongoUri, int concurrency) {
+        this.generator = generator;
+        this.mongoUri = mongoUri;
+        this.concurrency = concurrency;
+    }
+
+    public void seed() {
+        try (MongoClient client = MongoClients.create(mongoUri)) {
+            MongoCollection<Document> accounts = client.getDatabase("account-db").getCollection("accounts");
+            MongoCollection<Document> expenses = client.getDatabase("expense-db").getCollection("expenses");
+
+            long start = System.nanoTime();
+            Long inserted = Flux.range(0, generator.accounts())
+                    .map(generator::accountId)
+                    .map(generator::dashboard)
+                    .flatMap(dashboard -> insert(accounts, List.of(accountDocument(dashboard)))
+                            .then(Flux.fromIterable(dashboard.getExpenses())
+                                    .map(expense -> expenseDocument(dashboard.getAccount().getAccountId(), expense))
+                                    .buffer(CHUNK_SIZE)
+                                    .concatMap(chunk -> insert(expenses, chunk))
+                                    .reduce(0L, Long::sum)), concurrency)
+                    .reduce(0L, Long::sum)
+                    .block();
+
+            LOG.info("Inserted {} accounts and {} expenses in {} ms, rebuild the rollups with "
+                            + "POST /actuator/expenserollups on the expense service", generator.accounts(), inserted,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private Mono<Long> insert(MongoCollection<Document> collection, List<Document> documents) {
+        return Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false)))
+                .map(result -> (long) result.getInsertedIds().size())
+                .onErrorResume(MongoBulkWriteException.class, ex -> {
+                    LOG.debug("Skipped {} existing documents", ex.getWriteErrors().size());
+                    return Mono.just((long) ex.getWriteResult().getInsertedCount());
+                });
+    }
+
+    private static Document accountDocument(DashboardAggregate dashboard) {
+        return new Document("accountId", dashboard.getAccount().getAccountId())
+                .append("name", dashboard.getAccount().getName())
+                .append("version", 0);
+    }
+
+    private static Document expenseDocument(int accountId, ExpenseSummary expense) {
+        return new Document("accountId", accountId)
+                .append("expenseId", expense.getExpenseId())
+                .append("transactionDateTime",
+                        Date.from(expense.getTransactionDateTime().atZone(ZoneId.systemDefault()).toInstant()))
+                .append("amount", new Decimal128(expense.getAmount().toBigDecimal()))
+                .append("currency", expense.getAmount().getCurrency())
+                .append("category", new Document("name", expense.getCategory().getName())
+                        .append("isFavourite", expense.getCategory().isFavourite()))
+                .append("description", expense.getDescription())
+                .append("paymentMode", expense.getPaymentMode().name())
+                .append("notes", expense.getNotes())
+                .append("version", 0);
+    }
+}
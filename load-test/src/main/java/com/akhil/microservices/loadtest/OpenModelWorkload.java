@@ -0,0 +1,150 @@
+package com.akhil.microservices.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Open model workload: requests arrive at a fixed rate whether or not earlier ones have completed, like users
+ * of the real system would. The latency of a request is measured from its intended start, so time spent
+ * waiting behind a slow system is included in the percentiles instead of being hidden by a slowed down client.
+ * Arrivals are dropped and counted when too many requests are in flight, to protect the load generator.
+ * <p>
+ * Accounts are picked with a Zipf distribution, a few hot accounts get most of the traffic. Reads get the
+ * dashboard, writes create an expense or delete one created earlier in the run.
+ */
+public class OpenModelWorkload {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OpenModelWorkload.class);
+
+    private static final Duration REPORT_INTERVAL = Duration.ofSeconds(10);
+    private static final double DELETE_RATIO = 0.3;
+
+    private final DashboardClient client;
+    private final ExpenseDataGenerator generator;
+    private final LoadTestOptions options;
+    private final LatencyReport report = new LatencyReport();
+
+    private final ZipfDistribution accessDistribution;
+    private final List<Integer> accountsByRank;
+    private final Map<Integer, AtomicInteger> nextExpenseIds = new ConcurrentHashMap<>();
+    private final Map<Integer, Deque<Integer>> createdExpenseIds = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public OpenModelWorkload(DashboardClient client, ExpenseDataGenerator generator, LoadTestOptions options) {
+        this.client = client;
+        this.generator = generator;
+        this.options = options;
+        this.accessDistribution = new ZipfDistribution(generator.accounts(), options.accessExponent());
+
+        this.accountsByRank = new ArrayList<>(IntStream.range(0, generator.accounts())
+                .mapToObj(generator::accountId).toList());
+        Collections.shuffle(accountsByRank, new Random(options.seed() + 1));
+    }
+
+    public void run(PrintStream out) throws InterruptedException {
+
+        Random random = new Random(options.seed());
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate());
+        long start = System.nanoTime();
+        long measureStart = start + options.warmup().toNanos();
+        long end = measureStart + options.duration().toNanos();
+        boolean warmingUp = !options.warmup().isZero();
+
+        LOG.info("Runs {} arrivals/s for {} after a warmup of {}", options.rate(), options.duration(),
+                options.warmup());
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> report.printInterval(out, REPORT_INTERVAL),
+                REPORT_INTERVAL.toMillis(), REPORT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+        try {
+            for (long arrival = 0; ; arrival++) {
+                long intendedStart = start + arrival * intervalNanos;
+                if (intendedStart >= end) {
+                    break;
+                }
+
+                long delay = intendedStart - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+
+                if (warmingUp && intendedStart >= measureStart) {
+                    report.reset();
+                    warmingUp = false;
+                }
+
+                if (inFlight.get() >= options.maxInFlight()) {
+                    report.recordDropped();
+                    continue;
+                }
+
+                int accountId = accountsByRank.get(accessDistribution.sample(random) - 1);
+                boolean read = random.nextDouble() < options.readRatio();
+                fire(read ? "read-dashboard" : "write-expense",
+                        read ? client.getDashboard(accountId).then() : write(accountId, random), intendedStart);
+            }
+
+            // Let the requests in flight complete, they were issued in the measured period
+            long drainDeadline = System.nanoTime() + options.timeout().toNanos();
+            while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            reporter.shutdownNow();
+            reporter.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        report.printSummary(out, options.duration());
+    }
+
+    private Mono<Void> write(int accountId, Random random) {
+        Deque<Integer> created = createdExpenseIds.computeIfAbsent(accountId, k -> new ConcurrentLinkedDeque<>());
+        if (random.nextDouble() < DELETE_RATIO) {
+            Integer expenseId = created.pollLast();
+            if (expenseId != null) {
+                return client.deleteExpense(accountId, expenseId);
+            }
+        }
+
+        // New expenses get IDs above the seeded ones, so they never collide with them
+        int expenseId = nextExpenseIds
+                .computeIfAbsent(accountId, k -> new AtomicInteger(generator.expenseCount(accountId)))
+                .incrementAndGet();
+        return client.createExpense(accountId, generator.expense(expenseId, random))
+                .doOnSuccess(v -> created.addLast(expenseId));
+    }
+
+    private void fire(String operation, Mono<Void> request, long intendedStart) {
+        inFlight.incrementAndGet();
+        request.subscribe(
+                null,
+                ex -> {
+                    inFlight.decrementAndGet();
+                    report.recordError(operation);
+                    LOG.debug("{} failed: {}", operation, ex.toString());
+                },
+                () -> {
+                    inFlight.decrementAndGet();
+                    report.recordSuccess(operation, System.nanoTime() - intendedStart);
+                });
+    }
+}
@@ -0,0 +1,51 @@
+package com.akhil.microservices.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf distribution over the ranks 1..n, the probability of rank k is proportional to 1 / k^exponent. Samples
+ * with a binary search in the precomputed cumulative distribution.
+ */
+public class ZipfDistribution {
+
+    private final double exponent;
+    private final double[] cumulative;
+
+    public ZipfDistribution(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1: " + n);
+        }
+        this.exponent = exponent;
+        this.cumulative = new double[n];
+
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cumulative[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+
+    public double exponent() {
+        return exponent;
+    }
+
+    /**
+     * Returns a rank in 1..n, rank 1 being the most frequent one.
+     */
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index + 1 : -index, cumulative.length);
+    }
+
+    public double probability(int rank) {
+        return rank == 1 ? cumulative[0] : cumulative[rank - 1] - cumulative[rank - 2];
+    }
+}
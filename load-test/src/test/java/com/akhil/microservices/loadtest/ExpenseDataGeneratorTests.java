@@ -0,0 +1,62 @@
+package com.akhil.microservices.loadtest;
+
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.composite.dashboard.ExpenseSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpenseDataGeneratorTests {
+
+    @Test
+    void zipfFavoursLowRanks() {
+
+        ZipfDistribution zipf = new ZipfDistribution(100, 1.0);
+        Random random = new Random(1);
+        int[] counts = new int[101];
+        for (int i = 0; i < 100_000; i++) {
+            counts[zipf.sample(random)]++;
+        }
+
+        assertEquals(0, counts[0]);
+        assertEquals(zipf.probability(1), counts[1] / 100_000.0, 0.01);
+        assertTrue(counts[1] > 5 * counts[10]);
+        assertEquals(100_000, IntStream.of(counts).sum());
+    }
+
+    @Test
+    void expenseCountsAreSkewed() {
+
+        ExpenseDataGenerator generator = new ExpenseDataGenerator(42, 1, 1000, 500, 1.0);
+
+        int[] counts = IntStream.rangeClosed(1, 1000).map(generator::expenseCount).sorted().toArray();
+        assertEquals(1, counts[0]);
+        assertEquals(500, counts[999]);
+        assertTrue(counts[500] < 5);
+    }
+
+    @Test
+    void accountsAreReproducible() {
+
+        ExpenseDataGenerator generator = new ExpenseDataGenerator(42, 1, 100, 50, 1.0);
+        int accountId = IntStream.rangeClosed(1, 100).filter(id -> generator.expenseCount(id) == 50)
+                .findFirst().orElseThrow();
+
+        DashboardAggregate first = generator.dashboard(accountId);
+        DashboardAggregate second = generator.dashboard(accountId);
+
+        assertEquals(50, first.getExpenses().size());
+        for (int i = 0; i < first.getExpenses().size(); i++) {
+            ExpenseSummary expense = first.getExpenses().get(i);
+            assertEquals(i + 1, expense.getExpenseId());
+            assertEquals(expense.getAmount(), second.getExpenses().get(i).getAmount());
+            assertEquals(expense.getCategory().getName(), second.getExpenses().get(i).getCategory().getName());
+            assertEquals(expense.getPaymentMode(), second.getExpenses().get(i).getPaymentMode());
+            assertTrue(expense.getAmount().getMinorUnits() > 0);
+        }
+    }
+}
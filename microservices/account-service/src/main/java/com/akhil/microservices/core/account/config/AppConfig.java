@@ -0,0 +1,22 @@
+package com.akhil.microservices.core.account.config;
+
+import com.akhil.microservices.util.event.EventDeduplicator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import java.time.Duration;
+
+@Configuration
+public class AppConfig {
+
+    @Bean
+    public EventDeduplicator eventDeduplicator(ReactiveMongoOperations mongoOperations, MeterRegistry meterRegistry,
+                                               @Value("${app.event-dedupe.max-size:100000}") int maxSize,
+                                               @Value("${app.event-dedupe.ttl:10m}") Duration ttl,
+                                               @Value("${app.event-dedupe.persistent:false}") boolean persistent) {
+        return new EventDeduplicator(mongoOperations, meterRegistry, maxSize, ttl, persistent);
+    }
+}
@@ -4,13 +4,37 @@ import com.akhil.microservices.api.core.account.Account;
 import com.akhil.microservices.api.core.account.AccountService;
 import com.akhil.microservices.api.event.Event;
 import com.akhil.microservices.api.exceptions.EventProcessingException;
+import com.akhil.microservices.util.event.CborMessageConverter;
+import com.akhil.microservices.util.event.EventDeduplicator;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.config.ListenerContainerCustomizer;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
-import java.util.function.Consumer;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @Configuration
 public class MessageProcessorConfig {
@@ -18,41 +42,208 @@ public class MessageProcessorConfig {
     private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
 
     private final AccountService accountService;
+    private final EventDeduplicator eventDeduplicator;
+    private final StreamBridge streamBridge;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final String deadLetterBinding;
+
+    private final AtomicInteger inFlightWrites = new AtomicInteger();
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+    private final Counter deadLetteredCounter;
+    private final Timer writeTimer;
 
     @Autowired
-    public MessageProcessorConfig(AccountService accountService) {
+    public MessageProcessorConfig(AccountService accountService, EventDeduplicator eventDeduplicator,
+                                  StreamBridge streamBridge, MeterRegistry meterRegistry,
+                                  @Value("${app.message-processor.concurrency:8}") int concurrency,
+                                  @Value("${app.message-processor.max-attempts:3}") int maxAttempts,
+                                  @Value("${app.message-processor.dead-letter-binding:accountsDlq}")
+                                  String deadLetterBinding) {
         this.accountService = accountService;
+        this.eventDeduplicator = eventDeduplicator;
+        this.streamBridge = streamBridge;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.deadLetterBinding = deadLetterBinding;
+
+        Gauge.builder("account.events.inflight", inFlightWrites, AtomicInteger::get)
+                .description("Account event writes currently waiting for MongoDB")
+                .register(meterRegistry);
+        this.processedCounter = Counter.builder("account.events.processed").register(meterRegistry);
+        this.failedCounter = Counter.builder("account.events.failed").register(meterRegistry);
+        this.deadLetteredCounter = Counter.builder("account.events.dead-lettered").register(meterRegistry);
+        this.writeTimer = Timer.builder("account.events.write").register(meterRegistry);
+    }
+
+    @Bean
+    public MessageConverter cborMessageConverter() {
+        return new CborMessageConverter();
     }
 
+    // The lanes acknowledge Kafka records out of order. With async acks the container only commits an offset once
+    // every record before it is acknowledged, so a record still in flight or not yet dead-lettered is never skipped
     @Bean
-    public Consumer<Event<Integer, Account>> messageProcessor() {
-
-        return event -> {
-
-            LOG.info("Process message created at {}...", event.getEventCreatedAt());
-
-            switch (event.getType()) {
-                case CREATE -> {
-                    Account account = event.getData();
-                    LOG.info("Create account with ID: {}", account.getAccountId());
-                    accountService.createAccount(account).block();
-                }
-
-                case DELETE -> {
-                    int accountId = event.getKey();
-                    LOG.info("Delete account with AccountID: {}", accountId);
-                    accountService.deleteAccount(accountId).block();
-                }
-
-                default -> {
-                    String errorMessage = "Incorrect event type: " + event.getType() +
-                            ", expected a CREATE or DELETE event";
-                    LOG.warn(errorMessage);
-                    throw new EventProcessingException(errorMessage);
-                }
+    public ListenerContainerCustomizer<AbstractMessageListenerContainer<?, ?>> kafkaAsyncAcksCustomizer() {
+        return (container, destination, group) -> container.getContainerProperties().setAsyncAcks(true);
+    }
+
+    @Bean
+    public Function<Flux<Message<Event<Integer, Account>>>, Mono<Void>> messageProcessor() {
+
+        // Events are spread over a fixed number of lanes by partition key. Each lane writes one event at a time,
+        // so events for the same account keep their order while different accounts are written concurrently
+        return messages -> messages
+                .groupBy(message -> Math.floorMod(partitionKey(message.getPayload()), concurrency))
+                .flatMap(lane -> lane.concatMap(this::processMessage), concurrency)
+                .then();
+    }
+
+    private Mono<Void> processMessage(Message<Event<Integer, Account>> message) {
+
+        Event<Integer, Account> event = message.getPayload();
+        LOG.info("Process message created at {}...", event.getEventCreatedAt());
+
+        Mono<Void> writeWithRetry = Mono.defer(() -> write(event))
+                .retryWhen(Retry.backoff(maxAttempts - 1L, Duration.ofMillis(500))
+                        .maxBackoff(Duration.ofSeconds(1))
+                        .filter(ex -> !(ex instanceof EventProcessingException)));
+
+        // A redelivery hashes to the same lane, so it is only checked once the original has finished
+        return eventDeduplicator.isDuplicate(event)
+                .flatMap(duplicate -> {
+                    if (duplicate) {
+                        LOG.info("Skips already processed event with ID: {}", event.getEventId());
+                        return Mono.<Void>empty();
+                    }
+                    return timed(writeWithRetry).then(eventDeduplicator.markProcessed(event));
+                })
+                .doOnSuccess(v -> {
+                    acknowledge(message);
+                    processedCounter.increment();
+                    LOG.info("Message processing done!");
+                })
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to process message with key: {}, error: {}", event.getKey(), ex.toString());
+                    failedCounter.increment();
+                    return reject(message, ex);
+                });
+    }
+
+    private Mono<Void> timed(Mono<Void> write) {
+        return Mono.defer(() -> {
+            inFlightWrites.incrementAndGet();
+            Timer.Sample sample = Timer.start();
+            return write.doFinally(signal -> {
+                sample.stop(writeTimer);
+                inFlightWrites.decrementAndGet();
+            });
+        });
+    }
+
+    private Mono<Void> write(Event<Integer, Account> event) {
+
+        return switch (event.getType()) {
+            case CREATE -> {
+                Account account = event.getData();
+                LOG.info("Create account with ID: {}", account.getAccountId());
+                yield accountService.createAccount(account).then();
             }
 
-            LOG.info("Message processing done!");
+            case DELETE -> {
+                int accountId = event.getKey();
+                LOG.info("Delete account with AccountID: {}", accountId);
+                yield accountService.deleteAccount(accountId);
+            }
+
+            default -> {
+                String errorMessage = "Incorrect event type: " + event.getType() +
+                        ", expected a CREATE or DELETE event";
+                LOG.warn(errorMessage);
+                yield Mono.error(new EventProcessingException(errorMessage));
+            }
         };
     }
+
+    private int partitionKey(Event<Integer, Account> event) {
+        return event.getKey() == null ? 0 : event.getKey();
+    }
+
+    private void acknowledge(Message<?> message) {
+        Acknowledgment acknowledgment = message.getHeaders().get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+        if (acknowledgment != null) {
+            acknowledgment.acknowledge();
+        }
+
+        Channel channel = message.getHeaders().get(AmqpHeaders.CHANNEL, Channel.class);
+        Long deliveryTag = message.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
+        if (channel != null && deliveryTag != null) {
+            try {
+                channel.basicAck(deliveryTag, false);
+            } catch (IOException ex) {
+                LOG.warn("Failed to acknowledge message: {}", ex.toString());
+            }
+        }
+    }
+
+    // A rejected RabbitMQ message is routed to the DLQ by the queue's dead letter exchange. Kafka has no per-record
+    // reject, so the record is published to the DLQ topic and only acknowledged once the broker has accepted it
+    private Mono<Void> reject(Message<Event<Integer, Account>> message, Throwable error) {
+        Channel channel = message.getHeaders().get(AmqpHeaders.CHANNEL, Channel.class);
+        Long deliveryTag = message.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class);
+        if (channel != null && deliveryTag != null) {
+            try {
+                channel.basicNack(deliveryTag, false, false);
+            } catch (IOException ex) {
+                LOG.warn("Failed to reject message: {}", ex.toString());
+            }
+            return Mono.empty();
+        }
+
+        Acknowledgment acknowledgment = message.getHeaders().get(KafkaHeaders.ACKNOWLEDGMENT, Acknowledgment.class);
+        if (acknowledgment == null) {
+            return Mono.empty();
+        }
+
+        // Publishing is blocking with a sync producer. If it keeps failing the record stays unacknowledged, so its
+        // offset isn't committed and it is redelivered after a restart or rebalance
+        return Mono.fromCallable(() -> streamBridge.send(deadLetterBinding, deadLetter(message, error)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(() -> new EventProcessingException("Dead letter not accepted")))
+                .retryWhen(Retry.backoff(maxAttempts - 1L, Duration.ofMillis(500)).maxBackoff(Duration.ofSeconds(1)))
+                .doOnSuccess(sent -> {
+                    acknowledgment.acknowledge();
+                    deadLetteredCounter.increment();
+                })
+                .onErrorResume(ex -> {
+                    LOG.error("Failed to publish message with key: {} to the DLQ, leaves it unacknowledged: {}",
+                            message.getPayload().getKey(), ex.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Message<Event<Integer, Account>> deadLetter(Message<Event<Integer, Account>> message, Throwable error) {
+        MessageBuilder<Event<Integer, Account>> deadLetter = MessageBuilder.withPayload(message.getPayload())
+                .setHeader(KafkaHeaders.DLT_EXCEPTION_FQCN, error.getClass().getName())
+                .setHeader(KafkaHeaders.DLT_EXCEPTION_MESSAGE, String.valueOf(error.getMessage()));
+
+        Object key = message.getHeaders().get(KafkaHeaders.RECEIVED_KEY);
+        if (key != null) {
+            deadLetter.setHeader(KafkaHeaders.KEY, key);
+        }
+        copyHeader(message, deadLetter, KafkaHeaders.RECEIVED_TOPIC, KafkaHeaders.DLT_ORIGINAL_TOPIC);
+        copyHeader(message, deadLetter, KafkaHeaders.RECEIVED_PARTITION, KafkaHeaders.DLT_ORIGINAL_PARTITION);
+        copyHeader(message, deadLetter, KafkaHeaders.OFFSET, KafkaHeaders.DLT_ORIGINAL_OFFSET);
+        return deadLetter.build();
+    }
+
+    private void copyHeader(Message<?> from, MessageBuilder<?> to, String fromHeader, String toHeader) {
+        Object value = from.getHeaders().get(fromHeader);
+        if (value != null) {
+            to.setHeader(toHeader, value);
+        }
+    }
 }
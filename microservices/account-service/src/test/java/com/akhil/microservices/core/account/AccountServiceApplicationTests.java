@@ -4,18 +4,34 @@ import com.akhil.microservices.api.core.account.Account;
 import com.akhil.microservices.api.event.Event;
 import com.akhil.microservices.api.exceptions.InvalidInputException;
 import com.akhil.microservices.core.account.persistence.AccountRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.http.HttpStatus;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
@@ -32,9 +48,15 @@ class AccountServiceApplicationTests extends MongoDbTestBase {
 	@Autowired
 	private AccountRepository repository;
 
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@MockBean
+	private StreamBridge streamBridge;
+
 	@Autowired
 	@Qualifier("messageProcessor")
-	private Consumer<Event<Integer, Account>> messageProcessor;
+	private Function<Flux<Message<Event<Integer, Account>>>, Mono<Void>> messageProcessor;
 
 	@BeforeEach
 	void setupDb() {
@@ -90,6 +112,64 @@ class AccountServiceApplicationTests extends MongoDbTestBase {
 		sendDeleteAccountEvent(accountId);
 	}
 
+	@Test
+	void processEventsConcurrently() {
+
+		double processedBefore = meterRegistry.get("account.events.processed").counter().count();
+
+		messageProcessor.apply(Flux.range(1, 20)
+				.map(accountId -> new Event<>(Event.Type.CREATE, accountId,
+						new Account(accountId, "Name " + accountId, "SA")))
+				.map(event -> MessageBuilder.withPayload(event).build()))
+				.block();
+
+		assertEquals(20, repository.count().block());
+		assertEquals(processedBefore + 20, meterRegistry.get("account.events.processed").counter().count());
+		assertEquals(0.0, meterRegistry.get("account.events.inflight").gauge().value());
+	}
+
+	@Test
+	void redeliveredEventIsSkipped() {
+
+		double hitsBefore = meterRegistry.get("events.dedupe").tag("result", "hit").counter().count();
+
+		Event<Integer, Account> event = new Event<>(Event.Type.CREATE, 1, new Account(1, "Name 1", "SA"));
+		sendEvent(event);
+		sendEvent(event);
+
+		assertEquals(1, repository.count().block());
+		assertEquals(hitsBefore + 1, meterRegistry.get("events.dedupe").tag("result", "hit").counter().count());
+	}
+
+	@Test
+	void failedKafkaRecordIsDeadLettered() {
+
+		when(streamBridge.send(eq("accountsDlq"), any())).thenReturn(true);
+		Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+		Event<Integer, Account> event = new Event<>(Event.Type.BULK_CREATE, 1, null);
+		sendKafkaRecord(event, acknowledgment);
+
+		ArgumentCaptor<Object> deadLetter = ArgumentCaptor.forClass(Object.class);
+		verify(streamBridge).send(eq("accountsDlq"), deadLetter.capture());
+		Message<?> message = assertInstanceOf(Message.class, deadLetter.getValue());
+		assertSame(event, message.getPayload());
+		assertEquals(1, message.getHeaders().get(KafkaHeaders.KEY));
+		assertEquals("accounts", message.getHeaders().get(KafkaHeaders.DLT_ORIGINAL_TOPIC));
+		verify(acknowledgment).acknowledge();
+	}
+
+	@Test
+	void kafkaRecordStaysUnacknowledgedWhenDeadLetterFails() {
+
+		when(streamBridge.send(eq("accountsDlq"), any())).thenThrow(new IllegalStateException("broker down"));
+		Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+		sendKafkaRecord(new Event<>(Event.Type.BULK_CREATE, 1, null), acknowledgment);
+
+		verify(acknowledgment, never()).acknowledge();
+	}
+
 	@Test
 	@Disabled
 	void getAccountInvalidParameterString() {
@@ -135,11 +215,23 @@ class AccountServiceApplicationTests extends MongoDbTestBase {
 	private void sendCreateAccountEvent(int accountId) {
 		Account account = new Account(accountId, "Name " + accountId, "SA");
 		Event<Integer, Account> event = new Event<>(Event.Type.CREATE, accountId, account);
-		messageProcessor.accept(event);
+		sendEvent(event);
 	}
 
 	private void sendDeleteAccountEvent(int accountId) {
 		Event<Integer, Account> event = new Event<>(Event.Type.DELETE, accountId, null);
-		messageProcessor.accept(event);
+		sendEvent(event);
+	}
+
+	private void sendKafkaRecord(Event<Integer, Account> event, Acknowledgment acknowledgment) {
+		messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event)
+				.setHeader(KafkaHeaders.ACKNOWLEDGMENT, acknowledgment)
+				.setHeader(KafkaHeaders.RECEIVED_KEY, event.getKey())
+				.setHeader(KafkaHeaders.RECEIVED_TOPIC, "accounts")
+				.build())).block();
+	}
+
+	private void sendEvent(Event<Integer, Account> event) {
+		messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
 	}
 }
@@ -1,12 +1,15 @@
 package com.akhil.microservices.composite.dashboard;
 
+import com.akhil.microservices.composite.dashboard.config.LoadBalancerConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.ComponentScan;
 import reactor.core.publisher.Hooks;
 
 @SpringBootApplication
 @ComponentScan("com.akhil")
+@LoadBalancerClients(defaultConfiguration = LoadBalancerConfig.class)
 public class DashboardServiceApplication {
 
 	public static void main(String[] args) {
@@ -1,5 +1,12 @@
 package com.akhil.microservices.composite.dashboard.config;
 
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
+import com.akhil.microservices.composite.dashboard.services.AccountCache;
+import com.akhil.microservices.composite.dashboard.services.etag.DashboardVersions;
+import com.akhil.microservices.composite.dashboard.services.projection.DashboardProjection;
+import com.akhil.microservices.util.event.CborMessageConverter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -12,16 +19,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cloud.client.loadbalancer.LoadBalanced;
-import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+import java.util.function.Consumer;
+
 @Component
 public class AppConfig {
 
@@ -69,13 +78,58 @@ public class AppConfig {
 
     @Bean
     @Primary
-    ObjectMapper mapper() {
+    public ObjectMapper mapper() {
         return JsonMapper.builder()
                 .findAndAddModules()
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
                 .build();
     }
 
+    // Makes the exchange available in the Reactor context, the service marks partial dashboards on it
+    @Bean
+    public ServerWebExchangeContextFilter serverWebExchangeContextFilter() {
+        return new ServerWebExchangeContextFilter();
+    }
+
+    @Bean
+    public MessageConverter cborMessageConverter() {
+        return new CborMessageConverter();
+    }
+
+    // Lets every dashboard instance drop its cached copy, and bump the dashboard version, when an account change
+    // is published by any instance.
+    // Bound to the accounts topic without a consumer group, so each instance receives all events
+    @Bean
+    @ConditionalOnProperty(name = "app.account-cache.sync-enabled", havingValue = "true")
+    public Consumer<Event<Integer, ?>> accountCacheInvalidator(AccountCache accountCache,
+                                                               DashboardVersions versions) {
+        return event -> {
+            accountCache.invalidate(event.getKey());
+            versions.bump(event.getKey());
+        };
+    }
+
+    // Keeps the dashboard projection up to date and bumps the dashboard version once the change is applied to it.
+    // Bound to the accounts and expenses topics without a consumer group, so each instance receives all events
+    @Bean
+    @ConditionalOnProperty(name = "app.projection.enabled", havingValue = "true")
+    public Consumer<Event<Integer, Account>> accountProjection(DashboardProjection projection,
+                                                              DashboardVersions versions) {
+        return event -> {
+            projection.apply(event);
+            versions.bump(event.getKey());
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.projection.enabled", havingValue = "true")
+    public Consumer<ExpenseEvent> expenseProjection(DashboardProjection projection, DashboardVersions versions) {
+        return event -> {
+            projection.apply(event);
+            versions.bump(event.getKey());
+        };
+    }
+
     @Bean
     public OpenAPI getOpenApiDocumentation() {
         return new OpenAPI()
@@ -109,13 +163,4 @@ public class AppConfig {
         LOG.info("Creates a messagingScheduler with connectionPoolSize = {}", threadPoolSize);
         return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "publish-pool");
     }
-
-    @Autowired
-    private ReactorLoadBalancerExchangeFilterFunction loadBalancerExchangeFilterFunction;
-
-    @Bean
-    @LoadBalanced
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder.filter(loadBalancerExchangeFilterFunction).build();
-    }
 }
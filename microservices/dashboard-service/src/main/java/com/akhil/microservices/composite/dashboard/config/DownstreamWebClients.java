@@ -0,0 +1,112 @@
+package com.akhil.microservices.composite.dashboard.config;
+
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.InstanceLoadTracker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Load balanced WebClients for the downstream services. Each service gets its own Reactor Netty connection pool,
+ * configured with app.http-client.{serviceId}.* and falling back to app.http-client.default.*. Pool metrics are
+ * published to Micrometer as reactor.netty.connection.provider.*, tagged with the service ID as pool name.
+ */
+@Component
+public class DownstreamWebClients implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DownstreamWebClients.class);
+
+    private static final String PREFIX = "app.http-client.";
+
+    private final WebClient.Builder builder;
+    private final ReactorLoadBalancerExchangeFilterFunction loadBalancerExchangeFilterFunction;
+    private final InstanceLoadTracker instanceLoadTracker;
+    private final Environment environment;
+
+    private final Map<String, WebClient> webClients = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionProvider> connectionProviders = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DownstreamWebClients(WebClient.Builder builder,
+                                ReactorLoadBalancerExchangeFilterFunction loadBalancerExchangeFilterFunction,
+                                InstanceLoadTracker instanceLoadTracker, Environment environment) {
+        this.builder = builder;
+        this.loadBalancerExchangeFilterFunction = loadBalancerExchangeFilterFunction;
+        this.instanceLoadTracker = instanceLoadTracker;
+        this.environment = environment;
+    }
+
+    public WebClient forService(String serviceId) {
+        return webClients.computeIfAbsent(serviceId, this::createWebClient);
+    }
+
+    // The load tracker is registered after the load balancer filter, so it sees the chosen instance
+    private WebClient createWebClient(String serviceId) {
+
+        HttpClient httpClient = HttpClient.create(connectionProviders.computeIfAbsent(serviceId,
+                this::createConnectionProvider));
+
+        // h2c uses prior knowledge, the core services must run with server.http2.enabled. Requests to an
+        // instance are then multiplexed as streams over its pooled connections
+        if (property(serviceId, "h2c", Boolean.class, false)) {
+            httpClient = httpClient.protocol(HttpProtocol.H2C);
+        }
+
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(loadBalancerExchangeFilterFunction)
+                .filter(instanceLoadTracker.exchangeFilter())
+                .build();
+    }
+
+    private ConnectionProvider createConnectionProvider(String serviceId) {
+
+        int maxConnections = property(serviceId, "max-connections", Integer.class, 50);
+        int pendingAcquireMaxCount = property(serviceId, "pending-acquire-max-count", Integer.class, 500);
+        Duration pendingAcquireTimeout = property(serviceId, "pending-acquire-timeout", Duration.class,
+                Duration.ofSeconds(5));
+        Duration maxIdleTime = property(serviceId, "max-idle-time", Duration.class, Duration.ofSeconds(30));
+        Duration maxLifeTime = property(serviceId, "max-life-time", Duration.class, Duration.ofMinutes(5));
+        Duration evictionInterval = property(serviceId, "eviction-interval", Duration.class,
+                Duration.ofSeconds(30));
+        String leasingStrategy = property(serviceId, "leasing-strategy", String.class, "lifo");
+
+        LOG.info("Creates a connection pool for {} with maxConnections = {}, pendingAcquireMaxCount = {}, "
+                + "leasingStrategy = {}", serviceId, maxConnections, pendingAcquireMaxCount, leasingStrategy);
+
+        ConnectionProvider.Builder pool = ConnectionProvider.builder(serviceId)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictionInterval)
+                .metrics(true);
+
+        // LIFO keeps reusing the most recently released connections, so the idle ones age out and get evicted.
+        // FIFO spreads the requests over all pooled connections
+        return ("fifo".equalsIgnoreCase(leasingStrategy) ? pool.fifo() : pool.lifo()).build();
+    }
+
+    private <T> T property(String serviceId, String name, Class<T> type, T defaultValue) {
+        T value = environment.getProperty(PREFIX + serviceId + "." + name, type);
+        return value != null ? value : environment.getProperty(PREFIX + "default." + name, type, defaultValue);
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+}
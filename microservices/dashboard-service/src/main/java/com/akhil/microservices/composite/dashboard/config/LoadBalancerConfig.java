@@ -0,0 +1,41 @@
+package com.akhil.microservices.composite.dashboard.config;
+
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.HedgeAwareServiceInstanceListSupplier;
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.InstanceLoadTracker;
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.LatencyAwareLoadBalancer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.cloud.loadbalancer.support.SimpleObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer configuration for each service called through the load balanced WebClient. Created once per
+ * service in its own child context, so it must not be annotated with @Configuration and picked up by the
+ * component scan. The strategy is selected per service ID with app.load-balancer.strategy.{serviceId}. Either
+ * strategy chooses from the instances a hedged request hasn't been sent to yet.
+ */
+public class LoadBalancerConfig {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(Environment environment,
+            LoadBalancerClientFactory loadBalancerClientFactory, InstanceLoadTracker loadTracker) {
+
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        String strategy = environment.getProperty("app.load-balancer.strategy." + serviceId, "round-robin");
+        ObjectProvider<ServiceInstanceListSupplier> supplierProvider = new SimpleObjectProvider<>(
+                new HedgeAwareServiceInstanceListSupplier(
+                        loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                        serviceId, loadTracker));
+
+        if ("latency-aware".equals(strategy)) {
+            return new LatencyAwareLoadBalancer(supplierProvider, serviceId, loadTracker);
+        }
+
+        return new RoundRobinLoadBalancer(supplierProvider, serviceId);
+    }
+}
@@ -1,12 +1,19 @@
 package com.akhil.microservices.composite.dashboard.config;
 
+import com.akhil.microservices.util.security.JwtDecoderFactory;
+import com.akhil.microservices.util.security.PrefetchingJwkSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 
+import java.time.Duration;
+
 import static org.springframework.http.HttpMethod.*;
 
 @Configuration
@@ -33,4 +40,21 @@ public class SecurityConfig {
                 .oauth2ResourceServer(resource -> resource.jwt(Customizer.withDefaults()));
         return http.build();
     }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    PrefetchingJwkSource jwkSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}") String jwkSetUri,
+            @Value("${app.jwt.jwk-refresh-interval:5m}") Duration refreshInterval,
+            @Value("${app.jwt.jwk-min-refresh-interval:30s}") Duration minRefreshInterval) {
+        return JwtDecoderFactory.jwkSource(issuerUri, jwkSetUri, refreshInterval, minRefreshInterval);
+    }
+
+    // Replaces the decoder Spring Boot configures from the issuer, see JwtDecoderFactory
+    @Bean
+    ReactiveJwtDecoder jwtDecoder(PrefetchingJwkSource jwkSource, MeterRegistry meterRegistry,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+            @Value("${app.jwt.cache.max-size:10000}") long cacheMaxSize) {
+        return JwtDecoderFactory.jwtDecoder(jwkSource, issuerUri, cacheMaxSize, meterRegistry);
+    }
 }
@@ -0,0 +1,97 @@
+package com.akhil.microservices.composite.dashboard.services;
+
+import com.akhil.microservices.api.core.account.Account;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * In-process cache of accounts read from account-service. Entries are served for app.account-cache.ttl, after that
+ * they are only kept, up to app.account-cache.stale-ttl, as a fallback while the account circuit is open.
+ * <p>
+ * Changes are applied by account-service asynchronously, so an account read right after a change can still be the
+ * old one. An invalidated account is therefore not cached again for app.account-cache.write-settle-time.
+ */
+@Component
+public class AccountCache {
+
+    private record CachedAccount(Account account, long loadedAt) {}
+
+    private final Cache<Integer, CachedAccount> cache;
+    private final Cache<Integer, Boolean> recentWrites;
+    private final long ttlNanos;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter staleCounter;
+    private final Counter evictionCounter;
+
+    @Autowired
+    public AccountCache(MeterRegistry meterRegistry,
+                        @Value("${app.account-cache.max-size:10000}") long maxSize,
+                        @Value("${app.account-cache.ttl:5m}") Duration ttl,
+                        @Value("${app.account-cache.stale-ttl:1h}") Duration staleTtl,
+                        @Value("${app.account-cache.write-settle-time:5s}") Duration writeSettleTime) {
+        this.ttlNanos = ttl.toNanos();
+
+        this.hitCounter = Counter.builder("dashboard.account.cache").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("dashboard.account.cache").tag("result", "miss").register(meterRegistry);
+        this.staleCounter = Counter.builder("dashboard.account.cache").tag("result", "stale").register(meterRegistry);
+        this.evictionCounter = Counter.builder("dashboard.account.cache.evictions").register(meterRegistry);
+
+        // Caffeine evicts by W-TinyLFU once max-size is reached
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleTtl)
+                .removalListener((Integer accountId, CachedAccount cached, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        evictionCounter.increment();
+                    }
+                })
+                .build();
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(writeSettleTime)
+                .build();
+
+        Gauge.builder("dashboard.account.cache.size", cache, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    public Optional<Account> get(int accountId) {
+        CachedAccount cached = cache.getIfPresent(accountId);
+        if (cached == null || System.nanoTime() - cached.loadedAt() >= ttlNanos) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+
+        hitCounter.increment();
+        return Optional.of(cached.account());
+    }
+
+    public Optional<Account> getStale(int accountId) {
+        Optional<Account> account = Optional.ofNullable(cache.getIfPresent(accountId)).map(CachedAccount::account);
+        account.ifPresent(a -> staleCounter.increment());
+        return account;
+    }
+
+    public void put(Account account) {
+        if (recentWrites.getIfPresent(account.getAccountId()) != null) {
+            return;
+        }
+        cache.put(account.getAccountId(), new CachedAccount(account, System.nanoTime()));
+    }
+
+    public void invalidate(int accountId) {
+        recentWrites.put(accountId, Boolean.TRUE);
+        cache.invalidate(accountId);
+    }
+}
@@ -3,10 +3,15 @@ package com.akhil.microservices.composite.dashboard.services;
 import com.akhil.microservices.api.core.account.Account;
 import com.akhil.microservices.api.core.account.AccountService;
 import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.ExpenseGroupBy;
+import com.akhil.microservices.api.core.expense.ExpensePage;
+import com.akhil.microservices.api.core.expense.ExpenseTotal;
 import com.akhil.microservices.api.core.expense.ExpenseService;
 import com.akhil.microservices.api.event.Event;
 import com.akhil.microservices.api.exceptions.InvalidInputException;
 import com.akhil.microservices.api.exceptions.NotFoundException;
+import com.akhil.microservices.composite.dashboard.config.DownstreamWebClients;
+import com.akhil.microservices.composite.dashboard.services.outbox.EventOutbox;
 import com.akhil.microservices.util.http.HttpErrorInfo;
 import com.akhil.microservices.util.http.ServiceUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -17,8 +22,6 @@ import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
@@ -29,10 +32,13 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
 import java.util.logging.Level;
 
 @Component
@@ -45,73 +51,161 @@ public class DashboardCompositeIntegration implements AccountService, ExpenseSer
     public static final String ACCOUNT_SERVICE_URL = "http://account";
     public static final String EXPENSE_SERVICE_URL = "http://expense";
 
-    private final WebClient webClient;
+    private final WebClient accountWebClient;
+    private final WebClient expenseWebClient;
     private final ObjectMapper mapper;
 
     private final String accountServiceUrl;
     private final String expenseServiceUrl;
 
-    private final StreamBridge streamBridge;
-    private final Scheduler publishEventScheduler;
+    private final EventPublisher eventPublisher;
+    private final Optional<EventOutbox> eventOutbox;
 
     private final ServiceUtil serviceUtil;
+    private final AccountCache accountCache;
+    private final ExpenseHedgingPolicy expenseHedgingPolicy;
 
     @Autowired
     public DashboardCompositeIntegration(
-            @Qualifier("publishEventScheduler") Scheduler publishEventScheduler,
-            WebClient webclient,
+            DownstreamWebClients webClients,
             ObjectMapper mapper,
-            StreamBridge streamBridge, ServiceUtil serviceUtil) {
-        this.publishEventScheduler = publishEventScheduler;
-        this.webClient = webclient;
+            EventPublisher eventPublisher, Optional<EventOutbox> eventOutbox, ServiceUtil serviceUtil, AccountCache accountCache,
+            ExpenseHedgingPolicy expenseHedgingPolicy) {
+        this.accountWebClient = webClients.forService("account");
+        this.expenseWebClient = webClients.forService("expense");
         this.mapper = mapper;
-        this.streamBridge = streamBridge;
+        this.eventPublisher = eventPublisher;
+        this.eventOutbox = eventOutbox;
         this.serviceUtil = serviceUtil;
+        this.accountCache = accountCache;
+        this.expenseHedgingPolicy = expenseHedgingPolicy;
 
-      this.accountServiceUrl = ACCOUNT_SERVICE_URL;
+        this.accountServiceUrl = ACCOUNT_SERVICE_URL;
         this.expenseServiceUrl = EXPENSE_SERVICE_URL;
+
+        // In outbox mode an account change can reach the broker after the write settle time has passed, so the
+        // account is dropped from the cache again once the event is relayed
+        eventOutbox.ifPresent(outbox -> outbox.onRelayed((bindingName, event) -> {
+            if (ACCOUNTS_BINDING.equals(bindingName)) {
+                accountCache.invalidate(event.getKey());
+            }
+        }));
     }
 
     public Flux<Expense> getExpenses(int accountId) {
 
+        // Return an empty result if something goes wrong to make it possible for the dashboard service to
+        // return partial responses
+        return getAllExpenses(accountId).onErrorResume(error -> Flux.empty());
+    }
+
+    // Fails if the expenses can't be read, for callers that must not take a partial result for a complete one.
+    // A hedge is load balanced to another instance than the first attempt, when there is one
+    public Flux<Expense> getAllExpenses(int accountId) {
+
         String url = expenseServiceUrl + "/expense?accountId=" + accountId;
 
         LOG.debug("Will call the getExpenses API on url: {}", url);
 
-        // Return an empty result if something goes wrong to make it possible for the dashboard service to
-        // return partial responses
-        return webClient
+        return expenseHedgingPolicy.apply(() -> expenseWebClient
+                        .get()
+                        .uri(url)
+                        .retrieve()
+                        .bodyToFlux(Expense.class))
+                .log(LOG.getName(), Level.FINE);
+    }
+
+    @Override
+    public Mono<ExpensePage> getExpensePage(int accountId, LocalDateTime from, LocalDateTime to,
+                                            int pageSize, String pageToken) {
+
+        URI url = UriComponentsBuilder.fromUriString(expenseServiceUrl + "/expense/page")
+                .queryParam("accountId", accountId)
+                .queryParam("pageSize", pageSize)
+                .queryParamIfPresent("from", Optional.ofNullable(from))
+                .queryParamIfPresent("to", Optional.ofNullable(to))
+                .queryParamIfPresent("pageToken", Optional.ofNullable(pageToken))
+                .build()
+                .toUri();
+
+        LOG.debug("Will call the getExpensePage API on url: {}", url);
+
+        return expenseWebClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(ExpensePage.class)
+                .log(LOG.getName(), Level.FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException);
+    }
+
+    @Override
+    public Flux<ExpenseTotal> getExpenseTotals(int accountId, LocalDateTime from, LocalDateTime to,
+                                               List<ExpenseGroupBy> groupBy) {
+
+        URI url = UriComponentsBuilder.fromUriString(expenseServiceUrl + "/expense/totals")
+                .queryParam("accountId", accountId)
+                .queryParamIfPresent("from", Optional.ofNullable(from))
+                .queryParamIfPresent("to", Optional.ofNullable(to))
+                .queryParamIfPresent("groupBy", Optional.ofNullable(groupBy))
+                .build()
+                .toUri();
+
+        LOG.debug("Will call the getExpenseTotals API on url: {}", url);
+
+        return expenseWebClient
+                .get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(ExpenseTotal.class)
+                .log(LOG.getName(), Level.FINE)
+                .onErrorMap(WebClientResponseException.class, this::handleException);
+    }
+
+    @Override
+    public Flux<ExpenseTotal> getExpenseRollups(int accountId, YearMonth fromMonth, YearMonth toMonth) {
+
+        URI url = UriComponentsBuilder.fromUriString(expenseServiceUrl + "/expense/rollups")
+                .queryParam("accountId", accountId)
+                .queryParamIfPresent("fromMonth", Optional.ofNullable(fromMonth))
+                .queryParamIfPresent("toMonth", Optional.ofNullable(toMonth))
+                .build()
+                .toUri();
+
+        LOG.debug("Will call the getExpenseRollups API on url: {}", url);
+
+        return expenseWebClient
                 .get()
                 .uri(url)
                 .retrieve()
-                .bodyToFlux(Expense.class)
+                .bodyToFlux(ExpenseTotal.class)
                 .log(LOG.getName(), Level.FINE)
-                .onErrorResume(error -> Flux.empty());
+                .onErrorMap(WebClientResponseException.class, this::handleException);
     }
 
     @Override
     public Mono<Expense> createExpense(Expense expense) {
 
-        return Mono.fromCallable(() -> {
-            sendMessage(EXPENSES_BINDING, new Event<>(Event.Type.CREATE, expense.getAccountId(), expense));
-            return expense;
-        }).subscribeOn(publishEventScheduler);
+        return sendMessage(EXPENSES_BINDING, new Event<>(Event.Type.CREATE, expense.getAccountId(), expense))
+                .thenReturn(expense);
+    }
+
+    // Publishes a chunk of expenses of one account as a single BULK_CREATE event
+    public Mono<Void> createExpenses(int accountId, List<Expense> expenses) {
+
+        return sendMessage(EXPENSES_BINDING, new Event<>(Event.Type.BULK_CREATE, accountId, expenses));
     }
 
     @Override
     public Mono<Void> deleteExpenses(int accountId) {
 
-        return Mono.fromRunnable(() -> sendMessage(EXPENSES_BINDING,
-                new Event<>(Event.Type.DELETE, accountId, null)))
-                .subscribeOn(publishEventScheduler).then();
+        return sendMessage(EXPENSES_BINDING, new Event<>(Event.Type.DELETE, accountId, null));
     }
 
     @Override
     public Mono<Void> deleteExpense(int accountId, int expenseId) {
 
-        return Mono.fromRunnable(() -> sendMessage(EXPENSES_BINDING,
-                new Event<>(Event.Type.DELETE, accountId, expenseId)))
-                .subscribeOn(publishEventScheduler).then();
+        return sendMessage(EXPENSES_BINDING, new Event<>(Event.Type.DELETE, accountId, expenseId));
     }
 
     @Retry(name = "account")
@@ -120,56 +214,99 @@ public class DashboardCompositeIntegration implements AccountService, ExpenseSer
     @Override
     public Mono<Account> getAccount(int accountId, int delay, int faultPercent) {
 
+        // Calls asking for an injected delay or fault are used to test the resilience setup, they always go remote
+        boolean cacheable = delay == 0 && faultPercent == 0;
+        if (cacheable) {
+            Optional<Account> cached = accountCache.get(accountId);
+            if (cached.isPresent()) {
+                return Mono.just(cached.get());
+            }
+        }
+
         URI url = UriComponentsBuilder.fromUriString(accountServiceUrl + "/account/{accountId}?delay={delay}"
             + "&faultPercent={faultPercent}")
             .build(accountId, delay, faultPercent);
 
         LOG.debug("Will call the getAccount API on url: {}", url);
 
-        return webClient
+        return accountWebClient
                 .get()
                 .uri(url)
                 .retrieve()
                 .bodyToMono(Account.class)
                 .log(LOG.getName(), Level.FINE)
+                .doOnNext(account -> {
+                    if (cacheable) {
+                        accountCache.put(account);
+                    }
+                })
                 .onErrorMap(WebClientResponseException.class, this::handleException);
     }
 
+    // The cached account is dropped once the change is published, or appended to the outbox, and isn't cached again
+    // until account-service has had app.account-cache.write-settle-time to apply it
     @Override
     public Mono<Account> createAccount(Account body) {
-        return Mono.fromCallable(() -> {
-
-            sendMessage(ACCOUNTS_BINDING,
-                    new Event<>(Event.Type.CREATE, body.getAccountId(), body));
-            return body;
-        }).subscribeOn(publishEventScheduler);
+        return sendMessage(ACCOUNTS_BINDING, new Event<>(Event.Type.CREATE, body.getAccountId(), body))
+                .doOnSuccess(v -> accountCache.invalidate(body.getAccountId()))
+                .thenReturn(body);
     }
 
     @Override
     public Mono<Void> deleteAccount(int accountId) {
 
-        return Mono.fromRunnable(() -> sendMessage(ACCOUNTS_BINDING,
-                new Event<>(Event.Type.DELETE, accountId, null)))
-                .subscribeOn(publishEventScheduler).then();
+        return sendMessage(ACCOUNTS_BINDING, new Event<>(Event.Type.DELETE, accountId, null))
+                .doOnSuccess(v -> accountCache.invalidate(accountId));
+    }
+
+    /**
+     * Whether the account was returned by the fallback while the account circuit is open, i.e. is a stale copy or
+     * made up.
+     */
+    public static boolean isFallback(Account account) {
+        return account instanceof FallbackAccount;
     }
 
     private Mono<Account> getAccountFallBackValue(int accountId, int delay, int faultPercent,
         CallNotPermittedException ex) {
+
+        Optional<Account> staleAccount = accountCache.getStale(accountId);
+        if (staleAccount.isPresent()) {
+            LOG.debug("Circuit is open, returns cached account with id: {}", accountId);
+            Account account = staleAccount.get();
+            return Mono.just(new FallbackAccount(accountId, account.getName(), account.getServiceAddress()));
+        }
+
         if (accountId == 13) {
             String errMsg = "Account Id: " + accountId + " not found in fallback cache!!!";
             throw new NotFoundException(errMsg);
         }
 
-        return Mono.just(new Account(accountId, "Fallback account " + accountId,
+        return Mono.just(new FallbackAccount(accountId, "Fallback account " + accountId,
             serviceUtil.getServiceAddress()));
     }
 
-    private void sendMessage(String bindingName, Event event) {
+    // Completes once the broker has confirmed the message, see EventPublisher. In outbox mode it completes once
+    // the event is appended to the outbox
+    private Mono<Void> sendMessage(String bindingName, Event event) {
+        if (eventOutbox.isPresent()) {
+            LOG.debug("Appending a {} message for {} to the outbox", event.getType(), bindingName);
+            return eventOutbox.get().append(bindingName, event);
+        }
+
         LOG.debug("Sending a {} message to {}", event.getType(), bindingName);
         Message message = MessageBuilder.withPayload(event)
                 .setHeader("partitionKey", event.getKey())
                 .build();
-        streamBridge.send(bindingName, message);
+        return eventPublisher.publish(bindingName, message);
+    }
+
+    // An account returned by the fallback of an open circuit, i.e. stale or made up
+    public static final class FallbackAccount extends Account {
+
+        public FallbackAccount(int accountId, String name, String serviceAddress) {
+            super(accountId, name, serviceAddress);
+        }
     }
 
     private Throwable handleException(Throwable ex) {
@@ -3,22 +3,30 @@ package com.akhil.microservices.composite.dashboard.services;
 import com.akhil.microservices.api.composite.dashboard.*;
 import com.akhil.microservices.api.core.account.Account;
 import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.Money;
+import com.akhil.microservices.composite.dashboard.services.projection.DashboardProjection;
 import com.akhil.microservices.composite.dashboard.services.tracing.ObservationUtil;
 import com.akhil.microservices.util.http.ServiceUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URL;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.logging.Level;
 
 @RestController
@@ -28,37 +36,129 @@ public class DashboardCompositeServiceImpl implements DashboardCompositeService
 
     private final SecurityContext nullSecCtx = new SecurityContextImpl();
 
+    // A live dashboard is complete if neither the account nor the expenses were replaced by a fallback
+    private record LiveDashboard(DashboardAggregate dashboard, boolean complete) {}
+
+    // Exchange attribute set on requests answered with a partial dashboard, see DashboardETagFilter
+    public static final String PARTIAL_DASHBOARD_ATTRIBUTE = DashboardCompositeServiceImpl.class.getName() + ".partial";
+
     private final ServiceUtil serviceUtil;
     private final ObservationUtil observationUtil;
     private final DashboardCompositeIntegration integration;
-
-    public DashboardCompositeServiceImpl(ServiceUtil serviceUtil, ObservationUtil observationUtil, DashboardCompositeIntegration integration) {
+    private final SingleFlight<Integer, LiveDashboard> summaryLoads;
+    private final Optional<DashboardProjection> projection;
+
+    private final int bulkImportMinExpenses;
+    private final int bulkImportChunkSize;
+    private final int bulkImportConcurrency;
+
+    public DashboardCompositeServiceImpl(ServiceUtil serviceUtil, ObservationUtil observationUtil, DashboardCompositeIntegration integration,
+        MeterRegistry meterRegistry,
+        @Value("${app.bulk-import.min-expenses:100}") int bulkImportMinExpenses,
+        @Value("${app.bulk-import.chunk-size:500}") int bulkImportChunkSize,
+        @Value("${app.bulk-import.concurrency:4}") int bulkImportConcurrency,
+        Optional<DashboardProjection> projection) {
         this.serviceUtil = serviceUtil;
       this.observationUtil = observationUtil;
       this.integration = integration;
+      this.summaryLoads = new SingleFlight<>("dashboard.summary", meterRegistry);
+      this.bulkImportMinExpenses = bulkImportMinExpenses;
+      this.bulkImportChunkSize = bulkImportChunkSize;
+      this.bulkImportConcurrency = bulkImportConcurrency;
+      this.projection = projection;
     }
 
     @Override
     public Mono<DashboardAggregate> getDashboardSummary(int accountId,
         int delay, int faultPercent) {
 
+        // Requests with an injected delay or fault are resilience tests and always run on their own
+        if (delay != 0 || faultPercent != 0) {
+            return observationWithAccountInfo(accountId,
+                () -> markPartial(getLiveDashboard(accountId, delay, faultPercent)));
+        }
+
+        Optional<DashboardAggregate> projected = projection.flatMap(p -> p.get(accountId));
+        if (projected.isPresent()) {
+            return observationWithAccountInfo(accountId, () -> Mono.just(projected.get()));
+        }
+
         return observationWithAccountInfo(accountId,
-            () -> getDashboardSummaryInternal(accountId, delay, faultPercent));
+            () -> markPartial(summaryLoads.execute(accountId, () -> loadDashboardSummary(accountId))));
     }
 
-    private Mono<DashboardAggregate> getDashboardSummaryInternal(int accountId, int delay,
-        int faultPercent) {
+    // A partial dashboard is marked on the exchange, so the ETag filter doesn't keep it. Marked for each caller, a
+    // shared load only sees the exchange of the caller that started it
+    private Mono<DashboardAggregate> markPartial(Mono<LiveDashboard> live) {
+        return Mono.deferContextual(context -> live.doOnNext(dashboard -> {
+                if (!dashboard.complete()) {
+                    ServerWebExchangeContextFilter.getExchange(context).ifPresent(exchange ->
+                        exchange.getAttributes().put(PARTIAL_DASHBOARD_ATTRIBUTE, Boolean.TRUE));
+                }
+            }))
+            .map(LiveDashboard::dashboard);
+    }
+
+    // Loads a dashboard with the live fan-out and, if enabled, takes the result into the projection. A partial
+    // result would be kept there until the next change, so it is only returned
+    private Mono<LiveDashboard> loadDashboardSummary(int accountId) {
+        if (projection.isEmpty()) {
+            return getLiveDashboard(accountId, 0, 0);
+        }
+
+        return Mono.defer(() -> {
+            long fetchStartedAt = System.nanoTime();
+            return getLiveDashboard(accountId, 0, 0)
+                .doOnNext(live -> {
+                    if (live.complete()) {
+                        projection.get().load(live.dashboard(), fetchStartedAt);
+                    } else {
+                        LOG.debug("Skips loading the partial dashboard of account {}", accountId);
+                    }
+                });
+        });
+    }
+
+    private Mono<LiveDashboard> getLiveDashboard(int accountId, int delay, int faultPercent) {
         LOG.info("Will get aggregated account info for account id={}", accountId);
 
-        return Mono.zip(
-                values -> createDashboardAggregate((Account) values[0], (List<Expense>) values[1],
+        // Expenses that can't be read are left out, as a partial response
+        Mono<Optional<List<Expense>>> expenses = integration.getAllExpenses(accountId).collectList()
+            .map(Optional::of)
+            .onErrorResume(ex -> Mono.just(Optional.empty()));
+
+        return Mono.zip(integration.getAccount(accountId, delay, faultPercent), expenses)
+            .map(values -> new LiveDashboard(
+                createDashboardAggregate(values.getT1(), values.getT2().orElse(List.of()),
                     serviceUtil.getServiceAddress()),
-                integration.getAccount(accountId, delay, faultPercent),
-                integration.getExpenses(accountId).collectList())
+                !DashboardCompositeIntegration.isFallback(values.getT1()) && values.getT2().isPresent()))
             .doOnError(ex -> LOG.warn("getAccountSummary failed: {}", ex.toString()))
             .log(LOG.getName(), Level.FINE);
     }
 
+    @Override
+    public Flux<DashboardStreamItem> getDashboardSummaryStream(int accountId, int delay, int faultPercent) {
+
+        return observationWithAccountInfo(accountId,
+            () -> getDashboardSummaryStreamInternal(accountId, delay, faultPercent));
+    }
+
+    private Flux<DashboardStreamItem> getDashboardSummaryStreamInternal(int accountId, int delay,
+        int faultPercent) {
+        LOG.info("Will stream account info for account id={}", accountId);
+
+        // Both calls start right away, mergeSequential emits the account first and holds back at most its
+        // prefetch of expenses meanwhile. Demand from the response is passed on to the expense-service WebClient
+        return Flux.mergeSequential(
+                integration.getAccount(accountId, delay, faultPercent)
+                    .map(account -> DashboardStreamItem.of(
+                        new AccountSummary(account.getAccountId(), account.getName()))),
+                integration.getExpenses(accountId)
+                    .map(expense -> DashboardStreamItem.of(createExpenseSummary(expense))))
+            .doOnError(ex -> LOG.warn("getAccountSummaryStream failed: {}", ex.toString()))
+            .log(LOG.getName(), Level.FINE);
+    }
+
     @Override
     public Mono<Void> createAccount(DashboardAggregate body) {
 
@@ -68,35 +168,29 @@ public class DashboardCompositeServiceImpl implements DashboardCompositeService
 
     private Mono<Void> createAccountInternal(DashboardAggregate body) {
         try {
-            List<Mono> monoList = new ArrayList<>();
-
-            LOG.debug("Will create a new composite entity for account.id: {}", body.getAccount().getAccountId());
-
-            Account account = new Account(body.getAccount().getAccountId(), body.getAccount().getName(), null);
-            monoList.add(integration.createAccount(account));
-
-            if (body.getExpenses() != null) {
-                body.getExpenses().forEach(
-                        exps -> {
-                            Expense expense = new Expense(body.getAccount().getAccountId(),
-                                    exps.getExpenseId(),
-                                    exps.getTransactionDateTime(),
-                                    exps.getAmount(),
-                                    exps.getCategory(),
-                                    exps.getDescription(),
-                                    exps.getPaymentMode(),
-                                    exps.getNotes(),
-                                    null);
-                            monoList.add(integration.createExpense(expense));
-                        }
-                );
-            }
+            int accountId = body.getAccount().getAccountId();
 
-            LOG.debug("createAccount: composite entities created for accountId: {}", body.getAccount().getAccountId());
+            LOG.debug("Will create a new composite entity for account.id: {}", accountId);
 
-            return Mono.zip(r -> "", monoList.toArray(new Mono[0]))
-                .doOnError(ex -> LOG.warn("createDashboardAccount failed: {}", ex.toString()))
-                .then();
+            Account account = new Account(accountId, body.getAccount().getName(), null);
+
+            List<Expense> expenses = body.getExpenses() == null ? List.of() : body.getExpenses().stream()
+                .map(exps -> createExpense(accountId, exps))
+                .toList();
+
+            // Large imports are sent as BULK_CREATE events of a chunk of expenses each, small ones as an event per
+            // expense. Either way at most bulkImportConcurrency events are published at a time
+            Flux<Void> expenseEvents = expenses.size() >= bulkImportMinExpenses
+                ? Flux.fromIterable(expenses)
+                    .buffer(bulkImportChunkSize)
+                    .flatMap(chunk -> integration.createExpenses(accountId, chunk), bulkImportConcurrency)
+                : Flux.fromIterable(expenses)
+                    .flatMap(expense -> integration.createExpense(expense).then(), bulkImportConcurrency);
+
+            return Mono.when(integration.createAccount(account), expenseEvents)
+                .doOnSuccess(res -> LOG.debug("createAccount: composite entities created for accountId: {}",
+                    accountId))
+                .doOnError(ex -> LOG.warn("createDashboardAccount failed: {}", ex.toString()));
         } catch (RuntimeException re) {
             LOG.warn("createDashboardAccount failed", re);
             throw re;
@@ -154,17 +248,7 @@ public class DashboardCompositeServiceImpl implements DashboardCompositeService
         try {
             LOG.debug("Will create a new expense entity for account.id: {}", accountId);
 
-            Expense expense = new Expense(accountId,
-                    body.getExpenseId(),
-                    body.getTransactionDateTime(),
-                    body.getAmount(),
-                    body.getCategory(),
-                    body.getDescription(),
-                    body.getPaymentMode(),
-                    body.getNotes(),
-                    null);
-
-            return integration.createExpense(expense)
+            return integration.createExpense(createExpense(accountId, body))
                     .doOnSuccess(res -> LOG.debug("createExpense: expense created for accountId: {}", accountId))
                     .doOnError(ex -> LOG.warn("createExpense failed: {}", ex.toString()))
                     .then();
@@ -209,14 +293,7 @@ public class DashboardCompositeServiceImpl implements DashboardCompositeService
 
         // 2. Copy summary expense info, if available
         List<ExpenseSummary> expenseSummaries = (expenses == null) ? null : expenses.stream()
-                .map(expense -> new ExpenseSummary(expense.getExpenseId(),
-                        expense.getTransactionDateTime(),
-                        expense.getAmount(),
-                        expense.getCategory(),
-                        expense.getDescription(),
-                        expense.getPaymentMode(),
-                        expense.getNotes()
-                        ))
+                .map(this::createExpenseSummary)
                 .toList();
 
         // 3. create info regarding the involved microservices addresses
@@ -224,7 +301,44 @@ public class DashboardCompositeServiceImpl implements DashboardCompositeService
         String expenseAddress = (expenses != null && !expenses.isEmpty()) ? expenses.get(0).getServiceAddress() : "";
         ServiceAddresses serviceAddresses = new ServiceAddresses(accountAddress, expenseAddress);
 
-        return new DashboardAggregate(accountSummary, expenseSummaries, serviceAddresses);
+        return new DashboardAggregate(accountSummary, expenseSummaries, totals(expenseSummaries), serviceAddresses);
+    }
+
+    private List<Money> totals(List<ExpenseSummary> expenses) {
+        if (expenses == null) {
+            return List.of();
+        }
+
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (ExpenseSummary expense : expenses) {
+            if (expense.getAmount() != null) {
+                totals.merge(expense.getAmount().getCurrency(), expense.getAmount().getMinorUnits(),
+                    (total, delta) -> total + delta == 0 ? null : total + delta);
+            }
+        }
+        return totals.entrySet().stream().map(total -> new Money(total.getKey(), total.getValue())).toList();
+    }
+
+    private Expense createExpense(int accountId, ExpenseSummary expenseSummary) {
+        return new Expense(accountId,
+                expenseSummary.getExpenseId(),
+                expenseSummary.getTransactionDateTime(),
+                expenseSummary.getAmount(),
+                expenseSummary.getCategory(),
+                expenseSummary.getDescription(),
+                expenseSummary.getPaymentMode(),
+                expenseSummary.getNotes(),
+                null);
+    }
+
+    private ExpenseSummary createExpenseSummary(Expense expense) {
+        return new ExpenseSummary(expense.getExpenseId(),
+                expense.getTransactionDateTime(),
+                expense.getAmount(),
+                expense.getCategory(),
+                expense.getDescription(),
+                expense.getPaymentMode(),
+                expense.getNotes());
     }
 
     private Mono<SecurityContext> getLogAuthorizationInfoMono() {
@@ -0,0 +1,260 @@
+package com.akhil.microservices.composite.dashboard.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes messages through StreamBridge from a few dedicated lane threads. Callers only enqueue in the bounded
+ * ring buffer of a lane, each lane drains its buffer in batches and sends them grouped per binding. Messages are
+ * spread over the lanes by their partitionKey header, so messages with the same key keep their order. The returned
+ * Mono completes when the broker has confirmed the message: a RabbitMQ publisher confirm with
+ * app.event-publisher.confirms, otherwise when the binder has accepted it, which is after the broker ack for a
+ * Kafka producer configured with sync. A sync send blocks its lane for a round trip, app.event-publisher.lanes of
+ * them are in flight at a time.
+ * <p>
+ * A message whose caller times out or cancels before it is sent is withdrawn, so a caller that retries doesn't
+ * publish it twice. Once sent the outcome is unknown to the caller, the consumers drop duplicates by event ID.
+ */
+@Component
+public class EventPublisher implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventPublisher.class);
+
+    public enum OverloadStrategy {
+        REJECT,
+        WAIT
+    }
+
+    // Claimed by the lane before it is sent, or by the caller when it gives up, whichever comes first
+    private record PendingMessage(String bindingName, Message<?> message, Sinks.One<Void> result,
+                                  Timer.Sample sample, AtomicBoolean claimed) {
+    }
+
+    private static class Lane {
+
+        private final BlockingQueue<PendingMessage> queue;
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Scheduler scheduler;
+
+        private Lane(int capacity, String name) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.scheduler = Schedulers.newSingle(name);
+        }
+    }
+
+    private final StreamBridge streamBridge;
+    private final Scheduler waitScheduler;
+
+    private final List<Lane> lanes;
+    private final int maxBatchSize;
+    private final OverloadStrategy overloadStrategy;
+    private final Duration waitTimeout;
+    private final Duration confirmTimeout;
+    private final boolean confirms;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter rejectedCounter;
+    private final Counter withdrawnCounter;
+    private final DistributionSummary batchSizes;
+
+    @Autowired
+    public EventPublisher(StreamBridge streamBridge,
+                          @Qualifier("publishEventScheduler") Scheduler waitScheduler,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.event-publisher.capacity:1024}") int capacity,
+                          @Value("${app.event-publisher.lanes:4}") int lanes,
+                          @Value("${app.event-publisher.max-batch-size:100}") int maxBatchSize,
+                          @Value("${app.event-publisher.overload:REJECT}") OverloadStrategy overloadStrategy,
+                          @Value("${app.event-publisher.wait-timeout:1s}") Duration waitTimeout,
+                          @Value("${app.event-publisher.confirm-timeout:5s}") Duration confirmTimeout,
+                          @Value("${app.event-publisher.confirms:false}") boolean confirms) {
+        this.streamBridge = streamBridge;
+        this.waitScheduler = waitScheduler;
+        this.lanes = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            this.lanes.add(new Lane(Math.max(1, capacity / lanes), "event-publisher-" + i));
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.overloadStrategy = overloadStrategy;
+        this.waitTimeout = waitTimeout;
+        this.confirmTimeout = confirmTimeout;
+        this.confirms = confirms;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("dashboard.events.publish.queue", this.lanes,
+                        l -> l.stream().mapToInt(lane -> lane.queue.size()).sum())
+                .description("Messages waiting to be published")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("dashboard.events.publish.rejected")
+                .description("Messages rejected because the publish queue was full")
+                .register(meterRegistry);
+        this.withdrawnCounter = Counter.builder("dashboard.events.publish.withdrawn")
+                .description("Messages withdrawn before they were sent because the caller timed out or cancelled")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("dashboard.events.publish.batch")
+                .description("Messages drained from the publish queue at a time")
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> publish(String bindingName, Message<?> message) {
+
+        return Mono.defer(() -> {
+            PendingMessage pending = new PendingMessage(bindingName, message, Sinks.one(),
+                    Timer.start(meterRegistry), new AtomicBoolean());
+            Lane lane = lane(message);
+
+            // Waiting for space blocks, so it is done on the publish-pool instead of the caller's thread
+            Mono<Boolean> enqueued = overloadStrategy == OverloadStrategy.WAIT
+                    ? Mono.fromCallable(() -> lane.queue.offer(pending, waitTimeout.toMillis(),
+                            TimeUnit.MILLISECONDS)).subscribeOn(waitScheduler)
+                    : Mono.fromCallable(() -> lane.queue.offer(pending));
+
+            return enqueued.flatMap(accepted -> {
+                if (!accepted) {
+                    rejectedCounter.increment();
+                    return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Too many pending events, try again later"));
+                }
+                scheduleDrain(lane);
+                return pending.result().asMono().timeout(confirmTimeout);
+            })
+            .doOnError(TimeoutException.class, ex -> withdraw(lane, pending))
+            .doOnCancel(() -> withdraw(lane, pending));
+        });
+    }
+
+    private Lane lane(Message<?> message) {
+        Object partitionKey = message.getHeaders().get("partitionKey");
+        return lanes.get(Math.floorMod(Objects.hashCode(partitionKey), lanes.size()));
+    }
+
+    private void withdraw(Lane lane, PendingMessage pending) {
+        if (pending.claimed().compareAndSet(false, true)) {
+            lane.queue.remove(pending);
+            withdrawnCounter.increment();
+        }
+    }
+
+    private void scheduleDrain(Lane lane) {
+        if (lane.wip.getAndIncrement() == 0) {
+            lane.scheduler.schedule(() -> drain(lane));
+        }
+    }
+
+    private void drain(Lane lane) {
+        int missed = 1;
+        do {
+            List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+            while (lane.queue.drainTo(batch, maxBatchSize) > 0) {
+                batchSizes.record(batch.size());
+                send(batch);
+                batch.clear();
+            }
+            missed = lane.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void send(List<PendingMessage> batch) {
+
+        Map<String, List<PendingMessage>> byBinding = new LinkedHashMap<>();
+        batch.forEach(pending -> byBinding.computeIfAbsent(pending.bindingName(), k -> new ArrayList<>())
+                .add(pending));
+
+        byBinding.forEach((bindingName, messages) -> {
+            LOG.debug("Sending {} messages to {}", messages.size(), bindingName);
+            messages.forEach(pending -> send(bindingName, pending));
+        });
+    }
+
+    private void send(String bindingName, PendingMessage pending) {
+        if (!pending.claimed().compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            Message<?> message = pending.message();
+            CorrelationData correlation = null;
+            if (confirms) {
+                correlation = new CorrelationData();
+                message = MessageBuilder.fromMessage(message)
+                        .setHeader(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION, correlation)
+                        .build();
+            }
+
+            if (!streamBridge.send(bindingName, message)) {
+                complete(pending, new MessageDeliveryException(message, "Failed to send message to " + bindingName));
+                return;
+            }
+
+            if (correlation == null) {
+                complete(pending, null);
+                return;
+            }
+
+            correlation.getFuture().whenComplete((confirm, ex) -> {
+                if (ex != null) {
+                    complete(pending, ex);
+                } else if (!confirm.isAck()) {
+                    complete(pending, new MessageDeliveryException(pending.message(),
+                            "Message to " + bindingName + " was not confirmed: " + confirm.getReason()));
+                } else {
+                    complete(pending, null);
+                }
+            });
+        } catch (RuntimeException ex) {
+            complete(pending, ex);
+        }
+    }
+
+    private void complete(PendingMessage pending, Throwable error) {
+        pending.sample().stop(meterRegistry.timer("dashboard.events.publish",
+                "binding", pending.bindingName(), "result", error == null ? "success" : "failure"));
+
+        if (error == null) {
+            pending.result().tryEmitEmpty();
+        } else {
+            LOG.warn("Failed to publish message to {}: {}", pending.bindingName(), error.toString());
+            pending.result().tryEmitError(error);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        lanes.forEach(lane -> lane.scheduler.dispose());
+    }
+}
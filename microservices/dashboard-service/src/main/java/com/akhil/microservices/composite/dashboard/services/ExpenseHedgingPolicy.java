@@ -0,0 +1,138 @@
+package com.akhil.microservices.composite.dashboard.services;
+
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.AttemptedInstances;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Hedges expense requests: if the first request hasn't produced anything after the configured percentile of
+ * recent first-response times, a second request is sent and whichever responds first is used, the other one is
+ * cancelled. Each request adds max-hedge-ratio to a small budget and each hedge spends one from it, which caps
+ * hedges to that share of the requests.
+ */
+@Component
+public class ExpenseHedgingPolicy {
+
+    private static final double MAX_HEDGE_BUDGET = 10.0;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final Duration minDelay;
+    private final double maxHedgeRatio;
+
+    private final Timer firstResponseTimer;
+    private final Counter requestCounter;
+    private final Counter hedgeSentCounter;
+    private final Counter hedgeWonCounter;
+    private final Counter hedgeSkippedCounter;
+
+    private double hedgeBudget;
+
+    @Autowired
+    public ExpenseHedgingPolicy(MeterRegistry meterRegistry,
+                                @Value("${app.expense-hedging.enabled:false}") boolean enabled,
+                                @Value("${app.expense-hedging.percentile:0.95}") double percentile,
+                                @Value("${app.expense-hedging.min-delay:20ms}") Duration minDelay,
+                                @Value("${app.expense-hedging.max-hedge-ratio:0.1}") double maxHedgeRatio) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.maxHedgeRatio = maxHedgeRatio;
+
+        this.firstResponseTimer = Timer.builder("dashboard.expenses.first-response")
+                .publishPercentiles(percentile)
+                .register(meterRegistry);
+        this.requestCounter = Counter.builder("dashboard.expenses.requests").register(meterRegistry);
+        this.hedgeSentCounter = Counter.builder("dashboard.expenses.hedges").tag("result", "sent").register(meterRegistry);
+        this.hedgeWonCounter = Counter.builder("dashboard.expenses.hedges").tag("result", "won").register(meterRegistry);
+        this.hedgeSkippedCounter = Counter.builder("dashboard.expenses.hedges").tag("result", "skipped").register(meterRegistry);
+    }
+
+    public <T> Flux<T> apply(Supplier<Flux<T>> request) {
+
+        if (!enabled) {
+            return timed(request, true);
+        }
+
+        return Flux.defer(() -> {
+            requestCounter.increment();
+            addToBudget();
+
+            Flux<T> hedge = Mono.delay(hedgeDelay()).flatMapMany(tick -> {
+                if (!tryAcquireHedge()) {
+                    hedgeSkippedCounter.increment();
+                    return Flux.never();
+                }
+
+                hedgeSentCounter.increment();
+                // The losing request is cancelled, so a hedge that completes is the one that produced the result
+                return timed(request, false).doFinally(signal -> {
+                    if (signal == SignalType.ON_COMPLETE) {
+                        hedgeWonCounter.increment();
+                    }
+                });
+            });
+
+            // The first request to signal anything wins, the other one is cancelled. The hedge is load balanced
+            // to another instance than the first request, when there is one
+            return Flux.firstWithSignal(timed(request, true), hedge)
+                    .contextWrite(AttemptedInstances.newContext());
+        });
+    }
+
+    // A first request cancelled before its first signal, because the hedge won, took at least as long as it ran,
+    // that time is recorded as a lower bound. Leaving it out would keep the slow responses, which are the ones
+    // hedged, out of the percentile. A cancelled hedge ran for less than the hedge delay and is left out
+    private <T> Flux<T> timed(Supplier<Flux<T>> request, boolean recordCancel) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            AtomicBoolean firstSignal = new AtomicBoolean();
+            return request.get()
+                    .doOnEach(signal -> {
+                        if (firstSignal.compareAndSet(false, true)) {
+                            sample.stop(firstResponseTimer);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (recordCancel && firstSignal.compareAndSet(false, true)) {
+                            sample.stop(firstResponseTimer);
+                        }
+                    });
+        });
+    }
+
+    private Duration hedgeDelay() {
+        for (ValueAtPercentile value : firstResponseTimer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                Duration observed = Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS));
+                return observed.compareTo(minDelay) > 0 ? observed : minDelay;
+            }
+        }
+        return minDelay;
+    }
+
+    private synchronized void addToBudget() {
+        hedgeBudget = Math.min(MAX_HEDGE_BUDGET, hedgeBudget + maxHedgeRatio);
+    }
+
+    private synchronized boolean tryAcquireHedge() {
+        if (hedgeBudget < 1.0) {
+            return false;
+        }
+        hedgeBudget -= 1.0;
+        return true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.akhil.microservices.composite.dashboard.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one upstream call. The first caller for a key starts the call,
+ * callers arriving while it is in flight subscribe to the same shared result. The entry is removed as soon as the
+ * call terminates, so results are never reused after that.
+ */
+public class SingleFlight<K, V> {
+
+    // ConcurrentHashMap only locks a single bin on insert and remove, lookups are lock-free
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCounter;
+    private final Counter followerCounter;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.leaderCounter = Counter.builder(name + ".singleflight").tag("role", "leader").register(meterRegistry);
+        this.followerCounter = Counter.builder(name + ".singleflight").tag("role", "follower").register(meterRegistry);
+        Gauge.builder(name + ".singleflight.inflight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            boolean[] leader = {false};
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                return share(k, call.get());
+            });
+
+            (leader[0] ? leaderCounter : followerCounter).increment();
+            return shared;
+        });
+    }
+
+    private Mono<V> share(K key, Mono<V> call) {
+        AtomicReference<Mono<V>> self = new AtomicReference<>();
+        Mono<V> shared = call
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .share();
+        self.set(shared);
+        return shared;
+    }
+}
@@ -0,0 +1,184 @@
+package com.akhil.microservices.composite.dashboard.services.etag;
+
+import com.akhil.microservices.composite.dashboard.services.DashboardCompositeServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Conditional GET of /dashboard/{accountId}. Responses carry the ETag of the dashboard version, a request with a
+ * matching If-None-Match is answered with 304 without calling the account and expense services. The encoded body
+ * of the last response of each account is kept for app.dashboard-etag.response-cache.ttl and served as is while
+ * the version is unchanged.
+ * <p>
+ * Requests with query parameters, i.e. with an injected delay or fault, are passed on untouched, as are requests
+ * while the dashboard has no ETag, see {@link DashboardVersions}. The filter runs after the security filter chain.
+ * It is meant to be enabled together with the dashboard_projection profile, whose consumers bump the versions.
+ */
+@Component
+@ConditionalOnProperty(name = "app.dashboard-etag.enabled", havingValue = "true")
+public class DashboardETagFilter implements WebFilter {
+
+    private static final PathPattern DASHBOARD_PATH = PathPatternParser.defaultInstance.parse("/dashboard/{accountId}");
+
+    private record CachedResponse(String etag, MediaType contentType, byte[] body) {}
+
+    private final DashboardVersions versions;
+    private final Cache<Integer, CachedResponse> responses;
+
+    private final Counter notModifiedCounter;
+    private final Counter cachedCounter;
+    private final Counter fullCounter;
+    private final Counter settlingCounter;
+
+    @Autowired
+    public DashboardETagFilter(DashboardVersions versions, MeterRegistry meterRegistry,
+                               @Value("${app.dashboard-etag.response-cache.max-size:10000}") long maxResponses,
+                               @Value("${app.dashboard-etag.response-cache.ttl:2s}") Duration responseTtl) {
+        this.versions = versions;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxResponses)
+                .expireAfterWrite(responseTtl)
+                .build();
+
+        this.notModifiedCounter = Counter.builder("dashboard.etag.responses").tag("result", "not-modified")
+                .register(meterRegistry);
+        this.cachedCounter = Counter.builder("dashboard.etag.responses").tag("result", "cached")
+                .register(meterRegistry);
+        this.fullCounter = Counter.builder("dashboard.etag.responses").tag("result", "full")
+                .register(meterRegistry);
+        this.settlingCounter = Counter.builder("dashboard.etag.responses").tag("result", "settling")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET || !request.getQueryParams().isEmpty()) {
+            return chain.filter(exchange);
+        }
+
+        Integer accountId = accountId(request.getPath().pathWithinApplication());
+        if (accountId == null) {
+            return chain.filter(exchange);
+        }
+
+        // The version is read before the dashboard is, a change made meanwhile gives the next request a new ETag
+        Optional<String> currentEtag = versions.etag(accountId);
+        if (currentEtag.isEmpty()) {
+            settlingCounter.increment();
+            return chain.filter(exchange);
+        }
+
+        String etag = currentEtag.get();
+        if (exchange.checkNotModified(etag)) {
+            notModifiedCounter.increment();
+            return exchange.getResponse().setComplete();
+        }
+
+        ServerHttpResponse response = exchange.getResponse();
+        CachedResponse cached = responses.getIfPresent(accountId);
+        if (cached != null && cached.etag().equals(etag) && acceptsJson(request)) {
+            cachedCounter.increment();
+            response.setStatusCode(HttpStatus.OK);
+            response.getHeaders().setETag(etag);
+            response.getHeaders().setContentType(cached.contentType());
+            response.getHeaders().setContentLength(cached.body().length);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+        }
+
+        fullCounter.increment();
+        response.beforeCommit(() -> {
+            if (isCacheable(exchange, response)) {
+                response.getHeaders().setETag(etag);
+            }
+            return Mono.empty();
+        });
+        return chain.filter(exchange.mutate().response(new CachingResponse(exchange, response, accountId, etag))
+                .build());
+    }
+
+    private static Integer accountId(PathContainer path) {
+        PathPattern.PathMatchInfo match = DASHBOARD_PATH.matchAndExtract(path);
+        if (match == null) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(match.getUriVariables().get("accountId"));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static boolean acceptsJson(ServerHttpRequest request) {
+        return request.getHeaders().getAccept().isEmpty() || request.getHeaders().getAccept().stream()
+                .anyMatch(accepted -> accepted.isCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    // A 200, no status set yet means 200, of a complete dashboard. A partial one, with a fallback account or
+    // without expenses, would otherwise be answered with 304 until the version changes
+    private static boolean isCacheable(ServerWebExchange exchange, ServerHttpResponse response) {
+        HttpStatusCode status = response.getStatusCode();
+        return (status == null || status.value() == HttpStatus.OK.value())
+                && exchange.getAttribute(DashboardCompositeServiceImpl.PARTIAL_DASHBOARD_ATTRIBUTE) == null;
+    }
+
+    private class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final ServerWebExchange exchange;
+        private final int accountId;
+        private final String etag;
+
+        CachingResponse(ServerWebExchange exchange, ServerHttpResponse delegate, int accountId, String etag) {
+            super(delegate);
+            this.exchange = exchange;
+            this.accountId = accountId;
+            this.etag = etag;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (!isCacheable(exchange, getDelegate())) {
+                return super.writeWith(body);
+            }
+
+            return DataBufferUtils.join(body).flatMap(buffer -> {
+                byte[] bytes = new byte[buffer.readableByteCount()];
+                buffer.read(bytes);
+                DataBufferUtils.release(buffer);
+
+                MediaType contentType = getHeaders().getContentType();
+                responses.put(accountId, new CachedResponse(etag,
+                        contentType == null ? MediaType.APPLICATION_JSON : contentType, bytes));
+                return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+            });
+        }
+    }
+}
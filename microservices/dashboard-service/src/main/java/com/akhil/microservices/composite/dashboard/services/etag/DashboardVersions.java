@@ -0,0 +1,61 @@
+package com.akhil.microservices.composite.dashboard.services.etag;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the dashboard of each account. The strong ETag of a dashboard is made of the version and a random id
+ * of the instance, so ETags from other instances or from before a restart never match.
+ * <p>
+ * Versions are bumped by the consumers of the accounts and expenses destinations, not when a change is published,
+ * the core services apply it asynchronously. The consumers receive an event at about the time the core services
+ * do, so no ETag is handed out for app.dashboard-etag.settle-time after a bump, a dashboard read meanwhile may not
+ * have the change yet. Without the dashboard_projection profile expense changes bump no version, versions are
+ * replaced after app.dashboard-etag.version-ttl, which bounds how long a change can go unnoticed by a polling
+ * client.
+ */
+@Component
+public class DashboardVersions {
+
+    private record Version(long value, long bumpedAt) {}
+
+    private final String instanceId = Long.toHexString(new SecureRandom().nextLong());
+    private final AtomicLong sequence = new AtomicLong();
+    private final Cache<Integer, Version> versions;
+    private final long settleTimeNanos;
+
+    @Autowired
+    public DashboardVersions(@Value("${app.dashboard-etag.max-accounts:100000}") long maxAccounts,
+                             @Value("${app.dashboard-etag.version-ttl:1m}") Duration versionTtl,
+                             @Value("${app.dashboard-etag.settle-time:5s}") Duration settleTime) {
+        this.settleTimeNanos = settleTime.toNanos();
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxAccounts)
+                .expireAfterWrite(versionTtl)
+                .build();
+    }
+
+    /**
+     * The ETag of the current version of the dashboard, empty while a change may still be applied.
+     */
+    public Optional<String> etag(int accountId) {
+        Version version = versions.get(accountId,
+                id -> new Version(sequence.incrementAndGet(), System.nanoTime() - settleTimeNanos));
+        if (System.nanoTime() - version.bumpedAt() < settleTimeNanos) {
+            return Optional.empty();
+        }
+        return Optional.of("\"" + instanceId + "-" + version.value() + "\"");
+    }
+
+    public void bump(int accountId) {
+        versions.put(accountId, new Version(sequence.incrementAndGet(), System.nanoTime()));
+    }
+}
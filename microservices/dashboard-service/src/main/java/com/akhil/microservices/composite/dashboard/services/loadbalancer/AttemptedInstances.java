@@ -0,0 +1,47 @@
+package com.akhil.microservices.composite.dashboard.services.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The instances the attempts of a hedged request were sent to, carried in the Reactor context of the attempts. The
+ * load tracker adds the instance of each attempt, the instance list of a later attempt leaves them out while other
+ * instances are left. Otherwise a hedge can be sent to the slow instance it is meant to get around.
+ */
+public final class AttemptedInstances {
+
+    private static final Object KEY = AttemptedInstances.class;
+
+    private final Set<String> instances = ConcurrentHashMap.newKeySet();
+
+    private AttemptedInstances() {
+    }
+
+    // A new, empty set for the attempts of one request
+    public static Context newContext() {
+        return Context.of(KEY, new AttemptedInstances());
+    }
+
+    static void add(ContextView context, URI uri) {
+        context.<AttemptedInstances>getOrEmpty(KEY)
+                .ifPresent(attempted -> attempted.instances.add(InstanceLoadTracker.key(uri)));
+    }
+
+    static List<ServiceInstance> exclude(ContextView context, List<ServiceInstance> instances) {
+        return context.<AttemptedInstances>getOrEmpty(KEY)
+                .map(attempted -> {
+                    List<ServiceInstance> remaining = instances.stream()
+                            .filter(instance -> !attempted.instances.contains(
+                                    InstanceLoadTracker.key(instance.getUri())))
+                            .toList();
+                    return remaining.isEmpty() ? instances : remaining;
+                })
+                .orElse(instances);
+    }
+}
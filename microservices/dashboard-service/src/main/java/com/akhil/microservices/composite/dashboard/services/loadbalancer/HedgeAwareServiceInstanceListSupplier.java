@@ -0,0 +1,50 @@
+package com.akhil.microservices.composite.dashboard.services.loadbalancer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Leaves the instances already attempted by a hedged request out of the instance list, so a hedge goes to another
+ * instance with either load balancer strategy. Each list is passed on to the load tracker, which drops the instances
+ * no longer listed. The delegate is looked up lazily, as the load balancers do.
+ */
+public class HedgeAwareServiceInstanceListSupplier implements ServiceInstanceListSupplier {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> delegateProvider;
+    private final String serviceId;
+    private final InstanceLoadTracker loadTracker;
+
+    public HedgeAwareServiceInstanceListSupplier(ObjectProvider<ServiceInstanceListSupplier> delegateProvider,
+                                                 String serviceId, InstanceLoadTracker loadTracker) {
+        this.delegateProvider = delegateProvider;
+        this.serviceId = serviceId;
+        this.loadTracker = loadTracker;
+    }
+
+    @Override
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get() {
+        return delegate().get().doOnNext(instances -> loadTracker.retain(serviceId, instances));
+    }
+
+    @Override
+    public Flux<List<ServiceInstance>> get(Request request) {
+        return Flux.deferContextual(context -> delegate().get(request)
+                .doOnNext(instances -> loadTracker.retain(serviceId, instances))
+                .map(instances -> AttemptedInstances.exclude(context, instances)));
+    }
+
+    private ServiceInstanceListSupplier delegate() {
+        return delegateProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+    }
+}
@@ -0,0 +1,147 @@
+package com.akhil.microservices.composite.dashboard.services.loadbalancer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks in-flight requests and an EWMA of the response time per service instance. The exchange filter has to run
+ * after the load balancer filter, so it sees the URL of the chosen instance.
+ * <p>
+ * An instance only gets new samples while it is chosen, so an instance that was slow once would otherwise keep its
+ * EWMA for good. After app.load-balancer.sample-ttl without a sample the EWMA no longer counts, the instance is
+ * tried again like a new one and its next sample replaces the EWMA.
+ * <p>
+ * A request counts as in flight, and its response time is taken, until its response body has been read. The
+ * entries and gauges of instances no longer listed for their service are removed.
+ */
+@Component
+public class InstanceLoadTracker {
+
+    private static final double EWMA_WEIGHT = 0.3;
+
+    private final Map<String, InstanceLoad> loads = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> listedInstances = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final long sampleTtlNanos;
+
+    @Autowired
+    public InstanceLoadTracker(MeterRegistry meterRegistry,
+                               @Value("${app.load-balancer.sample-ttl:10s}") Duration sampleTtl) {
+        this.meterRegistry = meterRegistry;
+        this.sampleTtlNanos = sampleTtl.toNanos();
+    }
+
+    // Also adds the chosen instance to the attempted instances of a hedged request
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> Mono.deferContextual(context -> {
+            AttemptedInstances.add(context, request.url());
+            InstanceLoad load = load(request.url());
+            load.inFlight.incrementAndGet();
+            long start = System.nanoTime();
+
+            // Ends once, when the body is done or when the request fails or is cancelled before the response
+            AtomicBoolean ended = new AtomicBoolean();
+            Consumer<SignalType> end = signal -> {
+                if (ended.compareAndSet(false, true)) {
+                    load.inFlight.decrementAndGet();
+                    // Cancelled requests, e.g. a losing hedge, say nothing about the response time
+                    if (signal != SignalType.CANCEL) {
+                        load.record(System.nanoTime() - start, sampleTtlNanos);
+                    }
+                }
+            };
+
+            return next.exchange(request)
+                    .doOnError(ex -> end.accept(SignalType.ON_ERROR))
+                    .doOnCancel(() -> end.accept(SignalType.CANCEL))
+                    .map(response -> response.mutate().body(body -> body.doFinally(end)).build());
+        });
+    }
+
+    /**
+     * Removes the entries and gauges of the instances listed for the service before, but no longer.
+     */
+    public void retain(String serviceId, List<ServiceInstance> instances) {
+        Set<String> listed = instances.stream().map(instance -> key(instance.getUri())).collect(Collectors.toSet());
+        Set<String> previous = listedInstances.put(serviceId, listed);
+        if (previous != null) {
+            previous.stream().filter(key -> !listed.contains(key)).forEach(this::remove);
+        }
+    }
+
+    /**
+     * Relative cost of sending a request to the instance, lower is better. Instances without samples yet, or with
+     * a stale EWMA and nothing in flight, only count their in-flight requests, so they get tried. While that probe
+     * is in flight the stale EWMA counts again, so the instance isn't sent all the traffic meanwhile.
+     */
+    public double cost(ServiceInstance instance) {
+        InstanceLoad load = load(instance.getUri());
+        int inFlight = load.inFlight.get();
+        double ewmaNanos = inFlight == 0 && load.isStale(sampleTtlNanos) ? 0 : load.ewmaNanos;
+        return (ewmaNanos + 1) * (inFlight + 1);
+    }
+
+    private InstanceLoad load(URI uri) {
+        return loads.computeIfAbsent(key(uri), key -> {
+            InstanceLoad load = new InstanceLoad();
+            Tags tags = Tags.of("instance", key);
+            load.gauges.add(Gauge.builder("dashboard.loadbalancer.inflight", load.inFlight, AtomicInteger::get)
+                    .tags(tags).register(meterRegistry));
+            load.gauges.add(Gauge.builder("dashboard.loadbalancer.latency.ewma", load, l -> l.ewmaNanos / 1_000_000.0)
+                    .tags(tags).baseUnit("milliseconds").register(meterRegistry));
+            return load;
+        });
+    }
+
+    // Requests still in flight to the instance end on the removed entry
+    private void remove(String key) {
+        InstanceLoad load = loads.remove(key);
+        if (load != null) {
+            load.gauges.forEach(meterRegistry::remove);
+        }
+    }
+
+    static String key(URI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    private static class InstanceLoad {
+
+        private final List<Meter> gauges = new ArrayList<>(2);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double ewmaNanos;
+        private volatile long sampledAt;
+
+        private synchronized void record(long elapsedNanos, long sampleTtlNanos) {
+            ewmaNanos = ewmaNanos == 0 || isStale(sampleTtlNanos)
+                    ? elapsedNanos
+                    : ewmaNanos + EWMA_WEIGHT * (elapsedNanos - ewmaNanos);
+            sampledAt = System.nanoTime();
+        }
+
+        private boolean isStale(long sampleTtlNanos) {
+            return System.nanoTime() - sampledAt >= sampleTtlNanos;
+        }
+    }
+}
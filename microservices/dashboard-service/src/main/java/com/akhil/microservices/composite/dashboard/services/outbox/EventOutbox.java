@@ -0,0 +1,167 @@
+package com.akhil.microservices.composite.dashboard.services.outbox;
+
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.composite.dashboard.services.EventPublisher;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Outbox for the events published by the dashboard. Writes only append the event to a local {@link OutboxLog} and
+ * return, a relay drains the log in batches to the bindings through the {@link EventPublisher}. A batch is
+ * committed once all its messages are confirmed, otherwise it is sent again on the next run. Delivery is at least
+ * once, the consumers drop redelivered events by their event ID.
+ * <p>
+ * Listeners registered with {@link #onRelayed} are called with each event once its batch is committed.
+ */
+@Component
+@ConditionalOnProperty(name = "app.outbox.enabled", havingValue = "true")
+public class EventOutbox implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventOutbox.class);
+
+    private static final TypeReference<Event<Integer, JsonNode>> EVENT_TYPE = new TypeReference<>() {};
+
+    private record OutboxEntry(String bindingName, Event<Integer, ?> event) {
+    }
+
+    private final OutboxLog log;
+    private final ObjectMapper mapper;
+    private final EventPublisher eventPublisher;
+    private final int batchSize;
+    private final List<BiConsumer<String, Event<Integer, ?>>> relayListeners = new CopyOnWriteArrayList<>();
+
+    private final Scheduler relayScheduler = Schedulers.newSingle("outbox-relay");
+    private final Disposable relay;
+
+    private final Counter appendedCounter;
+    private final Counter relayedCounter;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public EventOutbox(ObjectMapper mapper, EventPublisher eventPublisher, MeterRegistry meterRegistry,
+                       @Value("${app.outbox.file:outbox/dashboard-outbox.log}") Path file,
+                       @Value("${app.outbox.file-size:67108864}") int fileSize,
+                       @Value("${app.outbox.batch-size:500}") int batchSize,
+                       @Value("${app.outbox.relay-interval:100ms}") Duration relayInterval) throws IOException {
+        this.log = new OutboxLog(file, fileSize);
+        this.mapper = mapper;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+
+        LOG.info("Relays events from outbox {} with {} bytes pending", file, log.pendingBytes());
+
+        Gauge.builder("dashboard.outbox.pending", log, OutboxLog::pendingBytes)
+                .description("Bytes of events in the outbox not yet confirmed by the broker")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.appendedCounter = Counter.builder("dashboard.outbox.appended").register(meterRegistry);
+        this.relayedCounter = Counter.builder("dashboard.outbox.relayed").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("dashboard.outbox.rejected").register(meterRegistry);
+
+        // A full batch is followed by the next one right away, a run ends when the outbox is drained
+        this.relay = Flux.interval(relayInterval, relayScheduler)
+                .onBackpressureDrop()
+                .concatMap(tick -> relayBatch()
+                        .expand(relayed -> relayed == batchSize ? relayBatch() : Mono.empty())
+                        .onErrorResume(ex -> {
+                            LOG.warn("Failed to relay events from the outbox, will retry: {}", ex.toString());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    public Mono<Void> append(String bindingName, Event<Integer, ?> event) {
+
+        return Mono.fromRunnable(() -> {
+            byte[] record;
+            try {
+                record = mapper.writeValueAsBytes(new OutboxEntry(bindingName, event));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            if (!log.append(record)) {
+                rejectedCounter.increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The event outbox is full");
+            }
+            appendedCounter.increment();
+        });
+    }
+
+    public void onRelayed(BiConsumer<String, Event<Integer, ?>> listener) {
+        relayListeners.add(listener);
+    }
+
+    private Mono<Integer> relayBatch() {
+
+        OutboxLog.Batch batch = log.read(batchSize);
+        if (batch.records().isEmpty()) {
+            return Mono.empty();
+        }
+
+        // Records that can't be read are dropped with the batch, they would never get through
+        List<OutboxEntry> entries = batch.records().stream()
+                .map(this::readEntry)
+                .filter(Objects::nonNull)
+                .toList();
+
+        return Flux.fromIterable(entries)
+                .flatMapSequential(entry -> eventPublisher.publish(entry.bindingName(),
+                        MessageBuilder.withPayload(entry.event())
+                                .setHeader("partitionKey", entry.event().getKey())
+                                .build()))
+                .then(Mono.fromCallable(() -> {
+                    log.commit(batch.size());
+                    relayedCounter.increment(entries.size());
+                    entries.forEach(entry -> relayListeners.forEach(listener ->
+                            listener.accept(entry.bindingName(), entry.event())));
+                    return batch.records().size();
+                }));
+    }
+
+    private OutboxEntry readEntry(byte[] record) {
+        try {
+            JsonNode entry = mapper.readTree(record);
+            return new OutboxEntry(entry.get("bindingName").asText(),
+                    mapper.convertValue(entry.get("event"), EVENT_TYPE));
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Drops unreadable outbox record: {}", ex.toString());
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        relay.dispose();
+        relayScheduler.dispose();
+        log.close();
+    }
+}
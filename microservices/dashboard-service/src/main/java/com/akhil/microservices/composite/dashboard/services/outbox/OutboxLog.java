@@ -0,0 +1,122 @@
+package com.akhil.microservices.composite.dashboard.services.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of records in a memory-mapped file. The file starts with a header holding the read and write
+ * positions, followed by length-prefixed records. Records are read without being consumed and released with
+ * {@link #commit(int)} once they have been handled, so records that were read but not committed before a restart
+ * are read again. When the end of the file is reached the pending records are moved back to the start.
+ * Appends survive a crash of the process, the OS writes the mapped pages to disk.
+ */
+public class OutboxLog implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+
+    public record Batch(List<byte[]> records, int size) {
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private int readPosition;
+    private int writePosition;
+
+    public OutboxLog(Path path, int size) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+
+        this.readPosition = buffer.getInt(0);
+        this.writePosition = buffer.getInt(4);
+        if (writePosition < HEADER_SIZE || readPosition < HEADER_SIZE || readPosition > writePosition) {
+            readPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+            writeHeader();
+        }
+    }
+
+    /**
+     * Returns false if the record doesn't fit in the file, even after moving the pending records to the start.
+     */
+    public synchronized boolean append(byte[] record) {
+        int needed = Integer.BYTES + record.length;
+        if (writePosition + needed > buffer.capacity()) {
+            compact();
+            if (writePosition + needed > buffer.capacity()) {
+                return false;
+            }
+        }
+
+        buffer.put(writePosition + Integer.BYTES, record);
+        buffer.putInt(writePosition, record.length);
+        writePosition += needed;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * Reads up to maxRecords records following the last committed one.
+     */
+    public synchronized Batch read(int maxRecords) {
+        List<byte[]> records = new ArrayList<>();
+        int position = readPosition;
+        while (records.size() < maxRecords && position < writePosition) {
+            byte[] record = new byte[buffer.getInt(position)];
+            buffer.get(position + Integer.BYTES, record);
+            records.add(record);
+            position += Integer.BYTES + record.length;
+        }
+        return new Batch(records, position - readPosition);
+    }
+
+    /**
+     * Releases the given number of bytes of records, as returned in {@link Batch#size()}.
+     */
+    public synchronized void commit(int size) {
+        readPosition += size;
+        if (readPosition == writePosition) {
+            readPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+        }
+        writeHeader();
+    }
+
+    public synchronized int pendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    private void compact() {
+        if (readPosition == HEADER_SIZE) {
+            return;
+        }
+        byte[] pending = new byte[writePosition - readPosition];
+        buffer.get(readPosition, pending);
+        buffer.put(HEADER_SIZE, pending);
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE + pending.length;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, readPosition);
+        buffer.putInt(4, writePosition);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
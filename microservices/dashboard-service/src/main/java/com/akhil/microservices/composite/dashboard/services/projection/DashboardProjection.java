@@ -0,0 +1,252 @@
+package com.akhil.microservices.composite.dashboard.services.projection;
+
+import com.akhil.microservices.api.composite.dashboard.AccountSummary;
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.composite.dashboard.ExpenseSummary;
+import com.akhil.microservices.api.composite.dashboard.ServiceAddresses;
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.Money;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read model of the dashboards, kept up to date from the events on the accounts and expenses destinations. An
+ * account enters the projection with the result of a live fan-out, from then on every event is applied to it, so
+ * reading a dashboard is a single lookup. Each entry holds a ready to return {@link DashboardAggregate}, replaced
+ * on every change, and the running totals per currency in minor units.
+ * <p>
+ * Reads fall back to the live fan-out for accounts not in the projection, for accounts with more than
+ * app.projection.max-expenses expenses, and while the events are applied more than app.projection.max-lag after
+ * they were published. A live result is only taken in if no event was seen for the account for
+ * app.projection.settle-time, events still in flight could otherwise be missing from both. The lag is measured
+ * on the events applied. While no events arrive it can't be measured, the lag of the last one decays with the time
+ * since it was applied, assuming the consumer works through its backlog at least as fast as it was published. A
+ * stalled consumer isn't noticed this way.
+ */
+@Component
+@ConditionalOnProperty(name = "app.projection.enabled", havingValue = "true")
+public class DashboardProjection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DashboardProjection.class);
+
+    private static final ServiceAddresses SERVICE_ADDRESSES = new ServiceAddresses("projection", "projection");
+
+    private record ProjectedDashboard(AccountSummary account, Map<Integer, ExpenseSummary> expenses,
+                                      Map<String, Long> totals, DashboardAggregate view) {
+
+        static ProjectedDashboard of(AccountSummary account, Map<Integer, ExpenseSummary> expenses,
+                                     Map<String, Long> totals) {
+            List<Money> moneyTotals = totals.entrySet().stream()
+                    .map(total -> new Money(total.getKey(), total.getValue()))
+                    .toList();
+            return new ProjectedDashboard(account, expenses, totals,
+                    new DashboardAggregate(account, List.copyOf(expenses.values()), moneyTotals, SERVICE_ADDRESSES));
+        }
+    }
+
+    // The lag of the last event applied, at appliedAt as given by System.nanoTime()
+    private record LagSample(long lagNanos, long appliedAt) {
+
+        long decayed(long now) {
+            return Math.max(0, lagNanos - (now - appliedAt));
+        }
+    }
+
+    private final Cache<Integer, ProjectedDashboard> dashboards;
+    private final Cache<Integer, Long> lastEventAt;
+    private final int maxExpenses;
+    private final long maxLagNanos;
+    private final long settleTimeNanos;
+
+    private volatile LagSample lastLag = new LagSample(0, System.nanoTime());
+    private final Timer lagTimer;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter behindCounter;
+
+    @Autowired
+    public DashboardProjection(MeterRegistry meterRegistry,
+                               @Value("${app.projection.max-accounts:100000}") long maxAccounts,
+                               @Value("${app.projection.max-expenses:1000}") int maxExpenses,
+                               @Value("${app.projection.max-lag:5s}") Duration maxLag,
+                               @Value("${app.projection.settle-time:10s}") Duration settleTime) {
+        this.maxExpenses = maxExpenses;
+        this.maxLagNanos = maxLag.toNanos();
+        this.settleTimeNanos = settleTime.toNanos();
+
+        this.dashboards = Caffeine.newBuilder().maximumSize(maxAccounts).build();
+        this.lastEventAt = Caffeine.newBuilder().expireAfterWrite(settleTime).build();
+
+        this.lagTimer = Timer.builder("dashboard.projection.lag")
+                .description("Time from publishing an event to applying it to the projection")
+                .register(meterRegistry);
+        Gauge.builder("dashboard.projection.lag.current", this, p -> p.currentLagNanos() / 1_000_000.0)
+                .description("Lag of the last event applied to the projection, less the time since it was applied")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("dashboard.projection.size", dashboards, Cache::estimatedSize).register(meterRegistry);
+        this.hitCounter = Counter.builder("dashboard.projection.reads").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("dashboard.projection.reads").tag("result", "miss").register(meterRegistry);
+        this.behindCounter = Counter.builder("dashboard.projection.reads").tag("result", "behind")
+                .register(meterRegistry);
+    }
+
+    public Optional<DashboardAggregate> get(int accountId) {
+        if (currentLagNanos() > maxLagNanos) {
+            behindCounter.increment();
+            return Optional.empty();
+        }
+
+        ProjectedDashboard dashboard = dashboards.getIfPresent(accountId);
+        if (dashboard == null) {
+            missCounter.increment();
+            return Optional.empty();
+        }
+
+        hitCounter.increment();
+        return Optional.of(dashboard.view());
+    }
+
+    /**
+     * Takes in the result of a live fan-out started at fetchStartedAt, as given by System.nanoTime().
+     */
+    public void load(DashboardAggregate live, long fetchStartedAt) {
+        int accountId = live.getAccount().getAccountId();
+        List<ExpenseSummary> expenses = live.getExpenses() == null ? List.of() : live.getExpenses();
+        if (expenses.size() > maxExpenses) {
+            return;
+        }
+
+        Long lastEvent = lastEventAt.getIfPresent(accountId);
+        if (lastEvent != null && lastEvent - (fetchStartedAt - settleTimeNanos) > 0) {
+            LOG.debug("Skips loading the dashboard of account {}, it has changed recently", accountId);
+            return;
+        }
+
+        Map<Integer, ExpenseSummary> byId = new LinkedHashMap<>();
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (ExpenseSummary expense : expenses) {
+            byId.put(expense.getExpenseId(), expense);
+            add(totals, expense.getAmount(), 1);
+        }
+        dashboards.asMap().putIfAbsent(accountId, ProjectedDashboard.of(live.getAccount(), byId, totals));
+    }
+
+    public void apply(Event<Integer, Account> event) {
+        int accountId = event.getKey();
+        touch(accountId, event.getEventCreatedAt());
+
+        switch (event.getType()) {
+            // A created account is loaded on its first read, a duplicate create leaves the account as is
+            case CREATE -> { }
+            case DELETE -> dashboards.invalidate(accountId);
+            default -> LOG.warn("Ignores account event of type {}", event.getType());
+        }
+    }
+
+    public void apply(ExpenseEvent event) {
+        int accountId = event.getKey();
+        touch(accountId, event.getEventCreatedAt());
+
+        switch (event.getType()) {
+            case CREATE -> {
+                if (event.getData() instanceof Expense expense) {
+                    addExpenses(accountId, List.of(expense));
+                }
+            }
+            case BULK_CREATE -> {
+                if (event.getData() instanceof List<?> expenses) {
+                    addExpenses(accountId, expenses.stream().map(Expense.class::cast).toList());
+                }
+            }
+            case DELETE -> {
+                if (event.getData() instanceof Integer expenseId) {
+                    deleteExpense(accountId, expenseId);
+                } else if (event.getData() == null) {
+                    dashboards.asMap().computeIfPresent(accountId, (id, dashboard) ->
+                            ProjectedDashboard.of(dashboard.account(), Map.of(), Map.of()));
+                }
+            }
+            default -> LOG.warn("Ignores expense event of type {}", event.getType());
+        }
+    }
+
+    // Expenses already in the projection are left as is, like the expense service does with a duplicate create
+    private void addExpenses(int accountId, List<Expense> expenses) {
+        dashboards.asMap().computeIfPresent(accountId, (id, dashboard) -> {
+            Map<Integer, ExpenseSummary> byId = new LinkedHashMap<>(dashboard.expenses());
+            Map<String, Long> totals = new LinkedHashMap<>(dashboard.totals());
+            for (Expense expense : expenses) {
+                if (!byId.containsKey(expense.getExpenseId())) {
+                    byId.put(expense.getExpenseId(), summary(expense));
+                    add(totals, expense.getAmount(), 1);
+                }
+            }
+
+            // Too large to keep, reads of the account go to the live fan-out from now on
+            return byId.size() > maxExpenses ? null : ProjectedDashboard.of(dashboard.account(), byId, totals);
+        });
+    }
+
+    private void deleteExpense(int accountId, int expenseId) {
+        dashboards.asMap().computeIfPresent(accountId, (id, dashboard) -> {
+            ExpenseSummary deleted = dashboard.expenses().get(expenseId);
+            if (deleted == null) {
+                return dashboard;
+            }
+
+            Map<Integer, ExpenseSummary> byId = new LinkedHashMap<>(dashboard.expenses());
+            byId.remove(expenseId);
+            Map<String, Long> totals = new LinkedHashMap<>(dashboard.totals());
+            add(totals, deleted.getAmount(), -1);
+            return ProjectedDashboard.of(dashboard.account(), byId, totals);
+        });
+    }
+
+    private void touch(int accountId, ZonedDateTime eventCreatedAt) {
+        lastEventAt.put(accountId, System.nanoTime());
+
+        if (eventCreatedAt != null) {
+            long lagMillis = Math.max(0, System.currentTimeMillis() - eventCreatedAt.toInstant().toEpochMilli());
+            lastLag = new LagSample(TimeUnit.MILLISECONDS.toNanos(lagMillis), System.nanoTime());
+            lagTimer.record(lagMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private long currentLagNanos() {
+        return lastLag.decayed(System.nanoTime());
+    }
+
+    private static void add(Map<String, Long> totals, Money amount, int sign) {
+        if (amount != null) {
+            totals.merge(amount.getCurrency(), sign * amount.getMinorUnits(),
+                    (total, delta) -> total + delta == 0 ? null : total + delta);
+        }
+    }
+
+    private static ExpenseSummary summary(Expense expense) {
+        return new ExpenseSummary(expense.getExpenseId(), expense.getTransactionDateTime(), expense.getAmount(),
+                expense.getCategory(), expense.getDescription(), expense.getPaymentMode(), expense.getNotes());
+    }
+}
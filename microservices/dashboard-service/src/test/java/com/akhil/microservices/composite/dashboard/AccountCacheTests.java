@@ -0,0 +1,65 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.composite.dashboard.services.AccountCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountCacheTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void getCachedAccount() {
+
+        AccountCache cache = new AccountCache(meterRegistry, 100, Duration.ofMinutes(5), Duration.ofHours(1),
+                Duration.ZERO);
+
+        assertTrue(cache.get(1).isEmpty());
+        cache.put(new Account(1, "name", "address"));
+        assertEquals("name", cache.get(1).orElseThrow().getName());
+
+        cache.invalidate(1);
+        assertTrue(cache.get(1).isEmpty());
+        assertTrue(cache.getStale(1).isEmpty());
+
+        assertEquals(1.0, meterRegistry.get("dashboard.account.cache").tag("result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("dashboard.account.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void serveStaleAccountAfterTtl() {
+
+        AccountCache cache = new AccountCache(meterRegistry, 100, Duration.ZERO, Duration.ofHours(1), Duration.ZERO);
+
+        cache.put(new Account(1, "name", "address"));
+
+        assertTrue(cache.get(1).isEmpty());
+        assertEquals("name", cache.getStale(1).orElseThrow().getName());
+        assertEquals(1.0, meterRegistry.get("dashboard.account.cache").tag("result", "stale").counter().count());
+    }
+
+    @Test
+    void skipAccountReadRightAfterWrite() {
+
+        AccountCache cache = new AccountCache(meterRegistry, 100, Duration.ofMinutes(5), Duration.ofHours(1),
+                Duration.ofMinutes(1));
+
+        cache.put(new Account(1, "name", "address"));
+        cache.invalidate(1);
+
+        // A read racing the write may return the old account, it must not be cached
+        cache.put(new Account(1, "old name", "address"));
+        assertTrue(cache.get(1).isEmpty());
+        assertTrue(cache.getStale(1).isEmpty());
+
+        cache.put(new Account(2, "name", "address"));
+        assertEquals("name", cache.get(2).orElseThrow().getName());
+    }
+}
@@ -0,0 +1,156 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.composite.dashboard.services.DashboardCompositeServiceImpl;
+import com.akhil.microservices.composite.dashboard.services.etag.DashboardETagFilter;
+import com.akhil.microservices.composite.dashboard.services.etag.DashboardVersions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DashboardETagFilterTests {
+
+    private static final String BODY = "{\"account\":{\"accountId\":1}}";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DashboardVersions versions = new DashboardVersions(100, Duration.ofMinutes(1),
+            Duration.ZERO);
+    private final DashboardETagFilter filter = new DashboardETagFilter(versions, meterRegistry, 100,
+            Duration.ofMinutes(1));
+
+    private final AtomicInteger dashboardReads = new AtomicInteger();
+    private final WebFilterChain chain = exchange -> {
+        dashboardReads.incrementAndGet();
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(BODY.getBytes(StandardCharsets.UTF_8))));
+    };
+
+    @Test
+    void notModifiedWithMatchingETag() {
+
+        MockServerWebExchange first = get("/dashboard/1", null);
+        String etag = first.getResponse().getHeaders().getETag();
+        assertNotNull(etag);
+        assertEquals(BODY, first.getResponse().getBodyAsString().block());
+
+        MockServerWebExchange second = get("/dashboard/1", etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, second.getResponse().getStatusCode());
+        assertEquals(1, dashboardReads.get());
+
+        versions.bump(1);
+        MockServerWebExchange third = get("/dashboard/1", etag);
+        assertEquals(HttpStatus.OK, third.getResponse().getStatusCode());
+        assertNotEquals(etag, third.getResponse().getHeaders().getETag());
+        assertEquals(2, dashboardReads.get());
+
+        assertEquals(1.0, meterRegistry.get("dashboard.etag.responses").tag("result", "not-modified").counter()
+                .count());
+    }
+
+    @Test
+    void serveCachedResponseOfSameVersion() {
+
+        get("/dashboard/1", null);
+        MockServerWebExchange cached = get("/dashboard/1", null);
+
+        assertEquals(BODY, cached.getResponse().getBodyAsString().block());
+        assertEquals(MediaType.APPLICATION_JSON, cached.getResponse().getHeaders().getContentType());
+        assertEquals(1, dashboardReads.get());
+
+        versions.bump(1);
+        get("/dashboard/1", null);
+        assertEquals(2, dashboardReads.get());
+    }
+
+    @Test
+    void noETagWhileChangeSettles() {
+
+        DashboardVersions settlingVersions = new DashboardVersions(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        DashboardETagFilter settlingFilter = new DashboardETagFilter(settlingVersions, meterRegistry, 100,
+                Duration.ofMinutes(1));
+
+        MockServerWebExchange first = get(settlingFilter, "/dashboard/1", null);
+        String etag = first.getResponse().getHeaders().getETag();
+        assertNotNull(etag);
+
+        settlingVersions.bump(1);
+        MockServerWebExchange second = get(settlingFilter, "/dashboard/1", etag);
+        assertEquals(HttpStatus.OK, second.getResponse().getStatusCode());
+        assertNull(second.getResponse().getHeaders().getETag());
+        get(settlingFilter, "/dashboard/1", null);
+        assertEquals(3, dashboardReads.get());
+
+        assertEquals(2.0, meterRegistry.get("dashboard.etag.responses").tag("result", "settling").counter()
+                .count());
+    }
+
+    @Test
+    void skipPartialDashboard() {
+
+        // A dashboard with a fallback account is marked by the service
+        WebFilterChain partialChain = exchange -> {
+            exchange.getAttributes().put(DashboardCompositeServiceImpl.PARTIAL_DASHBOARD_ATTRIBUTE, Boolean.TRUE);
+            return chain.filter(exchange);
+        };
+
+        MockServerWebExchange first = get("/dashboard/1", null, partialChain);
+        MockServerWebExchange second = get("/dashboard/1", null, partialChain);
+
+        assertNull(first.getResponse().getHeaders().getETag());
+        assertEquals(BODY, second.getResponse().getBodyAsString().block());
+        assertEquals(2, dashboardReads.get());
+        assertEquals(0.0, meterRegistry.get("dashboard.etag.responses").tag("result", "cached").counter().count());
+    }
+
+    @Test
+    void passOnOtherRequests() {
+
+        MockServerWebExchange stream = get("/dashboard/1/stream", null);
+        MockServerWebExchange delayed = get("/dashboard/1?delay=1", null);
+        get("/dashboard/1?delay=1", null);
+
+        assertNull(stream.getResponse().getHeaders().getETag());
+        assertNull(delayed.getResponse().getHeaders().getETag());
+        assertEquals(3, dashboardReads.get());
+    }
+
+    private MockServerWebExchange get(String uri, String ifNoneMatch) {
+        return get(filter, uri, ifNoneMatch, chain);
+    }
+
+    private MockServerWebExchange get(String uri, String ifNoneMatch, WebFilterChain chain) {
+        return get(filter, uri, ifNoneMatch, chain);
+    }
+
+    private MockServerWebExchange get(DashboardETagFilter filter, String uri, String ifNoneMatch) {
+        return get(filter, uri, ifNoneMatch, chain);
+    }
+
+    private MockServerWebExchange get(DashboardETagFilter filter, String uri, String ifNoneMatch,
+                                      WebFilterChain chain) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(uri);
+        if (ifNoneMatch != null) {
+            request.ifNoneMatch(ifNoneMatch);
+        }
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+}
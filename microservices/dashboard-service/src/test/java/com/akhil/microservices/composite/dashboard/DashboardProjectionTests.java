@@ -0,0 +1,119 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.api.composite.dashboard.AccountSummary;
+import com.akhil.microservices.api.composite.dashboard.DashboardAggregate;
+import com.akhil.microservices.api.composite.dashboard.ExpenseSummary;
+import com.akhil.microservices.api.composite.dashboard.ServiceAddresses;
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.Money;
+import com.akhil.microservices.api.core.expense.PaymentMode;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
+import com.akhil.microservices.composite.dashboard.services.projection.DashboardProjection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static com.akhil.microservices.api.event.Event.Type.BULK_CREATE;
+import static com.akhil.microservices.api.event.Event.Type.CREATE;
+import static com.akhil.microservices.api.event.Event.Type.DELETE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DashboardProjectionTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void applyExpenseEvents() {
+
+        DashboardProjection projection = projection(Duration.ZERO);
+
+        assertTrue(projection.get(1).isEmpty());
+        projection.load(dashboard(1, 10.0), System.nanoTime());
+
+        projection.apply(new ExpenseEvent(CREATE, 1, expense(1, 2, 5.5)));
+        projection.apply(new ExpenseEvent(CREATE, 1, expense(1, 2, 5.5)));
+        projection.apply(new ExpenseEvent(BULK_CREATE, 1, List.of(expense(1, 3, 1.0), expense(1, 4, 2.0))));
+        projection.apply(new ExpenseEvent(DELETE, 1, 3));
+
+        DashboardAggregate dashboard = projection.get(1).orElseThrow();
+        assertEquals(List.of(1, 2, 4), dashboard.getExpenses().stream().map(ExpenseSummary::getExpenseId).toList());
+        assertEquals(List.of(new Money("INR", 1750)), dashboard.getTotals());
+
+        projection.apply(new ExpenseEvent(DELETE, 1, null));
+        assertTrue(projection.get(1).orElseThrow().getExpenses().isEmpty());
+        assertTrue(projection.get(1).orElseThrow().getTotals().isEmpty());
+
+        projection.apply(new Event<>(DELETE, 1, (Account) null));
+        assertTrue(projection.get(1).isEmpty());
+
+        assertEquals(3.0, meterRegistry.get("dashboard.projection.reads").tag("result", "hit").counter().count());
+        assertEquals(2.0, meterRegistry.get("dashboard.projection.reads").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void skipLoadAfterRecentEvent() {
+
+        DashboardProjection projection = projection(Duration.ofMinutes(1));
+
+        long fetchStartedAt = System.nanoTime();
+        projection.apply(new ExpenseEvent(CREATE, 1, expense(1, 2, 5.5)));
+        projection.load(dashboard(1, 10.0), fetchStartedAt);
+
+        assertTrue(projection.get(1).isEmpty());
+    }
+
+    @Test
+    void fallBackWhenBehind() {
+
+        DashboardProjection projection = projection(Duration.ZERO);
+        projection.load(dashboard(1, 10.0), System.nanoTime());
+
+        projection.apply(new ExpenseEvent(null, CREATE, 1, expense(1, 2, 5.5), ZonedDateTime.now().minusMinutes(1)));
+        assertTrue(projection.get(1).isEmpty());
+
+        projection.apply(new ExpenseEvent(CREATE, 1, expense(1, 3, 1.0)));
+        assertEquals(3, projection.get(1).orElseThrow().getExpenses().size());
+
+        assertEquals(1.0, meterRegistry.get("dashboard.projection.reads").tag("result", "behind").counter().count());
+    }
+
+    @Test
+    void catchUpWithoutNewEvents() throws InterruptedException {
+
+        DashboardProjection projection = projection(Duration.ZERO);
+        projection.load(dashboard(1, 10.0), System.nanoTime());
+
+        // Nothing is published after the late event, its lag decays below max-lag
+        projection.apply(new ExpenseEvent(null, CREATE, 1, expense(1, 2, 5.5),
+                ZonedDateTime.now().minus(Duration.ofMillis(5100))));
+        assertTrue(projection.get(1).isEmpty());
+
+        Thread.sleep(300);
+        assertEquals(2, projection.get(1).orElseThrow().getExpenses().size());
+    }
+
+    private DashboardProjection projection(Duration settleTime) {
+        return new DashboardProjection(meterRegistry, 100, 10, Duration.ofSeconds(5), settleTime);
+    }
+
+    private static DashboardAggregate dashboard(int accountId, double amount) {
+        ExpenseSummary expense = new ExpenseSummary(1, LocalDateTime.now(), amount, new Category("Food", false),
+                "Expense 1", PaymentMode.CASH, null);
+        return new DashboardAggregate(new AccountSummary(accountId, "name"), List.of(expense),
+                new ServiceAddresses("account", "expense"));
+    }
+
+    private static Expense expense(int accountId, int expenseId, double amount) {
+        return new Expense(accountId, expenseId, LocalDateTime.now(), amount, new Category("Food", false),
+                "Expense " + expenseId, PaymentMode.CASH, null, null);
+    }
+}
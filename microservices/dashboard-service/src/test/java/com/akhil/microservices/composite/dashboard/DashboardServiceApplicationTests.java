@@ -1,5 +1,6 @@
 package com.akhil.microservices.composite.dashboard;
 
+import com.akhil.microservices.api.composite.dashboard.DashboardStreamItem;
 import com.akhil.microservices.api.core.account.Account;
 import com.akhil.microservices.api.core.expense.Category;
 import com.akhil.microservices.api.core.expense.Expense;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -20,7 +22,10 @@ import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(
@@ -28,13 +33,15 @@ import static org.mockito.Mockito.when;
 		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
 		properties = {
 				"spring.main.allow-bean-definition-overriding=true",
-				"spring.cloud.config.enabled=false"
+				"spring.cloud.config.enabled=false",
+				"app.dashboard-etag.enabled=true"
 		})
 class DashboardServiceApplicationTests {
 
 	private static final int ACCOUNT_ID_OK = 1;
 	private static final int ACCOUNT_ID_NOT_FOUND = 2;
 	private static final int ACCOUNT_ID_INVALID = 3;
+	private static final int ACCOUNT_ID_FALLBACK = 4;
 	private static final int DELAY = 0;
 	private static final int FAULT_PERCENT = 0;
 
@@ -49,18 +56,24 @@ class DashboardServiceApplicationTests {
 
 		when(integration.getAccount(ACCOUNT_ID_OK, DELAY, FAULT_PERCENT))
 				.thenReturn(Mono.just(new Account(ACCOUNT_ID_OK, "name", "mock-address")));
-		when(integration.getExpenses(ACCOUNT_ID_OK))
-				.thenReturn(Flux.fromIterable(Collections.singletonList(
-						new Expense(
-								ACCOUNT_ID_OK,
-								1,
-								LocalDateTime.now(),
-								10.0,
-								new Category("Category 1", true),
-								"Account 1",
-								PaymentMode.CASH,
-								null,
-								"mock-address"))));
+		Flux<Expense> expenses = Flux.fromIterable(Collections.singletonList(
+				new Expense(
+						ACCOUNT_ID_OK,
+						1,
+						LocalDateTime.now(),
+						10.0,
+						new Category("Category 1", true),
+						"Account 1",
+						PaymentMode.CASH,
+						null,
+						"mock-address")));
+		when(integration.getExpenses(ACCOUNT_ID_OK)).thenReturn(expenses);
+		when(integration.getAllExpenses(ACCOUNT_ID_OK)).thenReturn(expenses);
+
+		when(integration.getAccount(ACCOUNT_ID_FALLBACK, DELAY, FAULT_PERCENT))
+				.thenReturn(Mono.just(new DashboardCompositeIntegration.FallbackAccount(ACCOUNT_ID_FALLBACK,
+						"Fallback account " + ACCOUNT_ID_FALLBACK, "mock-address")));
+		when(integration.getAllExpenses(ACCOUNT_ID_FALLBACK)).thenReturn(Flux.empty());
 
 		when(integration.getAccount(ACCOUNT_ID_NOT_FOUND, DELAY, FAULT_PERCENT))
 				.thenThrow(new NotFoundException("NOT FOUND: " + ACCOUNT_ID_NOT_FOUND));
@@ -86,6 +99,46 @@ class DashboardServiceApplicationTests {
 				.jsonPath("$.expenses.length()").isEqualTo(1);
 	}
 
+	@Test
+	void getPartialDashboardWithoutETag() {
+
+		client.get()
+				.uri("/dashboard/" + ACCOUNT_ID_FALLBACK)
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().doesNotExist(HttpHeaders.ETAG)
+				.expectBody()
+				.jsonPath("$.account.accountId").isEqualTo(ACCOUNT_ID_FALLBACK);
+
+		client.get()
+				.uri("/dashboard/" + ACCOUNT_ID_OK)
+				.accept(MediaType.APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().exists(HttpHeaders.ETAG);
+	}
+
+	@Test
+	void getAccountStreamById() {
+
+		List<DashboardStreamItem> items = client.get()
+				.uri("/dashboard/" + ACCOUNT_ID_OK + "/stream")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.returnResult(DashboardStreamItem.class)
+				.getResponseBody()
+				.collectList()
+				.block();
+
+		assertEquals(2, items.size());
+		assertEquals(ACCOUNT_ID_OK, items.get(0).getAccount().getAccountId());
+		assertNull(items.get(0).getExpense());
+		assertEquals(1, items.get(1).getExpense().getExpenseId());
+	}
+
 	@Test
 	void getAccountNotFound() {
 
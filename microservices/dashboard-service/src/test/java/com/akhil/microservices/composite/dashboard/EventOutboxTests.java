@@ -0,0 +1,163 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.api.core.account.Account;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.composite.dashboard.services.EventPublisher;
+import com.akhil.microservices.composite.dashboard.services.outbox.EventOutbox;
+import com.akhil.microservices.composite.dashboard.services.outbox.OutboxLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventOutboxTests {
+
+    private static final String BINDING = "accounts-out-0";
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper mapper = JsonMapper.builder().findAndAddModules().build();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EventPublisher eventPublisher = mock(EventPublisher.class);
+
+    private EventOutbox outbox;
+
+    @AfterEach
+    void closeOutbox() throws IOException {
+        if (outbox != null) {
+            outbox.destroy();
+        }
+    }
+
+    @Test
+    void commitBatchOnceAllMessagesAreConfirmed() throws Exception {
+
+        Sinks.One<Void> secondConfirm = Sinks.one();
+        when(eventPublisher.publish(anyString(), any(Message.class))).thenAnswer(invocation ->
+                key(invocation.getArgument(1)) == 2 ? secondConfirm.asMono() : Mono.empty());
+        outbox = createOutbox(Duration.ofMillis(20));
+        List<Integer> relayed = new CopyOnWriteArrayList<>();
+        outbox.onRelayed((bindingName, event) -> relayed.add(event.getKey()));
+
+        outbox.append(BINDING, event(1)).block();
+        outbox.append(BINDING, event(2)).block();
+
+        // The batch stays in the outbox, and isn't sent again, while a confirm is outstanding
+        verify(eventPublisher, after(200).times(2)).publish(anyString(), any(Message.class));
+        assertTrue(pendingBytes() > 0);
+        assertTrue(relayed.isEmpty());
+
+        secondConfirm.tryEmitEmpty();
+        awaitPendingBytes(0);
+        assertEquals(List.of(1, 2), relayed);
+        assertEquals(2.0, meterRegistry.get("dashboard.outbox.relayed").counter().count());
+    }
+
+    @Test
+    void resendFailedBatch() throws Exception {
+
+        AtomicInteger attempts = new AtomicInteger();
+        when(eventPublisher.publish(anyString(), any(Message.class))).thenAnswer(invocation ->
+                attempts.getAndIncrement() == 0
+                        ? Mono.error(new IllegalStateException("not confirmed"))
+                        : Mono.empty());
+        outbox = createOutbox(Duration.ofMillis(20));
+
+        outbox.append(BINDING, event(1)).block();
+
+        awaitPendingBytes(0);
+        verify(eventPublisher, atLeast(2)).publish(anyString(), any(Message.class));
+        assertEquals(1.0, meterRegistry.get("dashboard.outbox.relayed").counter().count());
+    }
+
+    @Test
+    void relayNextBatchRightAfterFullBatch() throws Exception {
+
+        when(eventPublisher.publish(anyString(), any(Message.class))).thenReturn(Mono.empty());
+        outbox = createOutbox(Duration.ofSeconds(1));
+
+        for (int accountId = 1; accountId <= 5; accountId++) {
+            outbox.append(BINDING, event(accountId)).block();
+        }
+
+        // Three batches of at most two, all relayed by the first run, before the second tick
+        awaitPendingBytes(0, Duration.ofMillis(1800));
+        verify(eventPublisher, times(5)).publish(anyString(), any(Message.class));
+    }
+
+    @Test
+    void dropUnreadableRecords() throws Exception {
+
+        Path file = dir.resolve("outbox.log");
+        try (OutboxLog log = new OutboxLog(file, 1024 * 1024)) {
+            assertTrue(log.append("not an outbox entry".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        when(eventPublisher.publish(anyString(), any(Message.class))).thenReturn(Mono.empty());
+        outbox = createOutbox(Duration.ofMillis(20));
+        outbox.append(BINDING, event(1)).block();
+
+        awaitPendingBytes(0);
+        verify(eventPublisher, timeout(1000).times(1)).publish(anyString(), any(Message.class));
+        assertEquals(1.0, meterRegistry.get("dashboard.outbox.relayed").counter().count());
+    }
+
+    private EventOutbox createOutbox(Duration relayInterval) throws IOException {
+        return new EventOutbox(mapper, eventPublisher, meterRegistry, dir.resolve("outbox.log"), 1024 * 1024, 2,
+                relayInterval);
+    }
+
+    private Event<Integer, Account> event(int accountId) {
+        return new Event<>(Event.Type.CREATE, accountId, new Account(accountId, "Name " + accountId, null));
+    }
+
+    private int key(Message<?> message) {
+        return (Integer) ((Event<?, ?>) message.getPayload()).getKey();
+    }
+
+    private double pendingBytes() {
+        return meterRegistry.get("dashboard.outbox.pending").gauge().value();
+    }
+
+    private void awaitPendingBytes(double expected) throws InterruptedException {
+        awaitPendingBytes(expected, Duration.ofSeconds(5));
+    }
+
+    private void awaitPendingBytes(double expected, Duration maxWait) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        while (pendingBytes() != expected) {
+            if (System.nanoTime() > deadline) {
+                fail("Expected " + expected + " pending bytes in the outbox, got " + pendingBytes());
+            }
+            Thread.sleep(10);
+        }
+    }
+}
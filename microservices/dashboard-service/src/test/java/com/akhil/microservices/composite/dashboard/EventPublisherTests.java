@@ -0,0 +1,149 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.composite.dashboard.services.EventPublisher;
+import com.akhil.microservices.composite.dashboard.services.EventPublisher.OverloadStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventPublisherTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StreamBridge streamBridge = mock(StreamBridge.class);
+
+    @Test
+    void completeWhenSent() {
+
+        when(streamBridge.send(anyString(), any(Message.class))).thenReturn(true);
+        EventPublisher publisher = createPublisher(OverloadStrategy.REJECT);
+
+        publisher.publish("accounts-out-0", MessageBuilder.withPayload("account").build()).block();
+        publisher.publish("expenses-out-0", MessageBuilder.withPayload("expense").build()).block();
+
+        verify(streamBridge).send(eq("accounts-out-0"), any(Message.class));
+        verify(streamBridge).send(eq("expenses-out-0"), any(Message.class));
+        assertEquals(1L, meterRegistry.get("dashboard.events.publish").tag("binding", "accounts-out-0")
+                .tag("result", "success").timer().count());
+    }
+
+    @Test
+    void failWhenNotSent() {
+
+        when(streamBridge.send(anyString(), any(Message.class))).thenReturn(false);
+        EventPublisher publisher = createPublisher(OverloadStrategy.REJECT);
+
+        Mono<Void> result = publisher.publish("accounts-out-0", MessageBuilder.withPayload("account").build());
+
+        assertThrows(MessageDeliveryException.class, result::block);
+    }
+
+    @Test
+    void rejectWhenQueueIsFull() throws InterruptedException {
+
+        // The first message blocks the publisher thread, the second fills the queue of one
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return true;
+        });
+        EventPublisher publisher = createPublisher(OverloadStrategy.REJECT);
+
+        Mono<Void> first = publisher.publish("accounts-out-0", MessageBuilder.withPayload("1").build()).cache();
+        first.subscribe();
+        sending.await();
+        Mono<Void> second = publisher.publish("accounts-out-0", MessageBuilder.withPayload("2").build()).cache();
+        second.subscribe();
+
+        assertThrows(ResponseStatusException.class,
+                () -> publisher.publish("accounts-out-0", MessageBuilder.withPayload("3").build()).block());
+        assertEquals(1.0, meterRegistry.get("dashboard.events.publish.rejected").counter().count());
+
+        release.countDown();
+        first.block();
+        second.block();
+        verify(streamBridge, times(2)).send(eq("accounts-out-0"), any(Message.class));
+    }
+
+    @Test
+    void publishOtherKeysWhileLaneIsBlocked() throws InterruptedException {
+
+        CountDownLatch release = new CountDownLatch(1);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            Message<?> message = invocation.getArgument(1);
+            if ("blocked".equals(message.getPayload())) {
+                release.await();
+            }
+            return true;
+        });
+        EventPublisher publisher = new EventPublisher(streamBridge, Schedulers.boundedElastic(), meterRegistry, 10, 2,
+                10, OverloadStrategy.REJECT, Duration.ofMillis(100), Duration.ofSeconds(5), false);
+
+        Mono<Void> blocked = publisher.publish("accounts-out-0", MessageBuilder.withPayload("blocked")
+                .setHeader("partitionKey", 0).build()).cache();
+        blocked.subscribe();
+
+        // Key 1 is sent by the other lane
+        publisher.publish("accounts-out-0", MessageBuilder.withPayload("other")
+                .setHeader("partitionKey", 1).build()).block(Duration.ofSeconds(1));
+
+        release.countDown();
+        blocked.block();
+    }
+
+    @Test
+    void withdrawMessageThatTimesOutBeforeItIsSent() throws InterruptedException {
+
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(streamBridge.send(anyString(), any(Message.class))).thenAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return true;
+        });
+        EventPublisher publisher = new EventPublisher(streamBridge, Schedulers.boundedElastic(), meterRegistry, 10, 1,
+                10, OverloadStrategy.REJECT, Duration.ofMillis(100), Duration.ofMillis(200), false);
+
+        publisher.publish("accounts-out-0", MessageBuilder.withPayload("1").build()).subscribe(v -> {}, ex -> {});
+        sending.await();
+
+        // Still queued behind the first message when it times out, it must not be sent later
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> publisher.publish("accounts-out-0", MessageBuilder.withPayload("2").build()).block());
+        assertInstanceOf(TimeoutException.class, Exceptions.unwrap(thrown));
+
+        release.countDown();
+        verify(streamBridge, after(500).times(1)).send(eq("accounts-out-0"), any(Message.class));
+        assertEquals(1.0, meterRegistry.get("dashboard.events.publish.withdrawn").counter().count());
+    }
+
+    private EventPublisher createPublisher(OverloadStrategy overloadStrategy) {
+        return new EventPublisher(streamBridge, Schedulers.boundedElastic(), meterRegistry, 1, 1, 10,
+                overloadStrategy, Duration.ofMillis(100), Duration.ofSeconds(5), false);
+    }
+}
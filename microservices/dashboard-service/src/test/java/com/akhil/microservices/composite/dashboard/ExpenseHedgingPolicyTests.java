@@ -0,0 +1,69 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.composite.dashboard.services.ExpenseHedgingPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExpenseHedgingPolicyTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void hedgeWinsOverSlowRequest() {
+
+        ExpenseHedgingPolicy policy = new ExpenseHedgingPolicy(meterRegistry, true, 0.95, Duration.ofMillis(10), 1.0);
+
+        List<String> result = policy.apply(slowThenFast()).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("fast"), result);
+        assertEquals(1.0, meterRegistry.get("dashboard.expenses.hedges").tag("result", "sent").counter().count());
+        assertEquals(1.0, meterRegistry.get("dashboard.expenses.hedges").tag("result", "won").counter().count());
+        // The cancelled slow request and the hedge are both recorded
+        assertEquals(2, meterRegistry.get("dashboard.expenses.first-response").timer().count());
+    }
+
+    @Test
+    void hedgeThatLosesIsNotCountedAsWon() {
+
+        ExpenseHedgingPolicy policy = new ExpenseHedgingPolicy(meterRegistry, true, 0.95, Duration.ofMillis(10), 1.0);
+
+        AtomicInteger attempts = new AtomicInteger();
+        Supplier<Flux<String>> slowHedge = () -> attempts.getAndIncrement() == 0
+                ? Flux.just("first").delaySubscription(Duration.ofMillis(100))
+                : Flux.just("hedge").delaySubscription(Duration.ofMillis(500));
+
+        List<String> result = policy.apply(slowHedge).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("first"), result);
+        assertEquals(1.0, meterRegistry.get("dashboard.expenses.hedges").tag("result", "sent").counter().count());
+        assertEquals(0.0, meterRegistry.get("dashboard.expenses.hedges").tag("result", "won").counter().count());
+    }
+
+    @Test
+    void noHedgeWithoutBudget() {
+
+        ExpenseHedgingPolicy policy = new ExpenseHedgingPolicy(meterRegistry, true, 0.95, Duration.ofMillis(10), 0.0);
+
+        List<String> result = policy.apply(slowThenFast()).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("slow"), result);
+        assertEquals(0.0, meterRegistry.get("dashboard.expenses.hedges").tag("result", "sent").counter().count());
+        assertEquals(1.0, meterRegistry.get("dashboard.expenses.hedges").tag("result", "skipped").counter().count());
+    }
+
+    private Supplier<Flux<String>> slowThenFast() {
+        AtomicInteger attempts = new AtomicInteger();
+        return () -> attempts.getAndIncrement() == 0
+                ? Flux.just("slow").delaySubscription(Duration.ofMillis(500))
+                : Flux.just("fast");
+    }
+}
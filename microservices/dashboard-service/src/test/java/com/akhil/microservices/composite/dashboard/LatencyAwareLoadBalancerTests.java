@@ -0,0 +1,228 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.AttemptedInstances;
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.HedgeAwareServiceInstanceListSupplier;
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.InstanceLoadTracker;
+import com.akhil.microservices.composite.dashboard.services.loadbalancer.LatencyAwareLoadBalancer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.SimpleObjectProvider;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs two local stub replicas of a service, one of them slow, and checks that the latency aware load balancer
+ * moves the traffic to the fast one.
+ */
+class LatencyAwareLoadBalancerTests {
+
+    private static final String SERVICE_ID = "expense";
+
+    private final AtomicInteger fastRequests = new AtomicInteger();
+    private final AtomicInteger slowRequests = new AtomicInteger();
+
+    private DisposableServer fastServer;
+    private DisposableServer slowServer;
+
+    @BeforeEach
+    void startReplicas() {
+        fastServer = startReplica(fastRequests, Duration.ZERO);
+        slowServer = startReplica(slowRequests, Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void stopReplicas() {
+        fastServer.disposeNow();
+        slowServer.disposeNow();
+    }
+
+    @Test
+    void preferFastReplica() {
+
+        InstanceLoadTracker loadTracker = new InstanceLoadTracker(new SimpleMeterRegistry(), Duration.ofMinutes(1));
+        LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(
+                supplierProvider(instance("fast", fastServer), instance("slow", slowServer)), SERVICE_ID, loadTracker);
+        WebClient webClient = WebClient.builder().filter(loadTracker.exchangeFilter()).build();
+
+        // Both replicas get a sample first, otherwise the first picks depend on which one is tried first
+        get(webClient, instance("fast", fastServer));
+        get(webClient, instance("slow", slowServer));
+        fastRequests.set(0);
+        slowRequests.set(0);
+
+        for (int i = 0; i < 50; i++) {
+            get(webClient, loadBalancer.choose(new DefaultRequest<>()).block().getServer());
+        }
+
+        assertTrue(fastRequests.get() >= 45,
+                "Expected most requests on the fast replica, got fast: " + fastRequests + ", slow: " + slowRequests);
+    }
+
+    @Test
+    void retryReplicaWithStaleSamples() throws InterruptedException {
+
+        InstanceLoadTracker loadTracker = new InstanceLoadTracker(new SimpleMeterRegistry(), Duration.ofMillis(200));
+        WebClient webClient = WebClient.builder().filter(loadTracker.exchangeFilter()).build();
+        ServiceInstance fast = instance("fast", fastServer);
+        ServiceInstance slow = instance("slow", slowServer);
+
+        get(webClient, fast);
+        get(webClient, slow);
+        assertTrue(loadTracker.cost(fast) < loadTracker.cost(slow));
+
+        // The slow replica isn't chosen and gets no new samples, once they are stale it is tried again
+        Thread.sleep(300);
+        get(webClient, fast);
+        assertTrue(loadTracker.cost(slow) < loadTracker.cost(fast));
+    }
+
+    @Test
+    void hedgeAvoidsAttemptedReplica() {
+
+        InstanceLoadTracker loadTracker = new InstanceLoadTracker(new SimpleMeterRegistry(), Duration.ofMinutes(1));
+        ServiceInstance fast = instance("fast", fastServer);
+        ServiceInstance slow = instance("slow", slowServer);
+        LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(new SimpleObjectProvider<>(
+                new HedgeAwareServiceInstanceListSupplier(supplierProvider(fast, slow), SERVICE_ID, loadTracker)),
+                SERVICE_ID, loadTracker);
+        WebClient webClient = WebClient.builder().filter(loadTracker.exchangeFilter()).build();
+
+        get(webClient, fast);
+        get(webClient, slow);
+
+        // The first attempt went to the fast replica, the hedge goes to the other one though it costs more
+        Context attempted = AttemptedInstances.newContext();
+        webClient.get().uri(fast.getUri() + "/expense").retrieve().bodyToMono(String.class)
+                .contextWrite(attempted).block();
+
+        for (int i = 0; i < 10; i++) {
+            ServiceInstance chosen = loadBalancer.choose(new DefaultRequest<>()).contextWrite(attempted).block()
+                    .getServer();
+            assertEquals("slow", chosen.getInstanceId());
+        }
+        assertEquals("fast", loadBalancer.choose(new DefaultRequest<>()).block().getServer().getInstanceId());
+    }
+
+    @Test
+    void countRequestUntilBodyIsRead() throws InterruptedException {
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        InstanceLoadTracker loadTracker = new InstanceLoadTracker(meterRegistry, Duration.ofMinutes(1));
+        WebClient webClient = WebClient.builder().filter(loadTracker.exchangeFilter()).build();
+
+        // The headers are sent at once, the body after a delay
+        DisposableServer streamingServer = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.get("/expense", (request, response) -> response.sendHeaders()
+                        .then(response.sendString(Mono.just("[]").delayElement(Duration.ofMillis(300))))))
+                .bindNow();
+
+        try {
+            ServiceInstance streaming = instance("streaming", streamingServer);
+            Mono<String> body = webClient.get().uri(streaming.getUri() + "/expense").retrieve()
+                    .bodyToMono(String.class).cache();
+            body.subscribe();
+
+            Thread.sleep(150);
+            assertEquals(1.0, inFlight(meterRegistry, streaming));
+
+            body.block();
+            assertEquals(0.0, inFlight(meterRegistry, streaming));
+            assertTrue(loadTracker.cost(streaming) >= Duration.ofMillis(250).toNanos());
+        } finally {
+            streamingServer.disposeNow();
+        }
+    }
+
+    @Test
+    void removeReplicaNoLongerListed() {
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        InstanceLoadTracker loadTracker = new InstanceLoadTracker(meterRegistry, Duration.ofMinutes(1));
+        WebClient webClient = WebClient.builder().filter(loadTracker.exchangeFilter()).build();
+        ServiceInstance fast = instance("fast", fastServer);
+        ServiceInstance slow = instance("slow", slowServer);
+
+        loadTracker.retain(SERVICE_ID, List.of(fast, slow));
+        get(webClient, fast);
+        get(webClient, slow);
+
+        loadTracker.retain(SERVICE_ID, List.of(fast));
+
+        assertNotNull(inFlightGauge(meterRegistry, fast));
+        assertNull(inFlightGauge(meterRegistry, slow));
+    }
+
+    private double inFlight(MeterRegistry meterRegistry, ServiceInstance instance) {
+        return inFlightGauge(meterRegistry, instance).value();
+    }
+
+    private Gauge inFlightGauge(MeterRegistry meterRegistry, ServiceInstance instance) {
+        return meterRegistry.find("dashboard.loadbalancer.inflight")
+                .tag("instance", instance.getHost() + ":" + instance.getPort())
+                .gauge();
+    }
+
+    private void get(WebClient webClient, ServiceInstance instance) {
+        webClient.get().uri(instance.getUri() + "/expense").retrieve().bodyToMono(String.class).block();
+    }
+
+    private DisposableServer startReplica(AtomicInteger requests, Duration delay) {
+        return HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.get("/expense", (request, response) -> {
+                    requests.incrementAndGet();
+                    return response.sendString(Mono.just("[]").delayElement(delay));
+                }))
+                .bindNow();
+    }
+
+    private ServiceInstance instance(String instanceId, DisposableServer server) {
+        return new DefaultServiceInstance(instanceId, SERVICE_ID, "localhost", server.port(), false);
+    }
+
+    private ObjectProvider<ServiceInstanceListSupplier> supplierProvider(
+            ServiceInstance... instances) {
+
+        ServiceInstanceListSupplier supplier = new ServiceInstanceListSupplier() {
+            @Override
+            public String getServiceId() {
+                return SERVICE_ID;
+            }
+
+            @Override
+            public Flux<List<ServiceInstance>> get() {
+                return Flux.just(List.of(instances));
+            }
+        };
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("serviceInstanceListSupplier", supplier);
+        return beanFactory.getBeanProvider(ServiceInstanceListSupplier.class);
+    }
+}
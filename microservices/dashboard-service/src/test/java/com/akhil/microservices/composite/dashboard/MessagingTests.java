@@ -8,6 +8,8 @@ import com.akhil.microservices.api.core.expense.Category;
 import com.akhil.microservices.api.core.expense.Expense;
 import com.akhil.microservices.api.core.expense.PaymentMode;
 import com.akhil.microservices.api.event.Event;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
@@ -21,10 +23,12 @@ import org.springframework.http.HttpStatus;
 import org.springframework.messaging.Message;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static com.akhil.microservices.composite.dashboard.IsSameEvent.sameEventExceptCreatedAt;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -38,7 +42,9 @@ import static reactor.core.publisher.Mono.just;
         webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
         properties = {
                 "spring.main.allow-bean-definition-overriding=true",
-                "spring.cloud.config.enabled=false"
+                "spring.cloud.config.enabled=false",
+                "app.bulk-import.min-expenses=3",
+                "app.bulk-import.chunk-size=2"
         }
 )
 @Import({
@@ -118,6 +124,34 @@ public class MessagingTests {
         assertThat(expenseMessages.get(0), is(sameEventExceptCreatedAt(expectedExpenseEvent)));
     }
 
+    @Test
+    void createDashboardBulkImport() throws IOException {
+
+        List<ExpenseSummary> expenses = IntStream.rangeClosed(1, 5)
+                .mapToObj(expenseId -> new ExpenseSummary(expenseId, LocalDateTime.now(), 10.0,
+                        new Category("c", true), "Content", PaymentMode.CASH, null))
+                .toList();
+        postAndVerifyAccount(new DashboardAggregate(new AccountSummary(1, "name"), expenses, null), OK);
+
+        final List<String> accountMessages = getMessages("accounts");
+        final List<String> expenseMessages = getMessages("expenses");
+
+        assertEquals(1, accountMessages.size());
+
+        // Assert the five expenses are queued up as chunks of at most two expenses
+        assertEquals(3, expenseMessages.size());
+
+        ObjectMapper mapper = new ObjectMapper();
+        int expenseCount = 0;
+        for (String message : expenseMessages) {
+            JsonNode event = mapper.readTree(message);
+            assertEquals("BULK_CREATE", event.get("type").asText());
+            assertEquals(1, event.get("key").asInt());
+            expenseCount += event.get("data").size();
+        }
+        assertEquals(5, expenseCount);
+    }
+
     @Test
     void deleteCompositeProduct() {
         deleteAndVerifyAccount(1, OK);
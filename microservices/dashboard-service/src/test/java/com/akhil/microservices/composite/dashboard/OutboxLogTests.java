@@ -0,0 +1,77 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.composite.dashboard.services.outbox.OutboxLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboxLogTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readAgainUntilCommitted() throws IOException {
+
+        Path file = dir.resolve("outbox.log");
+        try (OutboxLog log = new OutboxLog(file, 1024)) {
+            assertTrue(log.append(bytes("1")));
+            assertTrue(log.append(bytes("2")));
+            assertTrue(log.append(bytes("3")));
+
+            OutboxLog.Batch batch = log.read(2);
+            assertEquals(List.of("1", "2"), strings(batch));
+            assertEquals(List.of("1", "2"), strings(log.read(2)));
+
+            log.commit(batch.size());
+            assertEquals(List.of("3"), strings(log.read(2)));
+        }
+
+        // Reopened, the uncommitted record is still there
+        try (OutboxLog log = new OutboxLog(file, 1024)) {
+            OutboxLog.Batch batch = log.read(10);
+            assertEquals(List.of("3"), strings(batch));
+
+            log.commit(batch.size());
+            assertEquals(0, log.pendingBytes());
+        }
+    }
+
+    @Test
+    void movePendingRecordsToStartWhenFull() throws IOException {
+
+        try (OutboxLog log = new OutboxLog(dir.resolve("outbox.log"), 8 + 3 * 14)) {
+            assertTrue(log.append(bytes("record-1..")));
+            assertTrue(log.append(bytes("record-2..")));
+            assertTrue(log.append(bytes("record-3..")));
+            assertFalse(log.append(bytes("record-4..")));
+
+            // Commits the first record while the second is still being relayed
+            OutboxLog.Batch first = log.read(1);
+            OutboxLog.Batch inFlight = log.read(2);
+            log.commit(first.size());
+
+            assertTrue(log.append(bytes("record-4..")));
+            assertEquals(List.of("record-2..", "record-3..", "record-4.."), strings(log.read(10)));
+
+            log.commit(inFlight.size() - first.size());
+            assertEquals(List.of("record-3..", "record-4.."), strings(log.read(10)));
+        }
+    }
+
+    private byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<String> strings(OutboxLog.Batch batch) {
+        return batch.records().stream().map(record -> new String(record, StandardCharsets.UTF_8)).toList();
+    }
+}
@@ -0,0 +1,50 @@
+package com.akhil.microservices.composite.dashboard;
+
+import com.akhil.microservices.composite.dashboard.services.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SingleFlightTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<Integer, String> singleFlight = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void coalesceConcurrentCalls() {
+
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Sinks.One<String> response = Sinks.one();
+
+        Mono<String> first = singleFlight.execute(1, () -> {
+            upstreamCalls.incrementAndGet();
+            return response.asMono();
+        });
+        Mono<String> second = singleFlight.execute(1, () -> {
+            upstreamCalls.incrementAndGet();
+            return Mono.just("unexpected");
+        });
+
+        first.subscribe();
+        Mono<String> secondResult = second.cache();
+        secondResult.subscribe();
+        response.tryEmitValue("result");
+
+        assertEquals("result", secondResult.block());
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1.0, meterRegistry.get("test.singleflight").tag("role", "follower").counter().count());
+
+        // The call has completed, the next one goes upstream again
+        assertEquals("next", singleFlight.execute(1, () -> {
+            upstreamCalls.incrementAndGet();
+            return Mono.just("next");
+        }).block());
+        assertEquals(2, upstreamCalls.get());
+    }
+}
@@ -1,11 +1,17 @@
 package com.akhil.microservices.core.expense.config;
 
+import com.akhil.microservices.util.event.EventDeduplicator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import java.time.Duration;
 
 @Configuration
 public class AppConfig {
@@ -18,4 +24,12 @@ public class AppConfig {
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
                 .build();
     }
+
+    @Bean
+    public EventDeduplicator eventDeduplicator(ReactiveMongoOperations mongoOperations, MeterRegistry meterRegistry,
+                                               @Value("${app.event-dedupe.max-size:100000}") int maxSize,
+                                               @Value("${app.event-dedupe.ttl:10m}") Duration ttl,
+                                               @Value("${app.event-dedupe.persistent:false}") boolean persistent) {
+        return new EventDeduplicator(mongoOperations, meterRegistry, maxSize, ttl, persistent);
+    }
 }
@@ -1,22 +1,33 @@
 package com.akhil.microservices.core.expense.persistence;
 
 import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.Money;
 import com.akhil.microservices.api.core.expense.PaymentMode;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Document(
         collection = "expenses"
 )
-@CompoundIndex(
-        name = "acc-exp-idx",
-        unique = true,
-        def = "{'accountId': 1, 'expenses': 1}"
-)
+@CompoundIndexes({
+        @CompoundIndex(
+                name = "acc-exp-idx",
+                unique = true,
+                def = "{'accountId': 1, 'expenseId': 1}"
+        ),
+        @CompoundIndex(
+                name = "acc-txn-exp-idx",
+                def = "{'accountId': 1, 'transactionDateTime': 1, 'expenseId': 1}"
+        )
+})
 public class ExpenseEntity {
 
     @Id
@@ -28,7 +39,13 @@ public class ExpenseEntity {
     private int accountId;
     private int expenseId;
     private LocalDateTime transactionDateTime;
-    private double amount;
+
+    // Stored as Decimal128 so that $sum is exact. Documents written before hold a double and no currency, they are
+    // read as an amount in the default currency until migrated
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal amount;
+    private String currency;
+
     private Category category;
     private String description;
     private PaymentMode paymentMode;
@@ -38,7 +55,8 @@ public class ExpenseEntity {
         accountId = 0;
         expenseId = 0;
         transactionDateTime = LocalDateTime.now();
-        amount = 0.0;
+        amount = BigDecimal.ZERO;
+        currency = Money.DEFAULT_CURRENCY;
         category = null;
         description = null;
         paymentMode = PaymentMode.CASH;
@@ -46,12 +64,13 @@ public class ExpenseEntity {
     }
 
     public ExpenseEntity(int accountId, int expenseId, LocalDateTime transactionDateTime,
-                         double amount, Category category, String description,
+                         BigDecimal amount, String currency, Category category, String description,
                          PaymentMode paymentMode, String notes) {
         this.accountId = accountId;
         this.expenseId = expenseId;
         this.transactionDateTime = transactionDateTime;
         this.amount = amount;
+        this.currency = currency;
         this.category = category;
         this.description = description;
         this.paymentMode = paymentMode;
@@ -98,14 +117,22 @@ public class ExpenseEntity {
         this.transactionDateTime = transactionDateTime;
     }
 
-    public double getAmount() {
+    public BigDecimal getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(BigDecimal amount) {
         this.amount = amount;
     }
 
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
     public Category getCategory() {
         return category;
     }
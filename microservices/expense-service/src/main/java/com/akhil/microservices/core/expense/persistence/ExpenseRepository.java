@@ -4,9 +4,13 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface ExpenseRepository extends ReactiveCrudRepository<ExpenseEntity, String> {
+import java.util.Collection;
+
+public interface ExpenseRepository extends ReactiveCrudRepository<ExpenseEntity, String>, ExpenseRepositoryCustom {
 
     Flux<ExpenseEntity> findByAccountId(int accountId);
 
     Mono<ExpenseEntity> findByAccountIdAndExpenseId(int accountId, int expenseId);
+
+    Mono<Void> deleteByAccountIdIn(Collection<Integer> accountIds);
 }
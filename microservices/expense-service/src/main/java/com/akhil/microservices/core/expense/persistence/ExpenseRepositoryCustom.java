@@ -0,0 +1,25 @@
+package com.akhil.microservices.core.expense.persistence;
+
+import com.akhil.microservices.api.core.expense.ExpenseGroupBy;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface ExpenseRepositoryCustom {
+
+    Flux<ExpenseEntity> findPageByAccountId(int accountId, LocalDateTime from, LocalDateTime to,
+                                            LocalDateTime afterDateTime, Integer afterExpenseId, int limit);
+
+    Flux<ExpenseTotalEntity> aggregateTotalsByAccountId(int accountId, LocalDateTime from, LocalDateTime to,
+                                                        Set<ExpenseGroupBy> groupBy);
+
+    Flux<Integer> findDistinctAccountIds();
+
+    Flux<ExpenseEntity> findByAccountIdAndExpenseIds(Map<Integer, ? extends Collection<Integer>> expenseIdsByAccountId);
+
+    Flux<ExpenseEntity> bulkInsertIfAbsent(List<ExpenseEntity> entities);
+}
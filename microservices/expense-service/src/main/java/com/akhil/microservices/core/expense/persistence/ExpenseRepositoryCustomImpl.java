@@ -0,0 +1,200 @@
+package com.akhil.microservices.core.expense.persistence;
+
+import com.akhil.microservices.api.core.expense.ExpenseGroupBy;
+import com.akhil.microservices.api.core.expense.Money;
+import com.mongodb.MongoBulkWriteException;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class ExpenseRepositoryCustomImpl implements ExpenseRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public ExpenseRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Flux<ExpenseEntity> findPageByAccountId(int accountId, LocalDateTime from, LocalDateTime to,
+                                                   LocalDateTime afterDateTime, Integer afterExpenseId, int limit) {
+
+        List<Criteria> criteria = accountAndRangeCriteria(accountId, from, to);
+
+        // Keyset condition: continue strictly after the last (transactionDateTime, expenseId) of the previous page
+        if (afterDateTime != null && afterExpenseId != null) {
+            criteria.add(new Criteria().orOperator(
+                    where("transactionDateTime").lt(afterDateTime),
+                    where("transactionDateTime").is(afterDateTime).and("expenseId").lt(afterExpenseId)));
+        }
+
+        Query query = Query.query(new Criteria().andOperator(criteria))
+                .with(Sort.by(Sort.Direction.DESC, "transactionDateTime", "expenseId"))
+                .limit(limit);
+
+        return mongoOperations.find(query, ExpenseEntity.class);
+    }
+
+    @Override
+    public Flux<ExpenseTotalEntity> aggregateTotalsByAccountId(int accountId, LocalDateTime from, LocalDateTime to,
+                                                               Set<ExpenseGroupBy> groupBy) {
+
+        // Amounts in different currencies are never added up
+        Document groupId = new Document("currency", new Document("$ifNull",
+                List.of("$currency", Money.DEFAULT_CURRENCY)));
+        if (groupBy.contains(ExpenseGroupBy.CATEGORY)) {
+            groupId.append("category", "$category.name");
+        }
+        if (groupBy.contains(ExpenseGroupBy.PAYMENT_MODE)) {
+            groupId.append("paymentMode", "$paymentMode");
+        }
+        String periodFormat = periodFormat(groupBy);
+        if (periodFormat != null) {
+            // Dates are stored converted from the system default zone, bucket them back in the same zone
+            groupId.append("period", new Document("$dateToString", new Document("format", periodFormat)
+                    .append("date", "$transactionDateTime")
+                    .append("timezone", ZoneId.systemDefault().getId())));
+        }
+
+        AggregationOperation group = context -> new Document("$group", new Document("_id", groupId)
+                .append("total", new Document("$sum", "$amount"))
+                .append("count", new Document("$sum", 1)));
+
+        AggregationOperation project = context -> new Document("$project", new Document("_id", 0)
+                .append("period", "$_id.period")
+                .append("category", "$_id.category")
+                .append("paymentMode", "$_id.paymentMode")
+                .append("currency", "$_id.currency")
+                .append("total", 1)
+                .append("count", 1));
+
+        AggregationOperation sort = context -> new Document("$sort", new Document("period", 1)
+                .append("category", 1)
+                .append("paymentMode", 1)
+                .append("currency", 1));
+
+        TypedAggregation<ExpenseEntity> aggregation = Aggregation.newAggregation(ExpenseEntity.class,
+                Aggregation.match(new Criteria().andOperator(accountAndRangeCriteria(accountId, from, to))),
+                group,
+                project,
+                sort);
+
+        // The sum is exact over Decimal128 amounts, documents not yet migrated still hold doubles
+        return mongoOperations.aggregate(aggregation, ExpenseTotalEntity.class)
+                .doOnNext(total -> total.setTotal(total.getTotal()
+                        .setScale(Money.fractionDigits(total.getCurrency()), RoundingMode.HALF_EVEN)));
+    }
+
+    @Override
+    public Flux<Integer> findDistinctAccountIds() {
+        return mongoOperations.findDistinct(new Query(), "accountId", ExpenseEntity.class, Integer.class);
+    }
+
+    @Override
+    public Flux<ExpenseEntity> findByAccountIdAndExpenseIds(
+            Map<Integer, ? extends Collection<Integer>> expenseIdsByAccountId) {
+
+        if (expenseIdsByAccountId.isEmpty()) {
+            return Flux.empty();
+        }
+
+        List<Criteria> criteria = new ArrayList<>();
+        expenseIdsByAccountId.forEach((accountId, expenseIds) ->
+                criteria.add(where("accountId").is(accountId).and("expenseId").in(expenseIds)));
+
+        return mongoOperations.find(Query.query(new Criteria().orOperator(criteria)), ExpenseEntity.class);
+    }
+
+    @Override
+    public Flux<ExpenseEntity> bulkInsertIfAbsent(List<ExpenseEntity> entities) {
+
+        if (entities.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // One unordered bulkWrite of upserts that only set fields on insert, an expense that is already stored is
+        // left as is. The upsert copies accountId and expenseId from the filter, the unique index keeps them unique
+        ReactiveBulkOperations bulkOps = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                ExpenseEntity.class);
+        for (ExpenseEntity entity : entities) {
+            Document document = new Document();
+            mongoOperations.getConverter().write(entity, document);
+            document.remove("_id");
+            document.remove("accountId");
+            document.remove("expenseId");
+            document.put("version", 0);
+
+            Query query = Query.query(where("accountId").is(entity.getAccountId())
+                    .and("expenseId").is(entity.getExpenseId()));
+            bulkOps.upsert(query, Update.fromDocument(new Document("$setOnInsert", document)));
+        }
+
+        // Only the inserted expenses are returned, upserts are reported by their index in the bulk. If some of the
+        // writes fail, the expenses inserted by the others are returned before the error
+        return bulkOps.execute()
+                .flatMapMany(result -> Flux.fromIterable(result.getUpserts()))
+                .onErrorResume(ex -> {
+                    MongoBulkWriteException bulkException = bulkWriteException(ex);
+                    return bulkException == null
+                            ? Flux.error(ex)
+                            : Flux.fromIterable(bulkException.getWriteResult().getUpserts())
+                                    .concatWith(Flux.error(ex));
+                })
+                .map(upsert -> entities.get(upsert.getIndex()));
+    }
+
+    private static MongoBulkWriteException bulkWriteException(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkException) {
+                return bulkException;
+            }
+        }
+        return null;
+    }
+
+    private List<Criteria> accountAndRangeCriteria(int accountId, LocalDateTime from, LocalDateTime to) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(where("accountId").is(accountId));
+
+        if (from != null) {
+            criteria.add(where("transactionDateTime").gte(from));
+        }
+        if (to != null) {
+            criteria.add(where("transactionDateTime").lt(to));
+        }
+        return criteria;
+    }
+
+    private String periodFormat(Set<ExpenseGroupBy> groupBy) {
+        if (groupBy.contains(ExpenseGroupBy.DAY)) {
+            return "%Y-%m-%d";
+        }
+        if (groupBy.contains(ExpenseGroupBy.WEEK)) {
+            return "%G-W%V";
+        }
+        if (groupBy.contains(ExpenseGroupBy.MONTH)) {
+            return "%Y-%m";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package com.akhil.microservices.core.expense.persistence;
+
+import com.akhil.microservices.api.core.expense.PaymentMode;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+
+@Document(
+        collection = "expense_rollups"
+)
+@CompoundIndex(
+        name = "acc-month-cat-pm-cur-idx",
+        unique = true,
+        def = "{'accountId': 1, 'month': 1, 'category': 1, 'paymentMode': 1, 'currency': 1}"
+)
+public class ExpenseRollupEntity {
+
+    @Id
+    private String id;
+
+    private int accountId;
+    private String month;
+    private String category;
+    private PaymentMode paymentMode;
+    private String currency;
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal total;
+    private long count;
+
+    public ExpenseRollupEntity() {
+    }
+
+    public ExpenseRollupEntity(int accountId, String month, String category, PaymentMode paymentMode,
+                               String currency, BigDecimal total, long count) {
+        this.accountId = accountId;
+        this.month = month;
+        this.category = category;
+        this.paymentMode = paymentMode;
+        this.currency = currency;
+        this.total = total;
+        this.count = count;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(int accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getMonth() {
+        return month;
+    }
+
+    public void setMonth(String month) {
+        this.month = month;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public PaymentMode getPaymentMode() {
+        return paymentMode;
+    }
+
+    public void setPaymentMode(PaymentMode paymentMode) {
+        this.paymentMode = paymentMode;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
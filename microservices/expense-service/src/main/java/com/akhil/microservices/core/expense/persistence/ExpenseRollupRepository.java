@@ -0,0 +1,17 @@
+package com.akhil.microservices.core.expense.persistence;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ExpenseRollupRepository extends ReactiveCrudRepository<ExpenseRollupEntity, String>,
+        ExpenseRollupRepositoryCustom {
+
+    Flux<ExpenseRollupEntity> findByAccountIdOrderByMonthAsc(int accountId);
+
+    Mono<Void> deleteByAccountId(int accountId);
+
+    Mono<Void> deleteByAccountIdIn(Collection<Integer> accountIds);
+}
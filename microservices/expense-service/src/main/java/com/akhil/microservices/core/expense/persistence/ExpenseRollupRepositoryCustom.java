@@ -0,0 +1,16 @@
+package com.akhil.microservices.core.expense.persistence;
+
+import com.akhil.microservices.api.core.expense.PaymentMode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+public interface ExpenseRollupRepositoryCustom {
+
+    // Buckets of the account from fromMonth to toMonth inclusive, as yyyy-MM, ordered by month. A null bound is open
+    Flux<ExpenseRollupEntity> findByAccountIdAndMonthRange(int accountId, String fromMonth, String toMonth);
+
+    Mono<Void> increment(int accountId, String month, String category, PaymentMode paymentMode, String currency,
+                         BigDecimal amount, long count);
+}
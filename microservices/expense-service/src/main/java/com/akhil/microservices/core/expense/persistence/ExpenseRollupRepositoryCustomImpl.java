@@ -0,0 +1,76 @@
+package com.akhil.microservices.core.expense.persistence;
+
+import com.akhil.microservices.api.core.expense.PaymentMode;
+import org.bson.types.Decimal128;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class ExpenseRollupRepositoryCustomImpl implements ExpenseRollupRepositoryCustom {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public ExpenseRollupRepositoryCustomImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Flux<ExpenseRollupEntity> findByAccountIdAndMonthRange(int accountId, String fromMonth, String toMonth) {
+
+        // Months are compared as yyyy-MM strings, the range is a scan of the accountId, month prefix of the index
+        Criteria criteria = where("accountId").is(accountId);
+        if (fromMonth != null || toMonth != null) {
+            Criteria month = criteria.and("month");
+            if (fromMonth != null) {
+                month.gte(fromMonth);
+            }
+            if (toMonth != null) {
+                month.lte(toMonth);
+            }
+        }
+
+        return mongoOperations.find(Query.query(criteria).with(Sort.by("month")), ExpenseRollupEntity.class);
+    }
+
+    @Override
+    public Mono<Void> increment(int accountId, String month, String category, PaymentMode paymentMode,
+                                String currency, BigDecimal amount, long count) {
+
+        // Incremented as Decimal128, the total stays exact however many times it is updated
+        Update update = new Update().inc("total", new Decimal128(amount)).inc("count", count);
+
+        // Two concurrent upserts of a new bucket can race on the unique index, the loser retries as an update
+        Mono<Void> upsert = mongoOperations.upsert(Query.query(bucket(accountId, month, category, paymentMode, currency)),
+                        update, ExpenseRollupEntity.class)
+                .retryWhen(Retry.max(1).filter(DuplicateKeyException.class::isInstance))
+                .then();
+
+        if (count >= 0) {
+            return upsert;
+        }
+
+        // Drop emptied buckets so reads stay proportional to the buckets actually in use
+        return upsert.then(mongoOperations.remove(
+                Query.query(bucket(accountId, month, category, paymentMode, currency).and("count").lte(0)),
+                ExpenseRollupEntity.class).then());
+    }
+
+    private Criteria bucket(int accountId, String month, String category, PaymentMode paymentMode,
+                            String currency) {
+        return where("accountId").is(accountId)
+                .and("month").is(month)
+                .and("category").is(category)
+                .and("paymentMode").is(paymentMode)
+                .and("currency").is(currency);
+    }
+}
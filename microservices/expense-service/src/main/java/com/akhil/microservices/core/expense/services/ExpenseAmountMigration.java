@@ -0,0 +1,106 @@
+package com.akhil.microservices.core.expense.services;
+
+import com.akhil.microservices.api.core.expense.Money;
+import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseRollupEntity;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Migrates expenses stored with a double amount and no currency to a Decimal128 amount in the default currency,
+ * rounded to its minor units. The rollups are rebuilt afterwards, their buckets now include the currency.
+ * Documents not yet migrated are still read correctly.
+ * <p>
+ * Runs while the context starts, before the message consumers do. Rollup buckets stored without a currency are
+ * given the default currency and the previous unique index is dropped on every start, increments of these buckets
+ * would otherwise fail on it. The expenses are only migrated, and the rollups rebuilt, with
+ * app.money.migrate-on-startup. A rebuild replaces the rollups, increments written meanwhile would be lost, so
+ * instances still running the previous version must be stopped while it runs.
+ */
+@Component
+public class ExpenseAmountMigration implements InitializingBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpenseAmountMigration.class);
+
+    private static final String PREVIOUS_ROLLUP_INDEX = "acc-month-cat-pm-idx";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final ExpenseRollupService rollupService;
+    private final boolean migrateOnStartup;
+
+    @Autowired
+    public ExpenseAmountMigration(ReactiveMongoOperations mongoOperations, ExpenseRollupService rollupService,
+                                  @Value("${app.money.migrate-on-startup:true}") boolean migrateOnStartup) {
+        this.mongoOperations = mongoOperations;
+        this.rollupService = rollupService;
+        this.migrateOnStartup = migrateOnStartup;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        long buckets = migrateRollupBuckets().block();
+        if (buckets > 0) {
+            LOG.info("Set the default currency on {} expense rollup buckets", buckets);
+        }
+
+        if (migrateOnStartup) {
+            LOG.info("Migrated the amount of {} expenses", migrate().block());
+        }
+    }
+
+    public Mono<Long> migrateRollupBuckets() {
+
+        Query withoutCurrency = Query.query(where("currency").exists(false));
+
+        return dropPreviousRollupIndex()
+                .then(mongoOperations.updateMulti(withoutCurrency, new Update().set("currency", Money.DEFAULT_CURRENCY),
+                        ExpenseRollupEntity.class))
+                .map(UpdateResult::getModifiedCount);
+    }
+
+    public Mono<Long> migrate() {
+
+        Query notMigrated = Query.query(new Criteria().orOperator(
+                where("amount").not().type(Criteria.Type.DECIMAL_128),
+                where("currency").exists(false)));
+
+        AggregationOperation toDecimal = context -> new Document("$set", new Document()
+                .append("currency", new Document("$ifNull", List.of("$currency", Money.DEFAULT_CURRENCY)))
+                .append("amount", new Document("$round", List.of(new Document("$toDecimal", "$amount"),
+                        Money.fractionDigits(Money.DEFAULT_CURRENCY)))));
+
+        // The rollups were summed from the unrounded amounts
+        return mongoOperations.updateMulti(notMigrated, AggregationUpdate.from(List.of(toDecimal)),
+                        ExpenseEntity.class)
+                .map(UpdateResult::getModifiedCount)
+                .flatMap(migrated -> migrated == 0
+                        ? Mono.just(migrated)
+                        : rollupService.rebuildAll().thenReturn(migrated));
+    }
+
+    // The previous unique index doesn't include the currency and would reject buckets differing only by it
+    private Mono<Void> dropPreviousRollupIndex() {
+        return mongoOperations.indexOps(ExpenseRollupEntity.class).getIndexInfo()
+                .filter(index -> PREVIOUS_ROLLUP_INDEX.equals(index.getName()))
+                .concatMap(index -> mongoOperations.indexOps(ExpenseRollupEntity.class)
+                        .dropIndex(PREVIOUS_ROLLUP_INDEX))
+                .then();
+    }
+}
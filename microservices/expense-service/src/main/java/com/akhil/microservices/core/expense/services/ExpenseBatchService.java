@@ -0,0 +1,102 @@
+package com.akhil.microservices.core.expense.services;
+
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+@Component
+public class ExpenseBatchService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpenseBatchService.class);
+
+    private final ExpenseRepository repository;
+    private final ExpenseRollupService rollupService;
+    private final ExpenseMapper mapper;
+
+    public ExpenseBatchService(ExpenseRepository repository, ExpenseRollupService rollupService,
+                               ExpenseMapper mapper) {
+        this.repository = repository;
+        this.rollupService = rollupService;
+        this.mapper = mapper;
+    }
+
+    public Mono<Void> createExpenses(List<Expense> expenses) {
+
+        if (expenses.isEmpty()) {
+            return Mono.empty();
+        }
+
+        LOG.debug("createExpenses: tries to insert a batch of {} expenses", expenses.size());
+        return insertIfAbsent(expenses);
+    }
+
+    public Mono<Void> bulkCreateExpenses(List<Expense> expenses) {
+
+        if (expenses.isEmpty()) {
+            return Mono.empty();
+        }
+
+        LOG.debug("bulkCreateExpenses: tries to write a chunk of {} expenses", expenses.size());
+        return insertIfAbsent(expenses);
+    }
+
+    // Already stored expenses, e.g. from a redelivered batch, are skipped by the bulk write itself. Only the inserted
+    // expenses are added to the rollups, also when the write fails partway, so a redelivery that skips them doesn't
+    // leave the rollups without them
+    private Mono<Void> insertIfAbsent(List<Expense> expenses) {
+
+        // Keep the last occurrence of each expense, a later CREATE in the same batch wins
+        Map<String, ExpenseEntity> entities = new LinkedHashMap<>();
+        for (Expense expense : expenses) {
+            entities.put(expense.getAccountId() + "/" + expense.getExpenseId(), mapper.apiToEntity(expense));
+        }
+
+        List<ExpenseEntity> inserted = new ArrayList<>();
+        return repository.bulkInsertIfAbsent(List.copyOf(entities.values()))
+                .log(LOG.getName(), Level.FINE)
+                .doOnNext(inserted::add)
+                .then()
+                .onErrorResume(ex -> addToRollups(inserted).then(Mono.error(ex)))
+                .then(Mono.defer(() -> {
+                    if (inserted.size() < entities.size()) {
+                        LOG.info("Skips {} already stored expenses", entities.size() - inserted.size());
+                    }
+                    return addToRollups(inserted);
+                }));
+    }
+
+    private Mono<Void> addToRollups(List<ExpenseEntity> inserted) {
+        return inserted.isEmpty() ? Mono.empty() : rollupService.addAll(List.copyOf(inserted));
+    }
+
+    public Mono<Void> deleteExpenses(Collection<Integer> accountIds,
+                                     Map<Integer, ? extends Collection<Integer>> expenseIdsByAccountId) {
+
+        LOG.debug("deleteExpenses: tries to delete all expenses for {} accounts and single expenses for {} accounts",
+                accountIds.size(), expenseIdsByAccountId.size());
+
+        Mono<Void> expenseDeletes = repository.findByAccountIdAndExpenseIds(expenseIdsByAccountId)
+                .collectList()
+                .flatMap(found -> found.isEmpty()
+                        ? Mono.<Void>empty()
+                        : repository.deleteAllById(found.stream().map(ExpenseEntity::getId).toList())
+                                .then(rollupService.subtractAll(found)));
+
+        Mono<Void> accountDeletes = accountIds.isEmpty()
+                ? Mono.empty()
+                : repository.deleteByAccountIdIn(accountIds).then(rollupService.deleteRollups(accountIds));
+
+        return expenseDeletes.then(accountDeletes);
+    }
+}
@@ -1,28 +1,52 @@
 package com.akhil.microservices.core.expense.services;
 
 import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.ExpenseTotal;
+import com.akhil.microservices.api.core.expense.Money;
 import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseRollupEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseTotalEntity;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Mapper(componentModel = "spring")
 public interface ExpenseMapper {
 
     @Mappings({
+            @Mapping(target = "amount", expression = "java(toMoney(entity.getAmount(), entity.getCurrency()))"),
             @Mapping(target = "serviceAddress", ignore = true)
     })
     Expense entityToApi(ExpenseEntity entity);
 
     @Mappings({
             @Mapping(target = "id", ignore = true),
-            @Mapping(target = "version", ignore = true)
+            @Mapping(target = "version", ignore = true),
+            @Mapping(target = "amount", expression = "java(toBigDecimal(api.getAmount()))"),
+            @Mapping(target = "currency", source = "amount.currency")
     })
     ExpenseEntity apiToEntity(Expense api);
 
+    ExpenseTotal totalEntityToApi(ExpenseTotalEntity entity);
+
+    @Mappings({
+            @Mapping(target = "period", source = "month")
+    })
+    ExpenseTotal rollupEntityToApi(ExpenseRollupEntity entity);
+
     List<Expense> entityListToApiList(List<ExpenseEntity> entity);
 
     List<ExpenseEntity> apiListToEntityList(List<Expense> api);
+
+    // Documents stored before amounts had a currency are in the default currency
+    default Money toMoney(BigDecimal amount, String currency) {
+        return amount == null ? null : Money.of(amount, currency == null ? Money.DEFAULT_CURRENCY : currency);
+    }
+
+    default BigDecimal toBigDecimal(Money amount) {
+        return amount == null ? null : amount.toBigDecimal();
+    }
 }
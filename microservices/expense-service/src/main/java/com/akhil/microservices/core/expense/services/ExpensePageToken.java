@@ -0,0 +1,49 @@
+package com.akhil.microservices.core.expense.services;
+
+import com.akhil.microservices.api.exceptions.InvalidInputException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+class ExpensePageToken {
+
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime transactionDateTime;
+    private final int expenseId;
+
+    ExpensePageToken(LocalDateTime transactionDateTime, int expenseId) {
+        this.transactionDateTime = transactionDateTime;
+        this.expenseId = expenseId;
+    }
+
+    LocalDateTime getTransactionDateTime() {
+        return transactionDateTime;
+    }
+
+    int getExpenseId() {
+        return expenseId;
+    }
+
+    String encode() {
+        String raw = transactionDateTime + SEPARATOR + expenseId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ExpensePageToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = raw.lastIndexOf(SEPARATOR);
+            if (separatorIndex < 0) {
+                throw new InvalidInputException("Invalid pageToken: " + token);
+            }
+            return new ExpensePageToken(
+                    LocalDateTime.parse(raw.substring(0, separatorIndex)),
+                    Integer.parseInt(raw.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new InvalidInputException("Invalid pageToken: " + token);
+        }
+    }
+}
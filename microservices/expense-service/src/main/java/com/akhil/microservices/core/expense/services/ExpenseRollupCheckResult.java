@@ -0,0 +1,32 @@
+package com.akhil.microservices.core.expense.services;
+
+import java.util.List;
+
+public class ExpenseRollupCheckResult {
+
+    private final int accountId;
+    private final int bucketsChecked;
+    private final List<String> mismatches;
+
+    public ExpenseRollupCheckResult(int accountId, int bucketsChecked, List<String> mismatches) {
+        this.accountId = accountId;
+        this.bucketsChecked = bucketsChecked;
+        this.mismatches = mismatches;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public int getBucketsChecked() {
+        return bucketsChecked;
+    }
+
+    public boolean isConsistent() {
+        return mismatches.isEmpty();
+    }
+
+    public List<String> getMismatches() {
+        return mismatches;
+    }
+}
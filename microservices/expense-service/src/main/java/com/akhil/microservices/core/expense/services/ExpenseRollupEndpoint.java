@@ -0,0 +1,71 @@
+package com.akhil.microservices.core.expense.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.cloud.stream.binder.Binding;
+import org.springframework.cloud.stream.binding.BindingService;
+import org.springframework.cloud.stream.endpoint.BindingsLifecycleController;
+import org.springframework.cloud.stream.endpoint.BindingsLifecycleController.State;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@Endpoint(id = "expenserollups")
+public class ExpenseRollupEndpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpenseRollupEndpoint.class);
+
+    private final ExpenseRollupService rollupService;
+    private final BindingService bindingService;
+    private final BindingsLifecycleController bindingsController;
+
+    public ExpenseRollupEndpoint(ExpenseRollupService rollupService, BindingService bindingService,
+                                 BindingsLifecycleController bindingsController) {
+        this.rollupService = rollupService;
+        this.bindingService = bindingService;
+        this.bindingsController = bindingsController;
+    }
+
+    @ReadOperation
+    public Mono<ExpenseRollupCheckResult> check(@Selector int accountId) {
+        return rollupService.check(accountId);
+    }
+
+    // A rebuild replaces the rollups with totals aggregated from the expenses, increments written meanwhile would be
+    // lost. The consumers of this instance are stopped while it runs, those of other instances must be stopped too.
+    // Only the consumers that were running are started again afterwards
+    @WriteOperation
+    public Mono<Long> rebuild(@Nullable Integer accountId) {
+        return Mono.using(this::stopRunningConsumers,
+                        stopped -> accountId == null ? rollupService.rebuildAll() : rollupService.rebuild(accountId),
+                        this::startConsumers)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // The consumer bindings as bound, i.e. after function binding aliases such as the one of batch_processing
+    private List<String> stopRunningConsumers() {
+        List<String> stopped = new ArrayList<>();
+        for (String bindingName : bindingService.getConsumerBindingNames()) {
+            if (bindingService.getConsumerBindings(bindingName).stream().anyMatch(Binding::isRunning)) {
+                bindingsController.changeState(bindingName, State.STOPPED);
+                stopped.add(bindingName);
+            }
+        }
+        LOG.info("Stopped the bindings {} for the rebuild", stopped);
+        return stopped;
+    }
+
+    private void startConsumers(List<String> bindingNames) {
+        LOG.info("Starts the bindings {} after the rebuild", bindingNames);
+        bindingNames.forEach(bindingName -> bindingsController.changeState(bindingName, State.STARTED));
+    }
+}
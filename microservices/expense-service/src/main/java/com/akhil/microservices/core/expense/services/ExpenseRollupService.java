@@ -0,0 +1,211 @@
+package com.akhil.microservices.core.expense.services;
+
+import com.akhil.microservices.api.core.expense.ExpenseGroupBy;
+import com.akhil.microservices.api.core.expense.Money;
+import com.akhil.microservices.api.core.expense.PaymentMode;
+import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseRepository;
+import com.akhil.microservices.core.expense.persistence.ExpenseRollupEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseRollupRepository;
+import com.akhil.microservices.core.expense.persistence.ExpenseTotalEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+@Component
+public class ExpenseRollupService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpenseRollupService.class);
+
+    private static final Set<ExpenseGroupBy> ROLLUP_GROUPING =
+            EnumSet.of(ExpenseGroupBy.MONTH, ExpenseGroupBy.CATEGORY, ExpenseGroupBy.PAYMENT_MODE);
+
+    private final ExpenseRollupRepository rollupRepository;
+    private final ExpenseRepository expenseRepository;
+    private final Counter failedCounter;
+
+    public ExpenseRollupService(ExpenseRollupRepository rollupRepository, ExpenseRepository expenseRepository,
+                                MeterRegistry meterRegistry) {
+        this.rollupRepository = rollupRepository;
+        this.expenseRepository = expenseRepository;
+        this.failedCounter = Counter.builder("expense.rollups.failed")
+                .description("Rollup updates that failed after the expenses were written, the rollups must be rebuilt")
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> add(ExpenseEntity expense) {
+        return update(List.of(expense), 1);
+    }
+
+    public Mono<Void> addAll(List<ExpenseEntity> expenses) {
+        return update(expenses, 1);
+    }
+
+    public Mono<Void> subtract(ExpenseEntity expense) {
+        return update(List.of(expense), -1);
+    }
+
+    public Mono<Void> subtractAll(List<ExpenseEntity> expenses) {
+        return update(expenses, -1);
+    }
+
+    public Mono<Void> deleteRollups(int accountId) {
+        LOG.debug("deleteRollups: deletes the expense rollups for the account with accountId: {}", accountId);
+        return rollupRepository.deleteByAccountId(accountId);
+    }
+
+    public Mono<Void> deleteRollups(Collection<Integer> accountIds) {
+        LOG.debug("deleteRollups: deletes the expense rollups for the accounts with accountIds: {}", accountIds);
+        return rollupRepository.deleteByAccountIdIn(accountIds);
+    }
+
+    public Flux<ExpenseRollupEntity> getRollups(int accountId, YearMonth from, YearMonth to) {
+        String fromMonth = from == null ? null : from.toString();
+        String toMonth = to == null ? null : to.toString();
+
+        return rollupRepository.findByAccountIdAndMonthRange(accountId, fromMonth, toMonth);
+    }
+
+    public Mono<Long> rebuild(int accountId) {
+        LOG.info("Rebuilds the expense rollups for the account with accountId: {}", accountId);
+
+        return expenseRepository.aggregateTotalsByAccountId(accountId, null, null, ROLLUP_GROUPING)
+                .map(total -> new ExpenseRollupEntity(accountId, total.getPeriod(), total.getCategory(),
+                        total.getPaymentMode(), total.getCurrency(), total.getTotal(), total.getCount()))
+                .collectList()
+                .flatMap(rollups -> rollupRepository.deleteByAccountId(accountId)
+                        .thenMany(rollupRepository.saveAll(rollups))
+                        .count());
+    }
+
+    public Mono<Long> rebuildAll() {
+        LOG.info("Rebuilds the expense rollups for all accounts");
+
+        return rollupRepository.deleteAll()
+                .thenMany(expenseRepository.findDistinctAccountIds())
+                .concatMap(this::rebuild)
+                .reduce(0L, Long::sum);
+    }
+
+    public Mono<ExpenseRollupCheckResult> check(int accountId) {
+
+        Mono<Map<String, ExpenseTotalEntity>> expected =
+                expenseRepository.aggregateTotalsByAccountId(accountId, null, null, ROLLUP_GROUPING)
+                        .collectMap(total -> bucketKey(total.getPeriod(), total.getCategory(), total.getPaymentMode(),
+                                total.getCurrency()));
+
+        Mono<Map<String, ExpenseRollupEntity>> actual = rollupRepository.findByAccountIdOrderByMonthAsc(accountId)
+                .collectMap(rollup -> bucketKey(rollup.getMonth(), rollup.getCategory(), rollup.getPaymentMode(),
+                        rollup.getCurrency()));
+
+        return Mono.zip(expected, actual).map(maps -> compare(accountId, maps.getT1(), maps.getT2()));
+    }
+
+    private ExpenseRollupCheckResult compare(int accountId, Map<String, ExpenseTotalEntity> expected,
+                                             Map<String, ExpenseRollupEntity> actual) {
+
+        Set<String> buckets = new HashSet<>(expected.keySet());
+        buckets.addAll(actual.keySet());
+
+        List<String> mismatches = new ArrayList<>();
+        for (String bucket : buckets) {
+            ExpenseTotalEntity total = expected.get(bucket);
+            ExpenseRollupEntity rollup = actual.get(bucket);
+
+            long expectedCount = total == null ? 0 : total.getCount();
+            BigDecimal expectedTotal = total == null ? BigDecimal.ZERO : total.getTotal();
+            long actualCount = rollup == null ? 0 : rollup.getCount();
+            BigDecimal actualTotal = rollup == null ? BigDecimal.ZERO : rollup.getTotal();
+
+            // Totals are exact, compared regardless of their scale
+            if (expectedCount != actualCount || expectedTotal.compareTo(actualTotal) != 0) {
+                mismatches.add(bucket + ": expected count " + expectedCount + " total " + expectedTotal +
+                        ", found count " + actualCount + " total " + actualTotal);
+            }
+        }
+
+        if (!mismatches.isEmpty()) {
+            LOG.warn("Expense rollups for accountId: {} are inconsistent in {} bucket(s)", accountId, mismatches.size());
+        }
+
+        return new ExpenseRollupCheckResult(accountId, buckets.size(), mismatches);
+    }
+
+    // The expenses are already written or deleted, an error would have the request retried against them, a retried
+    // create fails as a duplicate and leaves the rollups short all the same. The rollups are off until rebuilt
+    // through the expenserollups endpoint, the failure is logged and counted so that operators know to
+    private Mono<Void> update(List<ExpenseEntity> expenses, int sign) {
+        return incrementAll(expenses, sign).onErrorResume(ex -> {
+            failedCounter.increment();
+            LOG.error("Failed to {} {} expense(s) in the rollups of accountId(s) {}, rebuild them: {}",
+                    sign > 0 ? "add" : "subtract", expenses.size(),
+                    expenses.stream().map(ExpenseEntity::getAccountId).distinct().toList(), ex.toString());
+            return Mono.empty();
+        });
+    }
+
+    // Sums the expenses per bucket first, so a batch costs one upsert per touched bucket. Amounts are added up
+    // exactly as minor units in a primitive long per bucket
+    private Mono<Void> incrementAll(List<ExpenseEntity> expenses, int sign) {
+        Map<String, RollupDelta> deltas = new LinkedHashMap<>();
+
+        for (ExpenseEntity expense : expenses) {
+            String month = YearMonth.from(expense.getTransactionDateTime()).toString();
+            String category = expense.getCategory() == null ? null : expense.getCategory().getName();
+            String currency = expense.getCurrency() == null ? Money.DEFAULT_CURRENCY : expense.getCurrency();
+            Money amount = Money.of(expense.getAmount(), currency);
+
+            RollupDelta delta = deltas.computeIfAbsent(
+                    expense.getAccountId() + "/" + bucketKey(month, category, expense.getPaymentMode(), currency),
+                    key -> new RollupDelta(expense.getAccountId(), month, category, expense.getPaymentMode(),
+                            currency));
+            delta.minorUnits += sign * amount.getMinorUnits();
+            delta.count += sign;
+        }
+
+        return Flux.fromIterable(deltas.values())
+                .concatMap(delta -> rollupRepository.increment(delta.accountId, delta.month, delta.category,
+                        delta.paymentMode, delta.currency,
+                        BigDecimal.valueOf(delta.minorUnits, Money.fractionDigits(delta.currency)), delta.count))
+                .then();
+    }
+
+    private String bucketKey(String month, String category, Object paymentMode, String currency) {
+        return month + "/" + Objects.toString(category) + "/" + Objects.toString(paymentMode) + "/" + currency;
+    }
+
+    private static final class RollupDelta {
+        private final int accountId;
+        private final String month;
+        private final String category;
+        private final PaymentMode paymentMode;
+        private final String currency;
+        private long minorUnits;
+        private long count;
+
+        private RollupDelta(int accountId, String month, String category, PaymentMode paymentMode,
+                            String currency) {
+            this.accountId = accountId;
+            this.month = month;
+            this.category = category;
+            this.paymentMode = paymentMode;
+            this.currency = currency;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.akhil.microservices.core.expense.services;
 
 import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.ExpenseGroupBy;
+import com.akhil.microservices.api.core.expense.ExpensePage;
 import com.akhil.microservices.api.core.expense.ExpenseService;
+import com.akhil.microservices.api.core.expense.ExpenseTotal;
 import com.akhil.microservices.api.exceptions.InvalidInputException;
 import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
 import com.akhil.microservices.core.expense.persistence.ExpenseRepository;
@@ -13,6 +16,11 @@ import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 
 @RestController
@@ -20,12 +28,17 @@ public class ExpenseServiceImpl implements ExpenseService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ExpenseServiceImpl.class);
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final ExpenseRepository repository;
+    private final ExpenseRollupService rollupService;
     private final ExpenseMapper mapper;
     private final ServiceUtil serviceUtil;
 
-    public ExpenseServiceImpl(ExpenseRepository repository, ExpenseMapper mapper, ServiceUtil serviceUtil) {
+    public ExpenseServiceImpl(ExpenseRepository repository, ExpenseRollupService rollupService,
+                              ExpenseMapper mapper, ServiceUtil serviceUtil) {
         this.repository = repository;
+        this.rollupService = rollupService;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
     }
@@ -45,6 +58,83 @@ public class ExpenseServiceImpl implements ExpenseService {
                 .map(this::setServiceAddress);
     }
 
+    @Override
+    public Mono<ExpensePage> getExpensePage(int accountId, LocalDateTime from, LocalDateTime to,
+                                            int pageSize, String pageToken) {
+
+        if (accountId < 1) {
+            throw new InvalidInputException("Invalid accountId: " + accountId);
+        }
+
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidInputException("Invalid pageSize: " + pageSize + ", expected 1-" + MAX_PAGE_SIZE);
+        }
+
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidInputException("Invalid range, from: " + from + " must be before to: " + to);
+        }
+
+        ExpensePageToken after = (pageToken == null || pageToken.isEmpty()) ? null : ExpensePageToken.decode(pageToken);
+
+        LOG.info("Will get a page of {} expenses for account with id={}", pageSize, accountId);
+
+        // Fetch one extra row to find out if there is a next page without a separate count query
+        return repository.findPageByAccountId(accountId, from, to,
+                        after == null ? null : after.getTransactionDateTime(),
+                        after == null ? null : after.getExpenseId(),
+                        pageSize + 1)
+                .log(LOG.getName(), Level.FINE)
+                .collectList()
+                .map(entities -> createExpensePage(entities, pageSize));
+    }
+
+    @Override
+    public Flux<ExpenseTotal> getExpenseTotals(int accountId, LocalDateTime from, LocalDateTime to,
+                                               List<ExpenseGroupBy> groupBy) {
+
+        if (accountId < 1) {
+            throw new InvalidInputException("Invalid accountId: " + accountId);
+        }
+
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidInputException("Invalid range, from: " + from + " must be before to: " + to);
+        }
+
+        Set<ExpenseGroupBy> groupBySet = (groupBy == null || groupBy.isEmpty())
+                ? EnumSet.noneOf(ExpenseGroupBy.class) : EnumSet.copyOf(groupBy);
+
+        long periodCount = groupBySet.stream()
+                .filter(g -> g == ExpenseGroupBy.DAY || g == ExpenseGroupBy.WEEK || g == ExpenseGroupBy.MONTH)
+                .count();
+        if (periodCount > 1) {
+            throw new InvalidInputException("Invalid groupBy: " + groupBy + ", expected at most one of DAY, WEEK, MONTH");
+        }
+
+        LOG.info("Will get expense totals grouped by {} for account with id={}", groupBySet, accountId);
+
+        return repository.aggregateTotalsByAccountId(accountId, from, to, groupBySet)
+                .log(LOG.getName(), Level.FINE)
+                .map(mapper::totalEntityToApi);
+    }
+
+    @Override
+    public Flux<ExpenseTotal> getExpenseRollups(int accountId, YearMonth fromMonth, YearMonth toMonth) {
+
+        if (accountId < 1) {
+            throw new InvalidInputException("Invalid accountId: " + accountId);
+        }
+
+        if (fromMonth != null && toMonth != null && fromMonth.isAfter(toMonth)) {
+            throw new InvalidInputException("Invalid range, fromMonth: " + fromMonth + " is after toMonth: " + toMonth);
+        }
+
+        LOG.info("Will get expense rollups for account with id={}", accountId);
+
+        return rollupService.getRollups(accountId, fromMonth, toMonth)
+                .log(LOG.getName(), Level.FINE)
+                .map(mapper::rollupEntityToApi);
+    }
+
     @Override
     public Mono<Expense> createExpense(Expense expense) {
 
@@ -60,6 +150,7 @@ public class ExpenseServiceImpl implements ExpenseService {
                         ex -> new InvalidInputException("Duplicate Key, Account Id: " + expense.getAccountId() +
                                 ", Expense Id: " + expense.getExpenseId())
                 )
+                .flatMap(savedEntity -> rollupService.add(savedEntity).thenReturn(savedEntity))
                 .map(mapper::entityToApi);
 
         return newEntity;
@@ -72,7 +163,8 @@ public class ExpenseServiceImpl implements ExpenseService {
         }
 
         LOG.debug("deleteExpenses: tries to delete expenses for the account with accountId: {}", accountId);
-        return repository.deleteAll(repository.findByAccountId(accountId));
+        return repository.deleteAll(repository.findByAccountId(accountId))
+                .then(rollupService.deleteRollups(accountId));
     }
 
     @Override
@@ -85,8 +177,26 @@ public class ExpenseServiceImpl implements ExpenseService {
                 expenseId, accountId);
         return repository.findByAccountIdAndExpenseId(accountId, expenseId)
                 .log(LOG.getName(), Level.FINE)
-                .map(repository::delete)
-                .flatMap(e -> e);
+                .flatMap(entity -> repository.delete(entity).then(rollupService.subtract(entity)));
+    }
+
+    private ExpensePage createExpensePage(List<ExpenseEntity> entities, int pageSize) {
+
+        boolean hasNextPage = entities.size() > pageSize;
+        List<ExpenseEntity> pageEntities = hasNextPage ? entities.subList(0, pageSize) : entities;
+
+        String nextPageToken = null;
+        if (hasNextPage) {
+            ExpenseEntity last = pageEntities.get(pageEntities.size() - 1);
+            nextPageToken = new ExpensePageToken(last.getTransactionDateTime(), last.getExpenseId()).encode();
+        }
+
+        List<Expense> expenses = pageEntities.stream()
+                .map(mapper::entityToApi)
+                .map(this::setServiceAddress)
+                .toList();
+
+        return new ExpensePage(expenses, nextPageToken);
     }
 
     private Expense setServiceAddress(Expense expense) {
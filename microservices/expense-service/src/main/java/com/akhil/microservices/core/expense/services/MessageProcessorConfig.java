@@ -2,16 +2,25 @@ package com.akhil.microservices.core.expense.services;
 
 import com.akhil.microservices.api.core.expense.Expense;
 import com.akhil.microservices.api.core.expense.ExpenseService;
-import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
 import com.akhil.microservices.api.exceptions.EventProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.akhil.microservices.api.exceptions.InvalidInputException;
+import com.akhil.microservices.util.event.CborMessageConverter;
+import com.akhil.microservices.util.event.EventDeduplicator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 
 @Configuration
@@ -20,35 +29,45 @@ public class MessageProcessorConfig {
     private static final Logger LOG = LoggerFactory.getLogger(MessageProcessorConfig.class);
 
     private final ExpenseService expenseService;
-    private final ObjectMapper mapper;
+    private final ExpenseBatchService expenseBatchService;
+    private final EventDeduplicator eventDeduplicator;
 
     @Autowired
-    public MessageProcessorConfig(ExpenseService expenseService, ObjectMapper mapper) {
+    public MessageProcessorConfig(ExpenseService expenseService, ExpenseBatchService expenseBatchService,
+                                  EventDeduplicator eventDeduplicator) {
         this.expenseService = expenseService;
-        this.mapper = mapper;
+        this.expenseBatchService = expenseBatchService;
+        this.eventDeduplicator = eventDeduplicator;
     }
 
     @Bean
-    public Consumer<Event<Integer, ?>> messageProcessor() {
+    public MessageConverter cborMessageConverter() {
+        return new CborMessageConverter();
+    }
+
+    @Bean
+    public Consumer<ExpenseEvent> messageProcessor() {
 
         return event -> {
 
             LOG.info("Process message created at {}...", event.getEventCreatedAt());
 
+            if (Boolean.TRUE.equals(eventDeduplicator.isDuplicate(event).block())) {
+                LOG.info("Skips already processed event with ID: {}", event.getEventId());
+                return;
+            }
+
             switch (event.getType()) {
                 case CREATE -> {
-                    Object expenseData = event.getData();
-                    if (expenseData instanceof LinkedHashMap) {
-                        Expense expense = mapper.convertValue(expenseData, Expense.class);
-                        LOG.info("Create expense with ID: {}/{}", expense.getAccountId(), expense.getExpenseId());
-                        expenseService.createExpense(expense).block();
-                    }
+                    Expense expense = expense(event);
+                    LOG.info("Create expense with ID: {}/{}", expense.getAccountId(), expense.getExpenseId());
+                    expenseService.createExpense(expense).block();
+                }
 
-                    if (expenseData instanceof Expense) {
-                        Expense expense = (Expense) expenseData;
-                        LOG.info("Create expense with ID: {}/{}", expense.getAccountId(), expense.getExpenseId());
-                        expenseService.createExpense(expense).block();
-                    }
+                case BULK_CREATE -> {
+                    List<Expense> expenses = expenses(event);
+                    LOG.info("Create {} expenses for AccountID: {}", expenses.size(), event.getKey());
+                    expenseBatchService.bulkCreateExpenses(expenses).block();
                 }
 
                 case DELETE -> {
@@ -68,13 +87,147 @@ public class MessageProcessorConfig {
 
                 default -> {
                     String errorMessage = "Incorrect event type: " + event.getType() +
-                            ", expected a CREATE or DELETE event";
+                            ", expected a CREATE, BULK_CREATE or DELETE event";
                     LOG.warn(errorMessage);
                     throw new EventProcessingException(errorMessage);
                 }
             }
 
+            eventDeduplicator.markProcessed(event).block();
+
             LOG.info("Message processing done!");
         };
     }
+
+    @Bean
+    public Consumer<List<ExpenseEvent>> messageBatchProcessor() {
+
+        return events -> {
+
+            LOG.info("Process batch of {} messages...", events.size());
+
+            List<ExpenseEvent> newEvents = dropDuplicates(events);
+
+            // Consecutive events of the same type are written together, runs are applied in arrival order so
+            // a CREATE followed by a DELETE of the same expense (always on the same partition) keeps its effect.
+            // An invalid event fails the batch before anything is written, as it fails the single event consumer,
+            // so it is retried and dead-lettered by the binder the same way
+            Mono<Void> writes = Mono.empty();
+            List<Expense> creates = new ArrayList<>();
+            Set<Integer> accountDeletes = new HashSet<>();
+            Map<Integer, Set<Integer>> expenseDeletes = new LinkedHashMap<>();
+
+            for (ExpenseEvent event : newEvents) {
+                switch (event.getType()) {
+                    case CREATE -> {
+                        if (!accountDeletes.isEmpty() || !expenseDeletes.isEmpty()) {
+                            writes = writes.then(expenseBatchService.deleteExpenses(accountDeletes, expenseDeletes));
+                            accountDeletes = new HashSet<>();
+                            expenseDeletes = new LinkedHashMap<>();
+                        }
+
+                        creates.add(expense(event));
+                    }
+
+                    // A chunk is already a batch of its own and is written with a single bulkWrite
+                    case BULK_CREATE -> {
+                        if (!accountDeletes.isEmpty() || !expenseDeletes.isEmpty()) {
+                            writes = writes.then(expenseBatchService.deleteExpenses(accountDeletes, expenseDeletes));
+                            accountDeletes = new HashSet<>();
+                            expenseDeletes = new LinkedHashMap<>();
+                        }
+                        if (!creates.isEmpty()) {
+                            writes = writes.then(expenseBatchService.createExpenses(creates));
+                            creates = new ArrayList<>();
+                        }
+
+                        writes = writes.then(expenseBatchService.bulkCreateExpenses(expenses(event)));
+                    }
+
+                    case DELETE -> {
+                        if (!creates.isEmpty()) {
+                            writes = writes.then(expenseBatchService.createExpenses(creates));
+                            creates = new ArrayList<>();
+                        }
+
+                        int accountId = event.getKey();
+                        if (event.getData() instanceof Integer expenseId) {
+                            if (accountId < 1 || expenseId < 1) {
+                                throw new InvalidInputException("Invalid accountId: " + accountId +
+                                        ", or expenseId: " + expenseId);
+                            }
+                            expenseDeletes.computeIfAbsent(accountId, k -> new HashSet<>()).add(expenseId);
+                        }
+
+                        if (event.getData() == null) {
+                            if (accountId < 1) {
+                                throw new InvalidInputException("Invalid accountId: " + accountId);
+                            }
+                            accountDeletes.add(accountId);
+                        }
+                    }
+
+                    default -> {
+                        String errorMessage = "Incorrect event type: " + event.getType() +
+                                ", expected a CREATE, BULK_CREATE or DELETE event";
+                        LOG.warn(errorMessage);
+                        throw new EventProcessingException(errorMessage);
+                    }
+                }
+            }
+
+            if (!creates.isEmpty()) {
+                writes = writes.then(expenseBatchService.createExpenses(creates));
+            }
+            if (!accountDeletes.isEmpty() || !expenseDeletes.isEmpty()) {
+                writes = writes.then(expenseBatchService.deleteExpenses(accountDeletes, expenseDeletes));
+            }
+
+            writes.then(eventDeduplicator.markProcessed(newEvents)).block();
+
+            LOG.info("Batch processing done!");
+        };
+    }
+
+    private Expense expense(ExpenseEvent event) {
+        if (!(event.getData() instanceof Expense expense)) {
+            throw new InvalidInputException("Invalid expense for accountId: " + event.getKey());
+        }
+        if (expense.getAccountId() < 1) {
+            throw new InvalidInputException("Invalid accountId: " + expense.getAccountId());
+        }
+        return expense;
+    }
+
+    // A chunk is written as a whole, so it is rejected as a whole if any of its expenses is invalid or belongs to
+    // another account than the event key, the one the chunk is partitioned and deduplicated by
+    private List<Expense> expenses(ExpenseEvent event) {
+        if (!(event.getData() instanceof List<?> data)) {
+            throw new InvalidInputException("Invalid chunk of expenses for accountId: " + event.getKey());
+        }
+
+        List<Expense> expenses = new ArrayList<>(data.size());
+        for (Object item : data) {
+            if (!(item instanceof Expense expense)) {
+                throw new InvalidInputException("Invalid expense in chunk for accountId: " + event.getKey());
+            }
+            if (expense.getAccountId() < 1 || expense.getAccountId() != event.getKey()) {
+                throw new InvalidInputException("Invalid accountId: " + expense.getAccountId() +
+                        " in chunk for accountId: " + event.getKey());
+            }
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+
+    // Drops events already processed and repeats of an event within the same batch, with one lookup for the batch
+    private List<ExpenseEvent> dropDuplicates(List<ExpenseEvent> events) {
+
+        List<ExpenseEvent> newEvents = eventDeduplicator.dropDuplicates(events).block();
+
+        if (newEvents.size() < events.size()) {
+            LOG.info("Skips {} already processed events", events.size() - newEvents.size());
+        }
+        return newEvents;
+    }
 }
@@ -0,0 +1,82 @@
+package com.akhil.microservices.core.expense;
+
+import com.akhil.microservices.core.expense.services.ExpenseRollupEndpoint;
+import com.akhil.microservices.core.expense.services.ExpenseRollupService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cloud.stream.binder.Binding;
+import org.springframework.cloud.stream.binding.BindingService;
+import org.springframework.cloud.stream.endpoint.BindingsLifecycleController;
+import org.springframework.cloud.stream.endpoint.BindingsLifecycleController.State;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+
+// The function definition and binding alias of the batch_processing profile, whose consumer is bound as
+// messageProcessor-in-0 rather than after the name of its function
+@SpringBootTest(
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = {
+				"spring.cloud.config.enabled=false",
+				"spring.cloud.function.definition=messageBatchProcessor",
+				"spring.cloud.stream.function.bindings.messageBatchProcessor-in-0=messageProcessor-in-0",
+				"spring.cloud.stream.bindings.messageProcessor-in-0.destination=expenses",
+				"spring.cloud.stream.bindings.messageProcessor-in-0.consumer.batch-mode=true"
+		})
+class ExpenseRollupEndpointTests extends MongoDbTestBase {
+
+	private static final String BINDING = "messageProcessor-in-0";
+
+	@Autowired
+	private ExpenseRollupEndpoint endpoint;
+
+	@Autowired
+	private BindingService bindingService;
+
+	@Autowired
+	private BindingsLifecycleController bindingsController;
+
+	@SpyBean
+	private ExpenseRollupService rollupService;
+
+	@AfterEach
+	void startConsumer() {
+		bindingsController.changeState(BINDING, State.STARTED);
+	}
+
+	@Test
+	void stopBatchConsumerWhileRebuilding() {
+
+		AtomicBoolean runningDuringRebuild = new AtomicBoolean(true);
+		doAnswer(invocation -> {
+			runningDuringRebuild.set(isRunning());
+			return invocation.callRealMethod();
+		}).when(rollupService).rebuildAll();
+
+		assertTrue(isRunning());
+		endpoint.rebuild(null).block();
+
+		assertFalse(runningDuringRebuild.get());
+		assertTrue(isRunning());
+	}
+
+	@Test
+	void keepStoppedConsumerStopped() {
+
+		bindingsController.changeState(BINDING, State.STOPPED);
+
+		endpoint.rebuild(null).block();
+
+		assertFalse(isRunning());
+	}
+
+	private boolean isRunning() {
+		return bindingService.getConsumerBindings(BINDING).stream().anyMatch(Binding::isRunning);
+	}
+}
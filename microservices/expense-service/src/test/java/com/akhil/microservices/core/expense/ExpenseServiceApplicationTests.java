@@ -2,24 +2,61 @@ package com.akhil.microservices.core.expense;
 
 import com.akhil.microservices.api.core.expense.Category;
 import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.ExpensePage;
+import com.akhil.microservices.api.core.expense.Money;
 import com.akhil.microservices.api.core.expense.PaymentMode;
 import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
 import com.akhil.microservices.api.exceptions.InvalidInputException;
+import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
 import com.akhil.microservices.core.expense.persistence.ExpenseRepository;
+import com.akhil.microservices.core.expense.persistence.ExpenseRollupEntity;
+import com.akhil.microservices.core.expense.persistence.ExpenseRollupRepository;
+import com.akhil.microservices.core.expense.services.ExpenseAmountMigration;
+import com.akhil.microservices.core.expense.services.ExpenseRollupCheckResult;
+import com.akhil.microservices.core.expense.services.ExpenseRollupService;
+import com.akhil.microservices.util.event.CborMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 
@@ -36,13 +73,33 @@ class ExpenseServiceApplicationTests extends MongoDbTestBase {
 	@Autowired
 	private ExpenseRepository repository;
 
+	@Autowired
+	private ExpenseRollupRepository rollupRepository;
+
+	@Autowired
+	private ExpenseRollupService rollupService;
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Autowired
+	private ExpenseAmountMigration amountMigration;
+
+	@Autowired
+	private ReactiveMongoOperations mongoOperations;
+
 	@Autowired
 	@Qualifier("messageProcessor")
-	private Consumer<Event<Integer, ?>> messageProcessor;
+	private Consumer<ExpenseEvent> messageProcessor;
+
+	@Autowired
+	@Qualifier("messageBatchProcessor")
+	private Consumer<List<ExpenseEvent>> messageBatchProcessor;
 
 	@BeforeEach
 	void setupDb() {
 		repository.deleteAll().block();
+		rollupRepository.deleteAll().block();
 	}
 
 	@Test
@@ -62,6 +119,290 @@ class ExpenseServiceApplicationTests extends MongoDbTestBase {
 				.jsonPath("$[2].expenseId").isEqualTo(3);
 	}
 
+	@Test
+	void getExpensePageByAccountId() {
+
+		int accountId = 1;
+
+		sendCreateExpenseEvent(accountId, 1);
+		sendCreateExpenseEvent(accountId, 2);
+		sendCreateExpenseEvent(accountId, 3);
+
+		ExpensePage firstPage = client.get()
+				.uri("/expense/page?accountId=" + accountId + "&pageSize=2")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody(ExpensePage.class)
+				.returnResult().getResponseBody();
+
+		assertEquals(2, firstPage.getExpenses().size());
+		assertEquals(3, firstPage.getExpenses().get(0).getExpenseId());
+		assertNotNull(firstPage.getNextPageToken());
+
+		getAndVerifyExpensePage("?accountId=" + accountId + "&pageSize=2&pageToken=" + firstPage.getNextPageToken(), OK)
+				.jsonPath("$.expenses.length()").isEqualTo(1)
+				.jsonPath("$.expenses[0].expenseId").isEqualTo(1)
+				.jsonPath("$.nextPageToken").isEmpty();
+	}
+
+	@Test
+	void getExpensePageInvalidPageToken() {
+
+		getAndVerifyExpensePage("?accountId=1&pageToken=invalid", UNPROCESSABLE_ENTITY)
+				.jsonPath("$.path").isEqualTo("/expense/page")
+				.jsonPath("$.message").isEqualTo("Invalid pageToken: invalid");
+	}
+
+	@Test
+	void getExpenseTotalsByAccountId() {
+
+		int accountId = 1;
+
+		sendCreateExpenseEvent(accountId, 1);
+		sendCreateExpenseEvent(accountId, 2);
+		sendCreateExpenseEvent(accountId, 3);
+
+		client.get()
+				.uri("/expense/totals?accountId=" + accountId + "&groupBy=CATEGORY,PAYMENT_MODE")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].category").isEqualTo("category-1")
+				.jsonPath("$[0].paymentMode").isEqualTo(PaymentMode.CASH.name())
+				.jsonPath("$[0].total").isEqualTo(30.0)
+				.jsonPath("$[0].count").isEqualTo(3);
+	}
+
+	@Test
+	void getExpenseTotalsInvalidGroupBy() {
+
+		client.get()
+				.uri("/expense/totals?accountId=1&groupBy=DAY,MONTH")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+				.expectBody()
+				.jsonPath("$.path").isEqualTo("/expense/totals");
+	}
+
+	@Test
+	void getExpenseRollupsByAccountId() {
+
+		int accountId = 1;
+
+		sendCreateExpenseEvent(accountId, 1);
+		sendCreateExpenseEvent(accountId, 2);
+		sendCreateExpenseEvent(accountId, 3);
+		sendDeleteExpenseEvent(accountId, 2);
+
+		client.get()
+				.uri("/expense/rollups?accountId=" + accountId)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].category").isEqualTo("category-1")
+				.jsonPath("$[0].total").isEqualTo(20.0)
+				.jsonPath("$[0].count").isEqualTo(2);
+
+		ExpenseRollupCheckResult result = rollupService.check(accountId).block();
+		assertTrue(result.isConsistent());
+
+		rollupRepository.deleteAll().block();
+		assertFalse(rollupService.check(accountId).block().isConsistent());
+
+		assertEquals(1, rollupService.rebuild(accountId).block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+
+		sendDeleteExpenseEvent(accountId);
+		assertEquals(0, rollupRepository.count().block());
+	}
+
+	@Test
+	void countFailedRollupUpdate() {
+
+		ExpenseRollupRepository failingRollupRepository = mock(ExpenseRollupRepository.class);
+		when(failingRollupRepository.increment(anyInt(), any(), any(), any(), any(), any(), anyLong()))
+				.thenReturn(Mono.error(new DataAccessResourceFailureException("Rollups unavailable")));
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		ExpenseRollupService failingRollupService =
+				new ExpenseRollupService(failingRollupRepository, repository, meterRegistry);
+
+		// The expense is written by then, the failure is counted instead of failing the request
+		ExpenseEntity expense = new ExpenseEntity(1, 1, LocalDateTime.now(), BigDecimal.TEN, "INR",
+				new Category("category-1", false), "description", PaymentMode.CASH, null);
+		failingRollupService.add(expense).block();
+		failingRollupService.subtract(expense).block();
+
+		assertEquals(2.0, meterRegistry.get("expense.rollups.failed").counter().count());
+	}
+
+	@Test
+	void getExpenseRollupsByMonthRange() {
+
+		int accountId = 1;
+		rollupRepository.saveAll(List.of(
+				new ExpenseRollupEntity(accountId, "2024-03", "c", PaymentMode.CASH, "INR", BigDecimal.ONE, 1),
+				new ExpenseRollupEntity(accountId, "2024-01", "c", PaymentMode.CASH, "INR", BigDecimal.ONE, 1),
+				new ExpenseRollupEntity(accountId, "2024-02", "c", PaymentMode.CASH, "INR", BigDecimal.ONE, 1),
+				new ExpenseRollupEntity(accountId, "2024-04", "c", PaymentMode.CASH, "INR", BigDecimal.ONE, 1),
+				new ExpenseRollupEntity(2, "2024-02", "c", PaymentMode.CASH, "INR", BigDecimal.ONE, 1))).blockLast();
+
+		assertEquals(List.of("2024-02", "2024-03"), months(accountId, YearMonth.of(2024, 2), YearMonth.of(2024, 3)));
+		assertEquals(List.of("2024-03", "2024-04"), months(accountId, YearMonth.of(2024, 3), null));
+		assertEquals(List.of("2024-01"), months(accountId, null, YearMonth.of(2024, 1)));
+		assertEquals(4, months(accountId, null, null).size());
+
+		client.get()
+				.uri("/expense/rollups?accountId=" + accountId + "&fromMonth=2024-02&toMonth=2024-02")
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectBody()
+				.jsonPath("$.length()").isEqualTo(1)
+				.jsonPath("$[0].period").isEqualTo("2024-02");
+	}
+
+	@Test
+	void processExpenseEventsInBatch() {
+
+		int accountId = 1;
+
+		messageBatchProcessor.accept(List.of(
+				createExpenseEvent(accountId, 1),
+				createExpenseEvent(accountId, 2),
+				createExpenseEvent(accountId, 3),
+				new ExpenseEvent(Event.Type.DELETE, accountId, 2),
+				createExpenseEvent(accountId, 2),
+				createExpenseEvent(accountId, 4),
+				createExpenseEvent(2, 1)));
+
+		assertEquals(4, repository.findByAccountId(accountId).count().block());
+		assertEquals(1, repository.findByAccountId(2).count().block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+
+		// Redelivery of an already applied batch must not fail on the unique index or double count
+		messageBatchProcessor.accept(List.of(createExpenseEvent(accountId, 4), createExpenseEvent(accountId, 5)));
+		assertEquals(5, repository.findByAccountId(accountId).count().block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+
+		messageBatchProcessor.accept(List.of(
+				new ExpenseEvent(Event.Type.DELETE, accountId, 1),
+				new ExpenseEvent(Event.Type.DELETE, 2, null)));
+		assertEquals(4, repository.findByAccountId(accountId).count().block());
+		assertEquals(0, repository.findByAccountId(2).count().block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+	}
+
+	@Test
+	void processBulkCreateEvents() throws IOException {
+
+		int accountId = 1;
+		sendCreateExpenseEvent(accountId, 1);
+
+		// Deserialized from JSON, a chunk arrives as a list of expenses
+		ExpenseEvent chunk = mapper.readValue(mapper.writeValueAsBytes(new Event<>(Event.Type.BULK_CREATE, accountId,
+				List.of(createExpense(accountId, 1), createExpense(accountId, 2), createExpense(accountId, 3)))),
+				ExpenseEvent.class);
+		assertEquals(3, assertInstanceOf(List.class, chunk.getData()).size());
+
+		// The already stored expense is skipped by the bulk write instead of failing it
+		messageProcessor.accept(chunk);
+		assertEquals(3, repository.findByAccountId(accountId).count().block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+
+		messageBatchProcessor.accept(List.of(
+				new ExpenseEvent(Event.Type.BULK_CREATE, accountId,
+						List.of(createExpense(accountId, 3), createExpense(accountId, 4))),
+				new ExpenseEvent(Event.Type.DELETE, accountId, 4),
+				new ExpenseEvent(Event.Type.BULK_CREATE, accountId, List.of(createExpense(accountId, 5)))));
+		assertEquals(4, repository.findByAccountId(accountId).count().block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+	}
+
+	@Test
+	void rejectBulkCreateOfAnotherAccount() {
+
+		int accountId = 1;
+		ExpenseEvent chunk = new ExpenseEvent(Event.Type.BULK_CREATE, accountId,
+				List.of(createExpense(accountId, 1), createExpense(2, 2)));
+
+		InvalidInputException thrown = assertThrows(InvalidInputException.class,
+				() -> messageProcessor.accept(chunk));
+		assertEquals("Invalid accountId: 2 in chunk for accountId: 1", thrown.getMessage());
+
+		// The batch consumer fails the whole batch the same way, before anything is written
+		thrown = assertThrows(InvalidInputException.class, () -> messageBatchProcessor.accept(List.of(
+				createExpenseEvent(accountId, 5),
+				new ExpenseEvent(Event.Type.BULK_CREATE, accountId, List.of(createExpense(accountId, 3), createExpense(0, 4))))));
+		assertEquals("Invalid accountId: 0 in chunk for accountId: 1", thrown.getMessage());
+
+		assertEquals(0, repository.count().block());
+	}
+
+	@Test
+	void rejectBatchWithInvalidCreate() {
+
+		int accountId = 1;
+
+		InvalidInputException thrown = assertThrows(InvalidInputException.class,
+				() -> messageBatchProcessor.accept(List.of(
+						createExpenseEvent(accountId, 1),
+						new ExpenseEvent(Event.Type.CREATE, accountId, createExpense(-1, 2)))));
+		assertEquals("Invalid accountId: -1", thrown.getMessage());
+
+		assertEquals(0, repository.count().block());
+	}
+
+	@Test
+	void incrementRollupBucketOfPreviousVersion() {
+
+		int accountId = 1;
+		sendCreateExpenseEvent(accountId, 1);
+
+		// A bucket written by the previous version, without a currency and under the previous unique index
+		mongoOperations.updateMulti(new Query(), new Update().unset("currency"), "expense_rollups").block();
+		mongoOperations.indexOps("expense_rollups").ensureIndex(new Index()
+				.on("accountId", Sort.Direction.ASC)
+				.on("month", Sort.Direction.ASC)
+				.on("category", Sort.Direction.ASC)
+				.on("paymentMode", Sort.Direction.ASC)
+				.unique()
+				.named("acc-month-cat-pm-idx")).block();
+
+		assertEquals(1, amountMigration.migrateRollupBuckets().block());
+		assertFalse(mongoOperations.indexOps("expense_rollups").getIndexInfo()
+				.any(index -> index.getName().equals("acc-month-cat-pm-idx")).block());
+
+		sendCreateExpenseEvent(accountId, 2);
+		assertEquals(1, rollupRepository.count().block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+	}
+
+	@Test
+	void migrateDoubleAmounts() {
+
+		int accountId = 1;
+		sendCreateExpenseEvent(accountId, 1);
+
+		// An expense written by the previous version, with a double amount and no currency
+		mongoOperations.updateMulti(new Query(), new Update().set("amount", 10.25).unset("currency"), "expenses")
+				.block();
+		assertFalse(rollupService.check(accountId).block().isConsistent());
+
+		assertEquals(1, amountMigration.migrate().block());
+		assertEquals(0, amountMigration.migrate().block());
+
+		ExpenseEntity migrated = repository.findByAccountId(accountId).blockFirst();
+		assertEquals(0, new BigDecimal("10.25").compareTo(migrated.getAmount()));
+		assertEquals(Money.DEFAULT_CURRENCY, migrated.getCurrency());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+	}
+
 	@Test
 	@Disabled
 	void duplicateError() {
@@ -82,6 +423,61 @@ class ExpenseServiceApplicationTests extends MongoDbTestBase {
 		assertEquals(1, repository.count().block());
 	}
 
+	@Test
+	void redeliveredEventIsSkipped() {
+
+		int accountId = 1;
+		ExpenseEvent event = createExpenseEvent(accountId, 1);
+
+		messageProcessor.accept(event);
+		assertEquals(1, repository.count().block());
+
+		// Same event ID as the first delivery, dropped before it reaches the duplicate key check
+		messageProcessor.accept(event);
+		messageBatchProcessor.accept(List.of(event, createExpenseEvent(accountId, 2), createExpenseEvent(accountId, 2)));
+
+		assertEquals(2, repository.count().block());
+		assertTrue(rollupService.check(accountId).block().isConsistent());
+	}
+
+	@Test
+	void processCborEncodedEvent() {
+
+		CborMessageConverter converter = new CborMessageConverter();
+		Message<?> message = converter.toMessage(createExpenseEvent(1, 1),
+				new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, CborMessageConverter.APPLICATION_CBOR)));
+
+		ExpenseEvent event = (ExpenseEvent) converter.fromMessage(message, ExpenseEvent.class);
+		assertTrue(event.getData() instanceof Expense);
+		messageProcessor.accept(event);
+
+		assertEquals(1, repository.count().block());
+	}
+
+	@Test
+	void deserializeTypedExpenseEvents() throws IOException {
+
+		Expense expense = createExpense(1, 1);
+		ExpenseEvent create = mapper.readValue(
+				mapper.writeValueAsBytes(new Event<>(Event.Type.CREATE, 1, expense)), ExpenseEvent.class);
+		ExpenseEvent deleteOne = mapper.readValue(
+				mapper.writeValueAsBytes(new Event<>(Event.Type.DELETE, 1, 2)), ExpenseEvent.class);
+		ExpenseEvent deleteAll = mapper.readValue(
+				mapper.writeValueAsBytes(new Event<>(Event.Type.DELETE, 1, null)), ExpenseEvent.class);
+
+		assertEquals(Event.Type.CREATE, create.getType());
+		assertEquals(1, create.getKey());
+		assertNotNull(create.getEventId());
+		assertNotNull(create.getEventCreatedAt());
+		Expense data = assertInstanceOf(Expense.class, create.getData());
+		assertEquals(expense.getExpenseId(), data.getExpenseId());
+		assertEquals(expense.getTransactionDateTime(), data.getTransactionDateTime());
+
+		assertEquals(Event.Type.DELETE, deleteOne.getType());
+		assertEquals(2, deleteOne.getData());
+		assertNull(deleteAll.getData());
+	}
+
 	@Test
 	void deleteExpenses() {
 
@@ -146,17 +542,42 @@ class ExpenseServiceApplicationTests extends MongoDbTestBase {
 				.expectBody();
 	}
 
+	private WebTestClient.BodyContentSpec getAndVerifyExpensePage(String query, HttpStatus expectedStatus) {
+		return client.get()
+				.uri("/expense/page" + query)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(expectedStatus)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
+	private List<String> months(int accountId, YearMonth from, YearMonth to) {
+		return rollupService.getRollups(accountId, from, to).map(ExpenseRollupEntity::getMonth).collectList().block();
+	}
+
 	private void sendCreateExpenseEvent(int accountId, int expenseId) {
-		Expense expense = new Expense(accountId,
+		messageProcessor.accept(createExpenseEvent(accountId, expenseId));
+	}
+
+	private ExpenseEvent createExpenseEvent(int accountId, int expenseId) {
+		return new ExpenseEvent(Event.Type.CREATE, accountId, createExpense(accountId, expenseId));
+	}
+
+	private Expense createExpense(int accountId, int expenseId) {
+		return new Expense(accountId,
 				expenseId, LocalDateTime.now(), 10.0,
 				new Category("category-1", true), "Content " + expenseId,
 				PaymentMode.CASH, null, "SA");
-		Event<Integer, Expense> event = new Event<>(Event.Type.CREATE, accountId, expense);
+	}
+
+	private void sendDeleteExpenseEvent(int accountId, int expenseId) {
+		ExpenseEvent event = new ExpenseEvent(Event.Type.DELETE, accountId, expenseId);
 		messageProcessor.accept(event);
 	}
 
 	private void sendDeleteExpenseEvent(int accountId) {
-		Event<Integer, Expense> event = new Event<>(Event.Type.DELETE, accountId, null);
+		ExpenseEvent event = new ExpenseEvent(Event.Type.DELETE, accountId, null);
 		messageProcessor.accept(event);
 	}
 
@@ -1,10 +1,18 @@
 package com.akhil.microservices.core.expense;
 
 import com.akhil.microservices.api.core.expense.Category;
+import com.akhil.microservices.api.core.expense.Expense;
+import com.akhil.microservices.api.core.expense.Money;
 import com.akhil.microservices.api.core.expense.PaymentMode;
+import com.akhil.microservices.api.event.Event;
+import com.akhil.microservices.api.event.ExpenseEvent;
 import com.akhil.microservices.core.expense.persistence.ExpenseEntity;
 import com.akhil.microservices.core.expense.persistence.ExpenseRepository;
+import com.akhil.microservices.util.event.EventDeduplicator;
+import com.akhil.microservices.util.event.ProcessedEventEntity;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -12,8 +20,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -29,6 +42,9 @@ public class PersistenceTests extends MongoDbTestBase {
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private ReactiveMongoOperations mongoOperations;
+
     private ExpenseEntity savedEntity;
 
     @BeforeEach
@@ -36,7 +52,7 @@ public class PersistenceTests extends MongoDbTestBase {
         repository.deleteAll().block();
 
         ExpenseEntity entity = new ExpenseEntity(1, 1, LocalDateTime.now(),
-                10.0, new Category("c", true), "desc",
+                new BigDecimal("10.00"), "INR", new Category("c", true), "desc",
                 PaymentMode.CASH, null);
         savedEntity = repository.save(entity).block();
 
@@ -48,7 +64,7 @@ public class PersistenceTests extends MongoDbTestBase {
     void create() {
 
         ExpenseEntity newEntity = new ExpenseEntity(1, 2, LocalDateTime.now(),
-                11.0, new Category("c", true), "desc",
+                new BigDecimal("11.00"), "INR", new Category("c", true), "desc",
                 PaymentMode.CASH, null);
         repository.save(newEntity).block();
 
@@ -82,12 +98,41 @@ public class PersistenceTests extends MongoDbTestBase {
         assertEqualsExpense(savedEntity, entityList.get(0));
     }
 
+    @Test
+    void getPageByAccountId() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int expenseId = 2; expenseId <= 6; expenseId++) {
+            repository.save(new ExpenseEntity(2, expenseId, start.plusDays(expenseId),
+                    new BigDecimal("10.00"), "INR", new Category("c", true), "desc",
+                    PaymentMode.CASH, null)).block();
+        }
+
+        List<ExpenseEntity> firstPage = repository.findPageByAccountId(2, null, null, null, null, 2)
+                .collectList().block();
+        assertThat(firstPage, hasSize(2));
+        assertEquals(6, firstPage.get(0).getExpenseId());
+        assertEquals(5, firstPage.get(1).getExpenseId());
+
+        ExpenseEntity last = firstPage.get(1);
+        List<ExpenseEntity> secondPage = repository.findPageByAccountId(2, null, null,
+                last.getTransactionDateTime(), last.getExpenseId(), 2).collectList().block();
+        assertThat(secondPage, hasSize(2));
+        assertEquals(4, secondPage.get(0).getExpenseId());
+        assertEquals(3, secondPage.get(1).getExpenseId());
+
+        List<ExpenseEntity> ranged = repository.findPageByAccountId(2, start.plusDays(3), start.plusDays(5),
+                null, null, 10).collectList().block();
+        assertThat(ranged, hasSize(2));
+        assertEquals(4, ranged.get(0).getExpenseId());
+        assertEquals(3, ranged.get(1).getExpenseId());
+    }
+
     @Test
     @Disabled
     void duplicateError() {
         assertThrows(DuplicateKeyException.class, () -> {
             ExpenseEntity entity = new ExpenseEntity(1, 2, LocalDateTime.now(),
-                    11.0, new Category("c", true), "desc",
+                    new BigDecimal("11.00"), "INR", new Category("c", true), "desc",
                     PaymentMode.CASH, null);
             repository.save(entity).block();
         });
@@ -117,6 +162,57 @@ public class PersistenceTests extends MongoDbTestBase {
         assertEquals("desc1", updatedEntity.getDescription());
     }
 
+    @Test
+    void dropPersistedDuplicatesOfBatch() {
+
+        mongoOperations.dropCollection(ProcessedEventEntity.class).block();
+        ExpenseEvent first = new ExpenseEvent(Event.Type.DELETE, 1, 1);
+        ExpenseEvent second = new ExpenseEvent(Event.Type.DELETE, 1, 2);
+        ExpenseEvent third = new ExpenseEvent(Event.Type.DELETE, 1, 3);
+
+        new EventDeduplicator(mongoOperations, new SimpleMeterRegistry(), 10, Duration.ofMinutes(1), true)
+                .markProcessed(List.of(first, second)).block();
+        assertEquals(2, mongoOperations.count(new Query(), ProcessedEventEntity.class).block());
+
+        // A new instance starts with an empty window, as after a restart or on another instance
+        EventDeduplicator restarted = new EventDeduplicator(mongoOperations, new SimpleMeterRegistry(), 10,
+                Duration.ofMinutes(1), true);
+        assertEquals(List.of(third), restarted.dropDuplicates(List.of(first, third, second, third)).block());
+        assertTrue(restarted.isDuplicate(first).block());
+        assertFalse(restarted.isDuplicate(third).block());
+    }
+
+    @Test
+    void readAmountStoredAsDouble() {
+
+        mongoOperations.insert(new Document("accountId", 3)
+                .append("expenseId", 1)
+                .append("transactionDateTime", new Date())
+                .append("amount", 12.34)
+                .append("paymentMode", PaymentMode.UPI.name())
+                .append("version", 0), "expenses").block();
+
+        ExpenseEntity entity = repository.findByAccountIdAndExpenseId(3, 1).block();
+        assertEquals(0, new BigDecimal("12.34").compareTo(entity.getAmount()));
+        assertEquals(Money.DEFAULT_CURRENCY, entity.getCurrency());
+    }
+
+    @Test
+    void readAmountInBothShapes() throws Exception {
+
+        Expense previous = mapper.readValue("{\"expenseId\":1,\"amount\":12.345}", Expense.class);
+        Expense current = mapper.readValue(
+                "{\"expenseId\":1,\"amount\":{\"currency\":\"INR\",\"minorUnits\":1234}}", Expense.class);
+        Expense major = mapper.readValue(
+                "{\"expenseId\":1,\"amount\":{\"currency\":\"JPY\",\"amount\":1234}}", Expense.class);
+
+        assertEquals(new Money("INR", 1234), previous.getAmount());
+        assertEquals(new Money("INR", 1234), current.getAmount());
+        assertEquals(new Money("JPY", 1234), major.getAmount());
+        assertEquals(current.getAmount(), mapper.readValue(mapper.writeValueAsString(current), Expense.class)
+                .getAmount());
+    }
+
     private void assertEqualsExpense(ExpenseEntity expectedEntity, ExpenseEntity actualEntity) {
         assertEquals(expectedEntity.getId(), actualEntity.getId());
         assertEquals(expectedEntity.getVersion(), actualEntity.getVersion());
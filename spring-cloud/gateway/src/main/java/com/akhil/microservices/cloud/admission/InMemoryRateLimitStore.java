@@ -0,0 +1,31 @@
+package com.akhil.microservices.cloud.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * RateLimitStore held in the memory of one instance. Stands in for a shared store in tests and in deployments with
+ * a single gateway instance. At most maxKeys buckets are kept, idle ones are dropped after ten minutes like the
+ * local buckets of the rate limit filter.
+ */
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final Cache<String, TokenBucket> buckets;
+
+    public InMemoryRateLimitStore(long maxKeys) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    @Override
+    public Mono<Long> acquire(String key, long permits, double permitsPerSecond, long burst) {
+        return Mono.fromSupplier(() -> buckets
+                .get(key, k -> new TokenBucket(permitsPerSecond, burst))
+                .tryAcquire(permits, System.nanoTime()));
+    }
+}
@@ -0,0 +1,16 @@
+package com.akhil.microservices.cloud.admission;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Token buckets shared by all gateway instances, e.g. kept in Redis. Instances lease permits from it in batches,
+ * so it is called once per batch rather than once per request.
+ */
+public interface RateLimitStore {
+
+    /**
+     * Takes up to permits from the bucket of the key, created with the given rate and burst if missing. Emits the
+     * number of permits taken, 0 if the bucket is empty.
+     */
+    Mono<Long> acquire(String key, long permits, double permitsPerSecond, long burst);
+}
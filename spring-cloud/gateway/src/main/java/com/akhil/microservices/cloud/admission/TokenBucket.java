@@ -0,0 +1,54 @@
+package com.akhil.microservices.cloud.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of burst permits refilled at permitsPerSecond. It is kept as a single timestamp, the time at which
+ * the bucket is full again, as in GCRA (generic cell rate algorithm). Taking permits moves it forward by one
+ * emission interval per permit with a compare-and-set. A rejected acquire only reads it, so it neither writes nor
+ * allocates. Times are System.nanoTime() values.
+ */
+public class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double permitsPerSecond, long burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive, got: "
+                    + permitsPerSecond + " and " + burst);
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.capacityNanos = emissionIntervalNanos * burst;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire(long now) {
+        return tryAcquire(1, now) == 1;
+    }
+
+    // Takes as many of the permits as are available, returns the number taken
+    public long tryAcquire(long permits, long now) {
+        for (;;) {
+            long current = fullAt.get();
+            long from = current - now > 0 ? current : now;
+            long taken = Math.min(permits, (capacityNanos - (from - now)) / emissionIntervalNanos);
+            if (taken <= 0) {
+                return 0;
+            }
+            if (fullAt.compareAndSet(current, from + taken * emissionIntervalNanos)) {
+                return taken;
+            }
+        }
+    }
+
+    public long nanosUntilAvailable(long now) {
+        return Math.max(0, fullAt.get() - now - (capacityNanos - emissionIntervalNanos));
+    }
+
+    public long getEmissionIntervalNanos() {
+        return emissionIntervalNanos;
+    }
+}
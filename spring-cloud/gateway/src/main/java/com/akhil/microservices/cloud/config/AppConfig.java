@@ -1,16 +1,57 @@
 package com.akhil.microservices.cloud.config;
 
+import com.akhil.microservices.cloud.admission.InMemoryRateLimitStore;
+import com.akhil.microservices.cloud.admission.RateLimitStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class AppConfig {
 
+    // Used by the health checks, which call every service a few times per minute. A small pool that drops idle
+    // connections is enough, metrics are published to Micrometer as reactor.netty.connection.provider.*
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider healthCheckConnectionProvider(
+            @Value("${app.http-client.health-check.max-connections:10}") int maxConnections,
+            @Value("${app.http-client.health-check.pending-acquire-max-count:100}") int pendingAcquireMaxCount,
+            @Value("${app.http-client.health-check.pending-acquire-timeout:5s}") Duration pendingAcquireTimeout,
+            @Value("${app.http-client.health-check.max-idle-time:30s}") Duration maxIdleTime,
+            @Value("${app.http-client.health-check.max-life-time:5m}") Duration maxLifeTime,
+            @Value("${app.http-client.health-check.eviction-interval:30s}") Duration evictionInterval,
+            @Value("${app.http-client.health-check.leasing-strategy:lifo}") String leasingStrategy) {
+
+        ConnectionProvider.Builder pool = ConnectionProvider.builder("health-check")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictionInterval)
+                .metrics(true);
+
+        return ("fifo".equalsIgnoreCase(leasingStrategy) ? pool.fifo() : pool.lifo()).build();
+    }
+
     @Bean
     @LoadBalanced
-    public WebClient.Builder loadBalancedWebClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder loadBalancedWebClientBuilder(ConnectionProvider healthCheckConnectionProvider) {
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(healthCheckConnectionProvider)));
+    }
+
+    // Shared rate limit buckets, replaced by a bean backed by e.g. Redis when several gateway instances run
+    @Bean
+    @ConditionalOnMissingBean
+    public RateLimitStore rateLimitStore(@Value("${app.admission.rate-limit.max-clients:100000}") long maxClients) {
+        return new InMemoryRateLimitStore(maxClients);
     }
 }
@@ -0,0 +1,89 @@
+package com.akhil.microservices.cloud.filter;
+
+import com.akhil.microservices.cloud.admission.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the requests of a route in flight to the downstream service, with a limit adapted to its latency, see
+ * {@link AdaptiveConcurrencyLimiter}. Requests over the limit are answered with 429. Only requests that complete
+ * normally are taken as latency samples. The filter keeps the order of the route definition, so it runs after the
+ * response cache and only requests forwarded downstream count.
+ */
+@Component
+public class AdaptiveConcurrencyLimitGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<AdaptiveConcurrencyLimitGatewayFilterFactory.Config> {
+
+    private static final long RETRY_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+
+    @Autowired
+    public AdaptiveConcurrencyLimitGatewayFilterFactory(MeterRegistry meterRegistry,
+            @Value("${app.admission.concurrency.initial-limit:100}") int initialLimit,
+            @Value("${app.admission.concurrency.min-limit:10}") int minLimit,
+            @Value("${app.admission.concurrency.max-limit:1000}") int maxLimit,
+            @Value("${app.admission.concurrency.tolerance:2.0}") double tolerance) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId() == null ? "unknown" : config.getRouteId();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                tolerance);
+
+        Gauge.builder("gateway.admission.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("route", routeId).register(meterRegistry);
+        Gauge.builder("gateway.admission.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("route", routeId).register(meterRegistry);
+        Counter limitedCounter = Counter.builder("gateway.admission.concurrency.limited").tag("route", routeId)
+                .register(meterRegistry);
+
+        return (exchange, chain) -> {
+            if (!limiter.tryAcquire()) {
+                limitedCounter.increment();
+                return Rejections.tooManyRequests(exchange, RETRY_AFTER_NANOS);
+            }
+
+            long startedAt = System.nanoTime();
+            return chain.filter(exchange)
+                    .doFinally(signal -> limiter.release(System.nanoTime() - startedAt,
+                            signal == SignalType.ON_COMPLETE));
+        };
+    }
+}
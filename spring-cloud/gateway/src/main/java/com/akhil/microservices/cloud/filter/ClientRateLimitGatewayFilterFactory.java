@@ -0,0 +1,213 @@
+package com.akhil.microservices.cloud.filter;
+
+import com.akhil.microservices.cloud.admission.RateLimitStore;
+import com.akhil.microservices.cloud.admission.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Rate limit per client and route, the client being the authenticated principal or else the remote address. Each
+ * client has a token bucket of app.admission.rate-limit.burst permits refilled at permits-per-second, held in the
+ * memory of the gateway instance. A request without a permit is answered with 429 and a Retry-After header. Taking
+ * a permit from the local bucket doesn't allocate, resolving the principal still builds a Reactor chain per request.
+ * <p>
+ * The principal of a client_credentials token is the OAuth client, so all callers sharing a client share a bucket.
+ * The load test drives the gateway through one client, run the gateway with the load_test profile for it.
+ * <p>
+ * With app.admission.cluster.enabled the buckets are shared by all instances through the {@link RateLimitStore}.
+ * Permits are leased from it lease-size at a time and used up locally, after an empty lease the client is rejected
+ * locally until a permit is due. If the store fails or doesn't answer within store-timeout, the local bucket is
+ * used instead, limiting each instance to the full rate.
+ */
+@Component
+public class ClientRateLimitGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ClientRateLimitGatewayFilterFactory.Config> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClientRateLimitGatewayFilterFactory.class);
+
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+    }
+
+    private final RateLimitStore store;
+    private final MeterRegistry meterRegistry;
+
+    private final double permitsPerSecond;
+    private final long burst;
+    private final long maxClients;
+    private final boolean clusterEnabled;
+    private final long leaseSize;
+    private final Duration storeTimeout;
+
+    @Autowired
+    public ClientRateLimitGatewayFilterFactory(RateLimitStore store, MeterRegistry meterRegistry,
+            @Value("${app.admission.rate-limit.permits-per-second:50}") double permitsPerSecond,
+            @Value("${app.admission.rate-limit.burst:100}") long burst,
+            @Value("${app.admission.rate-limit.max-clients:100000}") long maxClients,
+            @Value("${app.admission.cluster.enabled:false}") boolean clusterEnabled,
+            @Value("${app.admission.cluster.lease-size:10}") long leaseSize,
+            @Value("${app.admission.cluster.store-timeout:50ms}") Duration storeTimeout) {
+        super(Config.class);
+        this.store = store;
+        this.meterRegistry = meterRegistry;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.maxClients = maxClients;
+        this.clusterEnabled = clusterEnabled;
+        this.leaseSize = leaseSize;
+        this.storeTimeout = storeTimeout;
+    }
+
+    // Ordered before the response cache, so cached responses count against the limit as well
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId() == null ? "unknown" : config.getRouteId();
+        return new OrderedGatewayFilter(new ClientRateLimit(routeId),
+                NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 2);
+    }
+
+    private static final class ClientLimit {
+
+        private final TokenBucket localBucket;
+        private final AtomicLong leasedPermits = new AtomicLong();
+        private volatile long deniedUntil;
+
+        ClientLimit(double permitsPerSecond, long burst) {
+            this.localBucket = new TokenBucket(permitsPerSecond, burst);
+            this.deniedUntil = System.nanoTime();
+        }
+
+        boolean takeLeasedPermit() {
+            for (;;) {
+                long leased = leasedPermits.get();
+                if (leased <= 0) {
+                    return false;
+                }
+                if (leasedPermits.compareAndSet(leased, leased - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private class ClientRateLimit implements GatewayFilter {
+
+        private final String routeId;
+        private final Cache<String, ClientLimit> clients;
+        private final Function<String, ClientLimit> newClientLimit;
+
+        private final Counter admittedCounter;
+        private final Counter limitedCounter;
+        private final Counter fallbackCounter;
+
+        ClientRateLimit(String routeId) {
+            this.routeId = routeId;
+            this.clients = Caffeine.newBuilder()
+                    .maximumSize(maxClients)
+                    .expireAfterAccess(Duration.ofMinutes(10))
+                    .build();
+            this.newClientLimit = client -> new ClientLimit(permitsPerSecond, burst);
+
+            this.admittedCounter = Counter.builder("gateway.admission.rate-limit").tag("route", routeId)
+                    .tag("result", "admitted").register(meterRegistry);
+            this.limitedCounter = Counter.builder("gateway.admission.rate-limit").tag("route", routeId)
+                    .tag("result", "limited").register(meterRegistry);
+            this.fallbackCounter = Counter.builder("gateway.admission.rate-limit.store-fallback")
+                    .tag("route", routeId).register(meterRegistry);
+        }
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+            return exchange.getPrincipal()
+                    .map(Principal::getName)
+                    .switchIfEmpty(Mono.fromSupplier(() -> remoteAddress(exchange)))
+                    .flatMap(client -> filter(exchange, chain, client));
+        }
+
+        private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, String client) {
+            ClientLimit limit = clients.get(client, newClientLimit);
+            long now = System.nanoTime();
+
+            if (!clusterEnabled) {
+                return limit.localBucket.tryAcquire(now)
+                        ? admit(exchange, chain)
+                        : reject(exchange, limit.localBucket.nanosUntilAvailable(now));
+            }
+
+            long deniedUntil = limit.deniedUntil;
+            if (deniedUntil - now > 0) {
+                return reject(exchange, deniedUntil - now);
+            }
+            if (limit.takeLeasedPermit()) {
+                return admit(exchange, chain);
+            }
+
+            long emissionInterval = limit.localBucket.getEmissionIntervalNanos();
+            return store.acquire(routeId + ":" + client, leaseSize, permitsPerSecond, burst)
+                    .timeout(storeTimeout)
+                    .map(granted -> {
+                        if (granted > 0) {
+                            limit.leasedPermits.addAndGet(granted - 1);
+                            return true;
+                        }
+                        limit.deniedUntil = System.nanoTime() + emissionInterval;
+                        return false;
+                    })
+                    .onErrorResume(ex -> {
+                        LOG.debug("Rate limit store failed, uses the local bucket: {}", ex.toString());
+                        fallbackCounter.increment();
+                        return Mono.just(limit.localBucket.tryAcquire(System.nanoTime()));
+                    })
+                    .flatMap(admitted -> admitted
+                            ? admit(exchange, chain)
+                            : reject(exchange, emissionInterval));
+        }
+
+        private Mono<Void> admit(ServerWebExchange exchange, GatewayFilterChain chain) {
+            admittedCounter.increment();
+            return chain.filter(exchange);
+        }
+
+        private Mono<Void> reject(ServerWebExchange exchange, long retryAfterNanos) {
+            limitedCounter.increment();
+            return Rejections.tooManyRequests(exchange, retryAfterNanos);
+        }
+    }
+
+    private static String remoteAddress(ServerWebExchange exchange) {
+        InetSocketAddress address = exchange.getRequest().getRemoteAddress();
+        return address == null || address.getAddress() == null ? "unknown" : address.getAddress().getHostAddress();
+    }
+}
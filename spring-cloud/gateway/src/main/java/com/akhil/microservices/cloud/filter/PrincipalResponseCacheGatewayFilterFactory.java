@@ -0,0 +1,280 @@
+package com.akhil.microservices.cloud.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Caches GET responses of a route per path, query, Accept header and caller, the caller being the JWT subject and
+ * its scopes. Concurrent misses for the same key are collapsed into a single upstream call, the callers arriving
+ * while it is in flight are answered with its response. A conditional request is answered with 304 if the ETag of
+ * the cached response matches, upstream calls are made without the conditional headers so the response can be
+ * shared.
+ * <p>
+ * Only 200 responses up to app.response-cache.max-entry-bytes are cached, for app.response-cache.ttl. The cache
+ * holds up to app.response-cache.max-bytes of bodies; every entry weighs at least max-bytes / max-entries, which
+ * bounds the number of entries as well. Requests other than GET drop the cached responses of the resource they
+ * change, i.e. of the paths under its first two segments. Streamed responses are passed on as is.
+ */
+@Component
+public class PrincipalResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<Object> {
+
+    private record CacheKey(String principal, String path, String query, String accept) {}
+
+    private record CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {}
+
+    private static final List<MediaType> STREAMING_MEDIA_TYPES =
+            List.of(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_NDJSON);
+
+    private final Cache<CacheKey, CachedResponse> cache;
+    private final Map<CacheKey, Sinks.One<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final int maxEntryBytes;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter collapsedCounter;
+
+    @Autowired
+    public PrincipalResponseCacheGatewayFilterFactory(MeterRegistry meterRegistry,
+            @Value("${app.response-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.response-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${app.response-cache.max-entry-bytes:1048576}") int maxEntryBytes,
+            @Value("${app.response-cache.ttl:2s}") Duration ttl) {
+        super(Object.class);
+        this.maxEntryBytes = maxEntryBytes;
+
+        int minWeight = (int) Math.max(1, maxBytes / maxEntries);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((CacheKey key, CachedResponse response) -> Math.max(minWeight, response.body().length))
+                .expireAfterWrite(ttl)
+                .build();
+
+        this.hitCounter = Counter.builder("gateway.response.cache").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("gateway.response.cache").tag("result", "miss").register(meterRegistry);
+        this.collapsedCounter = Counter.builder("gateway.response.cache").tag("result", "collapsed")
+                .register(meterRegistry);
+        Gauge.builder("gateway.response.cache.size", cache, Cache::estimatedSize).register(meterRegistry);
+        Gauge.builder("gateway.response.cache.bytes", cache,
+                        c -> c.asMap().values().stream().mapToLong(response -> response.body().length).sum())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("gateway.response.cache.inflight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    // Ordered before NettyWriteResponseFilter, so the response it writes goes through the capturing decorator
+    @Override
+    public GatewayFilter apply(Object config) {
+        return new OrderedGatewayFilter(this::filter, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getMethod() != HttpMethod.GET) {
+            String resource = resource(request.getPath().value());
+            return chain.filter(exchange).doFinally(signal -> invalidate(resource));
+        }
+        if (isStreaming(request.getHeaders().getAccept())) {
+            return chain.filter(exchange);
+        }
+
+        return exchange.getPrincipal()
+                .map(principal -> Optional.of(new CacheKey(principal(principal), request.getPath().value(),
+                        request.getURI().getRawQuery(), request.getHeaders().getFirst(HttpHeaders.ACCEPT))))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(key -> key.isPresent() ? filter(exchange, chain, key.get()) : chain.filter(exchange));
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, CacheKey key) {
+
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            hitCounter.increment();
+            return write(exchange, cached);
+        }
+
+        Sinks.One<CachedResponse> load = Sinks.one();
+        Sinks.One<CachedResponse> leader = inFlight.putIfAbsent(key, load);
+        if (leader != null) {
+            collapsedCounter.increment();
+            return leader.asMono()
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(response -> response.isPresent()
+                            ? write(exchange, response.get())
+                            : chain.filter(exchange));
+        }
+
+        // Waiting callers get no response if the upstream one was streamed or cancelled and call upstream themselves
+        missCounter.increment();
+        return fetch(exchange, chain)
+                .doOnNext(response -> {
+                    if (isCacheable(response)) {
+                        cache.put(key, response);
+                    }
+                    inFlight.remove(key, load);
+                    load.tryEmitValue(response);
+                })
+                .doOnError(ex -> {
+                    inFlight.remove(key, load);
+                    load.tryEmitError(ex);
+                })
+                .doFinally(signal -> {
+                    inFlight.remove(key, load);
+                    load.tryEmitEmpty();
+                })
+                .flatMap(response -> write(exchange, response));
+    }
+
+    private Mono<CachedResponse> fetch(ServerWebExchange exchange, GatewayFilterChain chain) {
+        CapturingResponse capturing = new CapturingResponse(exchange.getResponse());
+        ServerWebExchange upstream = exchange.mutate()
+                .request(request -> request.headers(headers -> {
+                    headers.remove(HttpHeaders.IF_NONE_MATCH);
+                    headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+                }))
+                .response(capturing)
+                .build();
+        return chain.filter(upstream).then(Mono.fromSupplier(capturing::captured));
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().clear();
+
+        String etag = cached.headers().getETag();
+        if (HttpStatus.OK.equals(cached.status()) && etag != null && exchange.checkNotModified(etag)) {
+            return response.setComplete();
+        }
+
+        response.setStatusCode(cached.status());
+        response.getHeaders().putAll(cached.headers());
+        response.getHeaders().setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private boolean isCacheable(CachedResponse response) {
+        if (!HttpStatus.OK.equals(response.status()) || response.body().length > maxEntryBytes
+                || response.headers().containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+
+        String cacheControl = response.headers().getCacheControl();
+        return cacheControl == null || !(cacheControl.contains(CacheControl.noStore().getHeaderValue())
+                || cacheControl.contains("private"));
+    }
+
+    private void invalidate(String resource) {
+        cache.asMap().keySet().removeIf(key -> key.path().equals(resource) || key.path().startsWith(resource + "/"));
+    }
+
+    // The first two segments of the path, e.g. /dashboard/1 for /dashboard/1/expense/2
+    private static String resource(String path) {
+        int end = -1;
+        for (int segments = 0; segments < 2; segments++) {
+            end = path.indexOf('/', end + 1);
+            if (end < 0) {
+                return path;
+            }
+        }
+        int next = path.indexOf('/', end + 1);
+        return next < 0 ? path : path.substring(0, next);
+    }
+
+    private static String principal(Principal principal) {
+        if (principal instanceof JwtAuthenticationToken token) {
+            return token.getToken().getSubject() + " " + token.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .sorted()
+                    .collect(Collectors.joining(","));
+        }
+        return principal.getName();
+    }
+
+    private static boolean isStreaming(List<MediaType> accept) {
+        return accept.stream().anyMatch(type -> STREAMING_MEDIA_TYPES.stream().anyMatch(type::isCompatibleWith)
+                && !type.isWildcardType());
+    }
+
+    // Keeps the upstream response instead of writing it, it is written by write() for every caller sharing it.
+    // Streaming media types are written with writeAndFlushWith, which is passed through and captures nothing
+    private static class CapturingResponse extends ServerHttpResponseDecorator {
+
+        private CachedResponse captured;
+
+        CapturingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        CachedResponse captured() {
+            return captured;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return DataBufferUtils.join(body)
+                    .map(buffer -> {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        DataBufferUtils.release(buffer);
+                        return bytes;
+                    })
+                    .defaultIfEmpty(new byte[0])
+                    .doOnNext(this::capture)
+                    .then();
+        }
+
+        @Override
+        public Mono<Void> setComplete() {
+            if (captured == null) {
+                capture(new byte[0]);
+            }
+            return Mono.empty();
+        }
+
+        private void capture(byte[] body) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(getHeaders());
+            headers.remove(HttpHeaders.TRANSFER_ENCODING);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            HttpStatusCode status = getStatusCode();
+            captured = new CachedResponse(status == null ? HttpStatus.OK : status, headers, body);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.akhil.microservices.cloud.filter;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+final class Rejections {
+
+    private static final int MAX_RETRY_AFTER_SECONDS = 60;
+
+    // The Retry-After values are created once, not per rejection
+    private static final String[] RETRY_AFTER = IntStream.rangeClosed(0, MAX_RETRY_AFTER_SECONDS)
+            .mapToObj(String::valueOf)
+            .toArray(String[]::new);
+
+    private Rejections() {
+    }
+
+    // 429 without a body, with the seconds until a retry may succeed, rounded up
+    static Mono<Void> tooManyRequests(ServerWebExchange exchange, long retryAfterNanos) {
+        long seconds = (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                RETRY_AFTER[(int) Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, seconds))]);
+        return response.setComplete();
+    }
+}
@@ -0,0 +1,154 @@
+package com.akhil.microservices.cloud;
+
+import com.akhil.microservices.cloud.admission.AdaptiveConcurrencyLimiter;
+import com.akhil.microservices.cloud.admission.InMemoryRateLimitStore;
+import com.akhil.microservices.cloud.admission.RateLimitStore;
+import com.akhil.microservices.cloud.admission.TokenBucket;
+import com.akhil.microservices.cloud.filter.ClientRateLimitGatewayFilterFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import reactor.core.publisher.Mono;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final GatewayFilterChain chain = exchange -> Mono.fromRunnable(upstreamCalls::incrementAndGet);
+
+    @Test
+    void tokenBucketAllowsBurstThenRefills() {
+
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(now));
+        }
+        assertFalse(bucket.tryAcquire(now));
+        assertEquals(SECOND / 10, bucket.nanosUntilAvailable(now));
+
+        assertTrue(bucket.tryAcquire(now + SECOND / 10));
+        assertFalse(bucket.tryAcquire(now + SECOND / 10));
+
+        // Idle time doesn't fill the bucket beyond the burst
+        assertEquals(5, bucket.tryAcquire(10, now + 10 * SECOND));
+    }
+
+    @Test
+    void storeLeasesAvailablePermits() {
+
+        RateLimitStore store = new InMemoryRateLimitStore(100);
+
+        assertEquals(10L, store.acquire("dashboard:user", 10, 1, 15).block());
+        assertEquals(5L, store.acquire("dashboard:user", 10, 1, 15).block());
+        assertEquals(0L, store.acquire("dashboard:user", 10, 1, 15).block());
+        assertEquals(10L, store.acquire("dashboard:other", 10, 1, 15).block());
+    }
+
+    @Test
+    void concurrencyLimitShrinksWhenLatencyRises() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 5, 100, 2.0);
+
+        for (int i = 0; i < 200; i++) {
+            runAtLimit(limiter, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        int grownLimit = limiter.getLimit();
+        assertTrue(grownLimit > 20, "limit " + grownLimit);
+
+        runAtLimit(limiter, TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(limiter.getLimit() < grownLimit, "limit " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void rejectRequestsOverLimit() {
+
+        GatewayFilter filter = filter(new InMemoryRateLimitStore(100), false);
+        Principal user = new TestingAuthenticationToken("user", null);
+
+        assertEquals(HttpStatus.OK, run(filter, user));
+        assertEquals(HttpStatus.OK, run(filter, user));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, run(filter, user));
+        assertEquals(HttpStatus.OK, run(filter, new TestingAuthenticationToken("other", null)));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void leasePermitsFromStore() {
+
+        AtomicInteger storeCalls = new AtomicInteger();
+        RateLimitStore store = new InMemoryRateLimitStore(100);
+        GatewayFilter filter = filter((key, permits, rate, burst) -> {
+            storeCalls.incrementAndGet();
+            return store.acquire(key, permits, rate, burst);
+        }, true);
+        Principal user = new TestingAuthenticationToken("user", null);
+
+        assertEquals(HttpStatus.OK, run(filter, user));
+        assertEquals(HttpStatus.OK, run(filter, user));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, run(filter, user));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, run(filter, user));
+
+        // One lease of both permits, then one empty lease, then rejected locally
+        assertEquals(2, storeCalls.get());
+    }
+
+    @Test
+    void fallBackToLocalBucketWhenStoreFails() {
+
+        GatewayFilter filter = filter((key, permits, rate, burst) -> Mono.error(new IllegalStateException("down")),
+                true);
+        Principal user = new TestingAuthenticationToken("user", null);
+
+        assertEquals(HttpStatus.OK, run(filter, user));
+        assertEquals(HttpStatus.OK, run(filter, user));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, run(filter, user));
+    }
+
+    private static void runAtLimit(AdaptiveConcurrencyLimiter limiter, long rttNanos) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(rttNanos, true);
+        }
+    }
+
+    private static GatewayFilter filter(RateLimitStore store, boolean clusterEnabled) {
+        ClientRateLimitGatewayFilterFactory.Config config = new ClientRateLimitGatewayFilterFactory.Config();
+        config.setRouteId("dashboard");
+        return new ClientRateLimitGatewayFilterFactory(store, new SimpleMeterRegistry(), 0.001, 2, 100,
+                clusterEnabled, 10, Duration.ofSeconds(1)).apply(config);
+    }
+
+    private HttpStatus run(GatewayFilter filter, Principal principal) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/dashboard/1"));
+        filter.filter(exchange.mutate().principal(Mono.just(principal)).build(), chain).block();
+        HttpStatus status = exchange.getResponse().getStatusCode() == null
+                ? HttpStatus.OK
+                : HttpStatus.valueOf(exchange.getResponse().getStatusCode().value());
+        if (status == HttpStatus.TOO_MANY_REQUESTS) {
+            assertEquals("60", exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        }
+        return status;
+    }
+}
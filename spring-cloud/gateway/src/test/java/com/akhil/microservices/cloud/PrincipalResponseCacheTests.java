@@ -0,0 +1,110 @@
+package com.akhil.microservices.cloud;
+
+import com.akhil.microservices.cloud.filter.PrincipalResponseCacheGatewayFilterFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PrincipalResponseCacheTests {
+
+    private static final String BODY = "{\"account\":{\"accountId\":1}}";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GatewayFilter filter = new PrincipalResponseCacheGatewayFilterFactory(meterRegistry, 100, 1 << 20,
+            1 << 16, Duration.ofMinutes(1)).apply(new Object());
+
+    private final Principal user = new TestingAuthenticationToken("user", null, "SCOPE_expense:read");
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private Mono<Void> upstreamDelay = Mono.empty();
+
+    private final GatewayFilterChain chain = exchange -> upstreamDelay.then(Mono.defer(() -> {
+        upstreamCalls.incrementAndGet();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setETag("\"1\"");
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(BODY.getBytes(StandardCharsets.UTF_8))));
+    }));
+
+    @Test
+    void serveCachedResponse() {
+
+        MockServerWebExchange first = get("/dashboard/1");
+        MockServerWebExchange second = get("/dashboard/1");
+        run(first, user).block();
+        run(second, user).block();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(BODY, first.getResponse().getBodyAsString().block());
+        assertEquals(BODY, second.getResponse().getBodyAsString().block());
+
+        MockServerWebExchange conditional = MockServerWebExchange.from(MockServerHttpRequest.get("/dashboard/1")
+                .ifNoneMatch("\"1\""));
+        run(conditional, user).block();
+        assertEquals(HttpStatus.NOT_MODIFIED, conditional.getResponse().getStatusCode());
+
+        run(get("/dashboard/1"), new TestingAuthenticationToken("other", null, "SCOPE_expense:read")).block();
+        assertEquals(2, upstreamCalls.get());
+
+        assertEquals(2.0, meterRegistry.get("gateway.response.cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void collapseConcurrentMisses() {
+
+        Sinks.Empty<Void> upstream = Sinks.empty();
+        upstreamDelay = upstream.asMono();
+
+        MockServerWebExchange first = get("/dashboard/1");
+        MockServerWebExchange second = get("/dashboard/1");
+        Mono<Void> firstDone = run(first, user).cache();
+        Mono<Void> secondDone = run(second, user).cache();
+        firstDone.subscribe();
+        secondDone.subscribe();
+
+        upstream.tryEmitEmpty();
+        firstDone.block(Duration.ofSeconds(5));
+        secondDone.block(Duration.ofSeconds(5));
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(BODY, second.getResponse().getBodyAsString().block());
+        assertEquals(1.0, meterRegistry.get("gateway.response.cache").tag("result", "collapsed").counter().count());
+    }
+
+    @Test
+    void invalidateOnWrite() {
+
+        run(get("/dashboard/1"), user).block();
+        run(get("/dashboard/12"), user).block();
+        run(MockServerWebExchange.from(MockServerHttpRequest.delete("/dashboard/1/expense/2")), user).block();
+        run(get("/dashboard/1"), user).block();
+        run(get("/dashboard/12"), user).block();
+
+        assertEquals(4, upstreamCalls.get());
+    }
+
+    private Mono<Void> run(MockServerWebExchange exchange, Principal principal) {
+        return filter.filter(exchange.mutate().principal(Mono.just(principal)).build(), chain);
+    }
+
+    private static MockServerWebExchange get(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+}
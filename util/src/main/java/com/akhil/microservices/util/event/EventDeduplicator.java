@@ -0,0 +1,123 @@
+package com.akhil.microservices.util.event;
+
+import com.akhil.microservices.api.event.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Drops redelivered events by their event ID. Lookups are answered from an in-memory window first; when persistent
+ * is enabled, misses fall back to the processed_events collection so the window survives restarts and is shared
+ * between instances. Not a component, the services using it declare it as a bean with their app.event-dedupe.*
+ * settings.
+ */
+public class EventDeduplicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventDeduplicator.class);
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final ProcessedEventCache cache;
+    private final boolean persistent;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public EventDeduplicator(ReactiveMongoOperations mongoOperations, MeterRegistry meterRegistry, int maxSize,
+                             Duration ttl, boolean persistent) {
+        this.mongoOperations = mongoOperations;
+        this.cache = new ProcessedEventCache(maxSize, ttl);
+        this.persistent = persistent;
+        this.hitCounter = Counter.builder("events.dedupe").tag("result", "hit").register(meterRegistry);
+        this.missCounter = Counter.builder("events.dedupe").tag("result", "miss").register(meterRegistry);
+    }
+
+    public Mono<Boolean> isDuplicate(Event<?, ?> event) {
+        return dropDuplicates(List.of(event)).map(List::isEmpty);
+    }
+
+    /**
+     * Returns the events in their order without those already processed and repeats of an event in the same list.
+     * Misses of the in-memory window are looked up with a single query for the whole list.
+     */
+    public <E extends Event<?, ?>> Mono<List<E>> dropDuplicates(List<E> events) {
+
+        Set<String> seenEventIds = new HashSet<>();
+        List<E> candidates = new ArrayList<>(events.size());
+        Set<String> misses = new HashSet<>();
+
+        for (E event : events) {
+            String eventId = event.getEventId();
+
+            // Events published before event IDs were introduced can't be deduplicated
+            if (eventId == null) {
+                candidates.add(event);
+            } else if (!seenEventIds.add(eventId) || cache.contains(eventId)) {
+                hitCounter.increment();
+            } else {
+                candidates.add(event);
+                misses.add(eventId);
+            }
+        }
+
+        if (!persistent || misses.isEmpty()) {
+            missCounter.increment(misses.size());
+            return Mono.just(candidates);
+        }
+
+        Query processed = Query.query(where("_id").in(misses));
+        processed.fields().include("_id");
+
+        return mongoOperations.find(processed, ProcessedEventEntity.class)
+                .map(ProcessedEventEntity::getId)
+                .collect(HashSet<String>::new, Set::add)
+                .map(processedEventIds -> {
+                    processedEventIds.forEach(cache::add);
+                    hitCounter.increment(processedEventIds.size());
+                    missCounter.increment(misses.size() - processedEventIds.size());
+                    return candidates.stream()
+                            .filter(event -> event.getEventId() == null
+                                    || !processedEventIds.contains(event.getEventId()))
+                            .toList();
+                });
+    }
+
+    public Mono<Void> markProcessed(Event<?, ?> event) {
+        return markProcessed(List.of(event));
+    }
+
+    // The write itself has already succeeded, so a failure to record the event only costs a possible reprocessing
+    public Mono<Void> markProcessed(Collection<? extends Event<?, ?>> events) {
+
+        Instant now = Instant.now();
+        Flux<ProcessedEventEntity> entities = Flux.fromIterable(events)
+                .filter(event -> event.getEventId() != null)
+                .map(Event::getEventId)
+                .doOnNext(cache::add)
+                .map(eventId -> new ProcessedEventEntity(eventId, now));
+
+        if (!persistent) {
+            return entities.then();
+        }
+
+        return entities.concatMap(mongoOperations::save)
+                .then()
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to record processed events: {}", ex.toString());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,55 @@
+package com.akhil.microservices.util.event;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, time-windowed set of processed event IDs. All entries share the same TTL, so insertion order is also
+ * expiry order and both expired and overflowing entries are evicted from the head.
+ */
+public class ProcessedEventCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Long> expiresAt = new LinkedHashMap<>();
+
+    public ProcessedEventCache(int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, got: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public synchronized boolean contains(String eventId) {
+        evictExpired(System.nanoTime());
+        return expiresAt.containsKey(eventId);
+    }
+
+    public synchronized void add(String eventId) {
+        long now = System.nanoTime();
+        evictExpired(now);
+
+        expiresAt.remove(eventId);
+        expiresAt.put(eventId, now + ttlNanos);
+
+        if (expiresAt.size() > maxSize) {
+            Iterator<String> eldest = expiresAt.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return expiresAt.size();
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Long>> entries = expiresAt.entrySet().iterator();
+        while (entries.hasNext() && entries.next().getValue() - now <= 0) {
+            entries.remove();
+        }
+    }
+}
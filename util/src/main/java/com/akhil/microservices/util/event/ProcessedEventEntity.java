@@ -0,0 +1,43 @@
+package com.akhil.microservices.util.event;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document(
+        collection = "processed_events"
+)
+public class ProcessedEventEntity {
+
+    @Id
+    private String id;
+
+    // Kept as long as the in-memory window, app.event-dedupe.ttl
+    @Indexed(name = "processed-at-ttl-idx", expireAfter = "#{@environment.getProperty('app.event-dedupe.ttl', '10m')}")
+    private Instant processedAt;
+
+    public ProcessedEventEntity() {}
+
+    public ProcessedEventEntity(String id, Instant processedAt) {
+        this.id = id;
+        this.processedAt = processedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Instant getProcessedAt() {
+        return processedAt;
+    }
+
+    public void setProcessedAt(Instant processedAt) {
+        this.processedAt = processedAt;
+    }
+}
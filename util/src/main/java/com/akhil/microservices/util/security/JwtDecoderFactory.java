@@ -0,0 +1,38 @@
+package com.akhil.microservices.util.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+/**
+ * Builds the JWK source and JWT decoder of a resource server. The decoder replaces the one Spring Boot configures
+ * from the issuer, with the same validation. Keys are fetched in the background and verified tokens are cached
+ * until they expire.
+ */
+public final class JwtDecoderFactory {
+
+    private JwtDecoderFactory() {
+    }
+
+    /**
+     * The source is started and stopped by the caller, e.g. as the init and destroy methods of its bean.
+     */
+    public static PrefetchingJwkSource jwkSource(String issuerUri, String jwkSetUri, Duration refreshInterval,
+                                                 Duration minRefreshInterval) {
+        return new PrefetchingJwkSource(WebClient.create(), issuerUri, jwkSetUri, refreshInterval,
+                minRefreshInterval);
+    }
+
+    public static ReactiveJwtDecoder jwtDecoder(PrefetchingJwkSource jwkSource, String issuerUri, long cacheMaxSize,
+                                                MeterRegistry meterRegistry) {
+        NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSource).build();
+        decoder.setJwtValidator(issuerUri == null || issuerUri.isEmpty()
+                ? JwtValidators.createDefault()
+                : JwtValidators.createDefaultWithIssuer(issuerUri));
+        return new CachingReactiveJwtDecoder(decoder, cacheMaxSize, meterRegistry);
+    }
+}
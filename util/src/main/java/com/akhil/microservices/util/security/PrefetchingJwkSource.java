@@ -0,0 +1,124 @@
+package com.akhil.microservices.util.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * JWK set of the authorization server, fetched in the background every refresh interval so verifying a token
+ * doesn't wait for it. The JWK set URI is taken as configured or discovered from the issuer's OpenID configuration.
+ * <p>
+ * A token signed with a key missing from the set triggers a refresh that the token waits for, at most once per
+ * min refresh interval. As long as new keys are published ahead of their use, they are picked up by the
+ * background refresh instead.
+ */
+public class PrefetchingJwkSource implements Function<SignedJWT, Flux<JWK>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PrefetchingJwkSource.class);
+
+    private final WebClient webClient;
+    private final Mono<String> jwkSetUri;
+    private final Duration refreshInterval;
+    private final long minRefreshIntervalNanos;
+
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>(new JWKSet());
+    private final AtomicReference<Mono<JWKSet>> refreshing = new AtomicReference<>();
+    private volatile long lastRefreshAt;
+    private Disposable schedule;
+
+    public PrefetchingJwkSource(WebClient webClient, String issuerUri, String jwkSetUri, Duration refreshInterval,
+                                Duration minRefreshInterval) {
+        this.webClient = webClient;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.lastRefreshAt = System.nanoTime() - minRefreshIntervalNanos;
+
+        if (jwkSetUri != null && !jwkSetUri.isEmpty()) {
+            this.jwkSetUri = Mono.just(jwkSetUri);
+        } else if (issuerUri != null && !issuerUri.isEmpty()) {
+            // A failed discovery is retried with the next refresh
+            this.jwkSetUri = discover(issuerUri).cache(uri -> Duration.ofMillis(Long.MAX_VALUE),
+                    ex -> Duration.ZERO, () -> Duration.ZERO);
+        } else {
+            this.jwkSetUri = Mono.error(new IllegalStateException("Neither an issuer nor a JWK set URI is set"));
+        }
+    }
+
+    public void start() {
+        schedule = Flux.interval(Duration.ZERO, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh())
+                .subscribe();
+    }
+
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+        List<JWK> keys = selector.select(jwkSet.get());
+        if (!keys.isEmpty()) {
+            return Flux.fromIterable(keys);
+        }
+
+        if (refreshing.get() == null && System.nanoTime() - lastRefreshAt < minRefreshIntervalNanos) {
+            return Flux.empty();
+        }
+        LOG.info("No JWK matches key id {}, refreshing the JWK set", jwt.getHeader().getKeyID());
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    // Concurrent refreshes share the one in flight. A failed refresh keeps the current set
+    private Mono<JWKSet> refresh() {
+        Mono<JWKSet> inFlight = refreshing.get();
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        Mono<JWKSet> fetch = jwkSetUri
+                .flatMap(uri -> webClient.get().uri(uri).retrieve().bodyToMono(String.class))
+                .flatMap(body -> Mono.fromCallable(() -> JWKSet.parse(body)))
+                .doOnNext(jwkSet::set)
+                .onErrorResume(ex -> {
+                    LOG.warn("Failed to refresh the JWK set: {}", ex.toString());
+                    return Mono.empty();
+                })
+                .then(Mono.fromSupplier(jwkSet::get))
+                .doFinally(signal -> refreshing.set(null))
+                .cache();
+
+        if (!refreshing.compareAndSet(null, fetch)) {
+            Mono<JWKSet> other = refreshing.get();
+            return other != null ? other : Mono.just(jwkSet.get());
+        }
+        lastRefreshAt = System.nanoTime();
+        return fetch;
+    }
+
+    private Mono<String> discover(String issuerUri) {
+        String configurationUri = issuerUri.replaceAll("/$", "") + "/.well-known/openid-configuration";
+        return webClient.get().uri(configurationUri).retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .flatMap(configuration -> Mono.justOrEmpty((String) configuration.get("jwks_uri")))
+                .switchIfEmpty(Mono.error(new IllegalStateException("No jwks_uri in " + configurationUri)));
+    }
+}
@@ -0,0 +1,89 @@
+package com.akhil.microservices.util.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CachingReactiveJwtDecoderTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    @Test
+    void cacheTokenUntilExp() throws InterruptedException {
+
+        Jwt jwt = jwt(Instant.now().plusMillis(300));
+        CachingReactiveJwtDecoder decoder = decoder(token -> Mono.just(jwt));
+
+        assertSame(jwt, decoder.decode("token").block());
+        assertSame(jwt, decoder.decode("token").block());
+        assertEquals(1, verifications.get());
+        assertEquals(1.0, meterRegistry.get("security.jwt.cache").tag("result", "hit").counter().count());
+
+        Thread.sleep(400);
+        decoder.decode("token").block();
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void skipTokenWithoutExp() {
+
+        CachingReactiveJwtDecoder decoder = decoder(token -> Mono.just(jwt(null)));
+
+        decoder.decode("token").block();
+        decoder.decode("token").block();
+
+        assertEquals(2, verifications.get());
+        assertEquals(0.0, meterRegistry.get("security.jwt.cache.size").gauge().value());
+    }
+
+    @Test
+    void skipTokenFailingVerification() {
+
+        CachingReactiveJwtDecoder decoder = decoder(token -> Mono.error(new BadJwtException("Invalid signature")));
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("token").block());
+        assertThrows(BadJwtException.class, () -> decoder.decode("token").block());
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void cacheTokensSeparately() {
+
+        CachingReactiveJwtDecoder decoder = decoder(token -> Mono.just(jwt(Instant.now().plusSeconds(60))));
+
+        decoder.decode("token-1").block();
+        decoder.decode("token-2").block();
+        decoder.decode("token-1").block();
+
+        assertEquals(2, verifications.get());
+    }
+
+    private CachingReactiveJwtDecoder decoder(ReactiveJwtDecoder delegate) {
+        return new CachingReactiveJwtDecoder(token -> {
+            verifications.incrementAndGet();
+            return delegate.decode(token);
+        }, 100, meterRegistry);
+    }
+
+    private Jwt jwt(Instant expiresAt) {
+        Jwt.Builder jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user");
+        if (expiresAt != null) {
+            jwt.expiresAt(expiresAt);
+        }
+        return jwt.build();
+    }
+}
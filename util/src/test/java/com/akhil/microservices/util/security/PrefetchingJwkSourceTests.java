@@ -0,0 +1,116 @@
+package com.akhil.microservices.util.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefetchingJwkSourceTests {
+
+    private static final String JWK_SET_URI = "http://auth-server/oauth2/jwks";
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Test
+    void refreshOnUnknownKeyIdAtMostOncePerMinInterval() throws Exception {
+
+        RSAKey key = rsaKey("key-1");
+        PrefetchingJwkSource source = source(() -> Mono.just(jwkSetResponse(key)), Duration.ofMillis(300));
+
+        assertEquals(List.of(key.toPublicJWK()), source.apply(jwt("key-1")).collectList().block());
+        assertEquals(1, requests.get());
+
+        // Served from the fetched set, or not found without another request within the min refresh interval
+        assertEquals(1, source.apply(jwt("key-1")).collectList().block().size());
+        assertTrue(source.apply(jwt("key-2")).collectList().block().isEmpty());
+        assertTrue(source.apply(jwt("key-2")).collectList().block().isEmpty());
+        assertEquals(1, requests.get());
+
+        Thread.sleep(400);
+        assertTrue(source.apply(jwt("key-2")).collectList().block().isEmpty());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void shareConcurrentRefresh() throws Exception {
+
+        RSAKey key = rsaKey("key-1");
+        Sinks.One<ClientResponse> response = Sinks.one();
+        PrefetchingJwkSource source = source(response::asMono, Duration.ofMinutes(1));
+
+        CompletableFuture<List<JWK>> first = source.apply(jwt("key-1")).collectList().toFuture();
+        CompletableFuture<List<JWK>> second = source.apply(jwt("key-1")).collectList().toFuture();
+        assertFalse(first.isDone());
+
+        response.tryEmitValue(jwkSetResponse(key));
+
+        assertEquals(List.of(key.toPublicJWK()), first.get());
+        assertEquals(List.of(key.toPublicJWK()), second.get());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void keepCurrentSetWhenRefreshFails() throws Exception {
+
+        RSAKey key = rsaKey("key-1");
+        AtomicInteger attempt = new AtomicInteger();
+        PrefetchingJwkSource source = source(() -> Mono.just(attempt.getAndIncrement() == 0
+                ? jwkSetResponse(key)
+                : ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build()), Duration.ZERO);
+
+        source.apply(jwt("key-1")).collectList().block();
+        assertTrue(source.apply(jwt("key-2")).collectList().block().isEmpty());
+
+        assertEquals(2, requests.get());
+        assertEquals(1, source.apply(jwt("key-1")).collectList().block().size());
+    }
+
+    private PrefetchingJwkSource source(Supplier<Mono<ClientResponse>> responses, Duration minRefreshInterval) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.incrementAndGet();
+                    return responses.get();
+                })
+                .build();
+        return new PrefetchingJwkSource(webClient, null, JWK_SET_URI, Duration.ofMinutes(5), minRefreshInterval);
+    }
+
+    private ClientResponse jwkSetResponse(RSAKey key) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(new JWKSet(key.toPublicJWK()).toString())
+                .build();
+    }
+
+    private RSAKey rsaKey(String keyId) throws JOSEException {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+
+    private SignedJWT jwt(String keyId) {
+        return new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(keyId).build(),
+                new JWTClaimsSet.Builder().subject("user").build());
+    }
+}